@@ -0,0 +1,103 @@
+package client;
+
+import com.google.gson.Gson;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a live copy of the lobby from the server's GET /lobby event stream: one snapshot,
+ * then a small event per change. Listing games is then just a look at this copy, not a
+ * request. If the stream can't be opened or drops, {@link #isLive} turns false and the
+ * caller should fall back to GET /game.
+ */
+public class LobbyWatcher implements AutoCloseable {
+
+    private final Gson gson = new Gson();
+    // by id, the same order GET /game lists them in
+    private final Map<Integer, ServerFacade.GameInfo> games = new TreeMap<>();
+    private volatile boolean live;
+    private volatile boolean closed;
+    private volatile Stream<String> lines;
+
+    record Snapshot(long seq, List<ServerFacade.GameInfo> games) {}
+    record Update(long seq, ServerFacade.GameInfo game) {}
+
+    LobbyWatcher(HttpClient http, HttpRequest request) {
+        http.sendAsync(request, HttpResponse.BodyHandlers.ofLines()).thenAccept(res -> {
+            if (res.statusCode() != 200) {
+                res.body().close();
+                return;
+            }
+            lines = res.body();
+            if (closed) {
+                lines.close();
+                return;
+            }
+            read(res.body());
+        }).whenComplete((ok, err) -> live = false);
+    }
+
+    private void read(Stream<String> body) {
+        String[] event = {null};
+        var data = new StringBuilder();
+        body.forEach(line -> {
+            if (line.isEmpty()) {
+                if (event[0] != null) {
+                    dispatch(event[0], data.toString());
+                }
+                event[0] = null;
+                data.setLength(0);
+            } else if (line.startsWith("event:")) {
+                event[0] = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                data.append(line.substring(5).trim());
+            }
+            // ids and ":" comments (pings) aren't needed
+        });
+    }
+
+    private synchronized void dispatch(String event, String data) {
+        switch (event) {
+            case "snapshot" -> {
+                games.clear();
+                for (var g : gson.fromJson(data, Snapshot.class).games()) {
+                    games.put(g.gameID(), g);
+                }
+                live = true;
+            }
+            case "cleared" -> games.clear();
+            case "created", "seat_taken", "seat_freed", "finished" -> {
+                var g = gson.fromJson(data, Update.class).game();
+                games.put(g.gameID(), g);
+            }
+            default -> {
+            }
+        }
+    }
+
+    // true once the snapshot is in and for as long as the stream stays up
+    public boolean isLive() {
+        return live;
+    }
+
+    public synchronized List<ServerFacade.GameInfo> games() {
+        return new ArrayList<>(games.values());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        live = false;
+        var l = lines;
+        if (l != null) {
+            l.close();
+        }
+    }
+}
@@ -2,26 +2,40 @@ package client;
 
 import com.google.gson.Gson;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.http.*;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 public class ServerFacade {
-    private final HttpClient http = HttpClient.newHttpClient();
+    private final HttpClient http;
     private final String baseUrl;
     private String authToken;
     private final Gson gson = new Gson();
+    // last game list and its ETag; the server answers 304 while it's still current
+    private String listEtag;
+    private List<GameInfo> listCache;
 
     public ServerFacade(int port) {
+        this(port, HttpClient.newHttpClient());
+    }
+
+    // lets many facades share one client (the load tester has thousands of users)
+    public ServerFacade(int port, HttpClient http) {
         this.baseUrl = "http://localhost:" + port;
+        this.http = http;
     }
 
     // dtos
     public record AuthData(String username, String authToken) {}
     public record RegisterReq(String username, String password, String email) {}
     public record LoginReq(String username, String password) {}
-    public record CreateGameReq(String gameName) {}
+    // timeControl like "5+3", null for an untimed game (and then left out of the JSON)
+    public record CreateGameReq(String gameName, String timeControl) {}
     public record JoinGameReq(Integer gameID, String playerColor) {}
     public record GameInfo(Integer gameID, String gameName, String whiteUsername, String blackUsername) {}
     public record ListGamesRes(List<GameInfo> games) {}
@@ -70,10 +84,16 @@ public class ServerFacade {
         var res = http.send(req, HttpResponse.BodyHandlers.discarding());
         ensure2xx(res, "Logout failed.");
         authToken = null;
+        listEtag = null;
+        listCache = null;
     }
 
     public int createGame(String name) throws Exception {
-        var body = gson.toJson(new CreateGameReq(name));
+        return createGame(name, null);
+    }
+
+    public int createGame(String name, String timeControl) throws Exception {
+        var body = gson.toJson(new CreateGameReq(name, timeControl));
         var req = base("/game").POST(HttpRequest.BodyPublishers.ofString(body))
                 .header("Content-Type", "application/json").build();
         var res = http.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
@@ -83,10 +103,29 @@ public class ServerFacade {
     }
 
     public List<GameInfo> listGames() throws Exception {
-        var req = base("/game").GET().build();
-        var res = http.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-        ensure2xx(res, "Could not list games.");
-        return gson.fromJson(res.body(), ListGamesRes.class).games();
+        var b = base("/game").GET().header("Accept-Encoding", "gzip");
+        if (listEtag != null) {
+            b.header("If-None-Match", listEtag);
+        }
+        var res = http.send(b.build(), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream raw = res.body()) {
+            if (res.statusCode() == 304 && listCache != null) {
+                // unchanged since last time: no body came, and the server skipped the query
+                return new ArrayList<>(listCache);
+            }
+            ensure2xx(res, "Could not list games.");
+            boolean gzip = res.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip");
+            var body = new InputStreamReader(gzip ? new GZIPInputStream(raw) : raw, StandardCharsets.UTF_8);
+            var games = gson.fromJson(body, ListGamesRes.class).games();
+            listEtag = res.headers().firstValue("ETag").orElse(null);
+            listCache = games;
+            return games == null ? null : new ArrayList<>(games);
+        }
+    }
+
+    // the lobby pushed from the server as it changes; close it when done (e.g. on logout)
+    public LobbyWatcher watchLobby() {
+        return new LobbyWatcher(http, base("/lobby").GET().header("Accept", "text/event-stream").build());
     }
 
     public void joinGame(int gameId, String color) throws Exception {
@@ -1,5 +1,6 @@
 package ui;
 
+import client.LobbyWatcher;
 import client.ServerFacade;
 
 import java.util.ArrayList;
@@ -20,6 +21,8 @@ public class ClientApp {
 
     // Games from the last 'list' call, to map number -> game
     private List<ServerFacade.GameInfo> lastGames = new ArrayList<>();
+    // kept up to date by the server while logged in, so 'list' needn't ask
+    private LobbyWatcher lobby;
 
     public ClientApp(int port) {
         this.facade = new ServerFacade(port);
@@ -62,6 +65,7 @@ public class ClientApp {
                 var auth = facade.register(u, p, e);
                 username = auth.username();
                 mode = Mode.POSTLOGIN;
+                lobby = facade.watchLobby();
                 System.out.println("Registered & logged in as " + username + ".");
             }
 
@@ -74,6 +78,7 @@ public class ClientApp {
                 var auth = facade.login(u, p);
                 username = auth.username();
                 mode = Mode.POSTLOGIN;
+                lobby = facade.watchLobby();
                 System.out.println("Logged in as " + username + ".");
             }
 
@@ -127,6 +132,10 @@ public class ClientApp {
     }
 
     private void doLogout() throws Exception {
+        if (lobby != null) {
+            lobby.close();
+            lobby = null;
+        }
         facade.logout();
         username = null;
         mode = Mode.PRELOGIN;
@@ -141,12 +150,23 @@ public class ClientApp {
             System.out.println("Please enter a non-empty game name.");
             return;
         }
-        int id = facade.createGame(name);
-        System.out.println("Created game \"" + name + "\".");
+        System.out.print("Time control, minutes+increment (e.g. 5+3), blank for none: ");
+        var clock = in.nextLine().trim();
+        int id = facade.createGame(name, clock.isEmpty() ? null : clock);
+        System.out.println("Created game \"" + name + "\"" + (clock.isEmpty() ? "." : " (" + clock + ")."));
     }
 
     private void doListGames() throws Exception {
-        lastGames = facade.listGames();
+        if (lobby != null && lobby.isLive()) {
+            lastGames = lobby.games();
+        } else {
+            // not connected (yet), dropped, or an older server: ask the old way, and try the stream again
+            lastGames = facade.listGames();
+            if (lobby != null) {
+                lobby.close();
+                lobby = facade.watchLobby();
+            }
+        }
         if (lastGames.isEmpty()) {
             System.out.println("No games exist yet. Use 'create' to make one.");
             return;
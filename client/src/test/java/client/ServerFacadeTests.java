@@ -157,4 +157,18 @@ public class ServerFacadeTests {
     void clearDbEmptyNegative() {
         assertDoesNotThrow(() -> facade.clearDb());
     }
+
+    @Test
+    @DisplayName("15. listGames — positive (unchanged list comes back the same)")
+    void listGamesUnchangedPositive() throws Exception {
+        facade.register("lister", "pw", "l@l");
+        int id = facade.createGame("still here");
+        var first = facade.listGames();
+        // second call is a 304 served from the facade's copy
+        var second = facade.listGames();
+        assertEquals(first, second);
+        facade.createGame("new one");
+        assertEquals(first.size() + 1, facade.listGames().size());
+        assertTrue(second.stream().anyMatch(g -> g.gameID().equals(id)));
+    }
 }
@@ -0,0 +1,282 @@
+package loadtest;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import websocket.WireFormat;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
+import websocket.messages.ServerMessage;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated game: two players taking turns with random legal moves, plus some observers
+ * that just count what they receive. When the game ends (mate, stalemate, ply cap or an error)
+ * the same players start a fresh one so the load stays constant.
+ */
+class GameRun {
+
+    record Player(client.ServerFacade facade, String username, String token) {}
+
+    private static final long MOVE_TIMEOUT_MS = 10_000;
+
+    private final int index;
+    private final Player white;
+    private final Player black;
+    private final List<Player> observers;
+    private final LoadTest.Options opts;
+    private final HttpClient http;
+    private final ScheduledExecutorService timer;
+    private final Stats stats;
+    private final Gson gson;
+    private final Random random;
+
+    // everything below is guarded by this
+    private final List<WsConnection> connections = new ArrayList<>();
+    private WsConnection whiteConn;
+    private WsConnection blackConn;
+    private int gameID;
+    private ChessGame game;
+    private boolean running;
+    // moves are held until every game is set up so the measured window is steady state
+    private boolean released;
+    private int generation;
+    private ChessGame.TeamColor pendingColor;
+    private int pendingPly;
+    private long pendingStart;
+
+    GameRun(int index, Player white, Player black, List<Player> observers, LoadTest.Options opts,
+            HttpClient http, ScheduledExecutorService timer, Stats stats) {
+        this.index = index;
+        this.white = white;
+        this.black = black;
+        this.observers = observers;
+        this.opts = opts;
+        this.http = http;
+        this.timer = timer;
+        this.stats = stats;
+        this.gson = opts.format().gson();
+        this.random = new Random(opts.seed() + index);
+    }
+
+    /** Creates the game over REST and connects everyone. Blocking, so call it off the timer thread. */
+    void start() {
+        int gen;
+        synchronized (this) {
+            running = true;
+            gen = ++generation;
+            pendingColor = null;
+            game = null;
+        }
+        try {
+            int id = white.facade().createGame("load-" + index + "-" + gen);
+            white.facade().joinGame(id, "WHITE");
+            black.facade().joinGame(id, "BLACK");
+
+            var uri = URI.create("ws://localhost:" + opts.port() + "/ws" + opts.featuresQuery());
+            var w = WsConnection.open(http, uri, msg -> onPlayerMessage(gen, ChessGame.TeamColor.WHITE, msg),
+                    () -> onClosed(gen));
+            var b = WsConnection.open(http, uri, msg -> onPlayerMessage(gen, ChessGame.TeamColor.BLACK, msg),
+                    () -> onClosed(gen));
+            var obs = new ArrayList<WsConnection>();
+            for (var o : observers) {
+                obs.add(WsConnection.open(http, uri, msg -> {
+                    stats.observerFrames.increment();
+                    stats.charsReceived.add(msg.length());
+                }, () -> onClosed(gen)));
+            }
+            synchronized (this) {
+                gameID = id;
+                whiteConn = w;
+                blackConn = b;
+                connections.add(w);
+                connections.add(b);
+                connections.addAll(obs);
+            }
+            w.send(connect(white, id));
+            b.send(connect(black, id));
+            for (int i = 0; i < obs.size(); i++) {
+                obs.get(i).send(connect(observers.get(i), id));
+            }
+        } catch (Exception e) {
+            stats.restFailures.increment();
+            restartLater(gen);
+        }
+    }
+
+    synchronized void release() {
+        released = true;
+        if (game != null && pendingColor == null) {
+            scheduleMove(generation);
+        }
+    }
+
+    synchronized void stop() {
+        running = false;
+        closeConnections();
+    }
+
+    private String connect(Player p, int id) {
+        return gson.toJson(new UserGameCommand(UserGameCommand.CommandType.CONNECT, p.token(), id));
+    }
+
+    private synchronized void onPlayerMessage(int gen, ChessGame.TeamColor color, String text) {
+        stats.charsReceived.add(text.length());
+        if (gen != generation || !running) {
+            return;
+        }
+        ServerMessage msg = gson.fromJson(text, ServerMessage.class);
+        switch (msg) {
+            case ErrorMessage e -> {
+                if (color == pendingColor) {
+                    stats.serverErrors.increment();
+                    finish(gen);
+                }
+            }
+            case LoadGameMessage m -> {
+                ChessGame loaded = m.getGame();
+                if (game == null && color == ChessGame.TeamColor.WHITE) {
+                    // first board after CONNECT, white opens
+                    game = loaded;
+                    if (released) {
+                        scheduleMove(gen);
+                    }
+                } else if (color == pendingColor && loaded.getPly() == pendingPly) {
+                    moveAcked(gen, loaded);
+                }
+            }
+            case MoveMessage move -> {
+                if (color == pendingColor && move.getPly() == pendingPly) {
+                    ChessGame next = game;
+                    if (!move.applyTo(next)) {
+                        stats.serverErrors.increment();
+                        finish(gen);
+                        return;
+                    }
+                    moveAcked(gen, next);
+                }
+            }
+            default -> { }
+        }
+    }
+
+    private void moveAcked(int gen, ChessGame next) {
+        stats.moveRtt.recordSince(pendingStart);
+        pendingColor = null;
+        game = next;
+        scheduleMove(gen);
+    }
+
+    private synchronized void onClosed(int gen) {
+        if (gen == generation && running) {
+            stats.disconnects.increment();
+            finish(gen);
+        }
+    }
+
+    private void scheduleMove(int gen) {
+        // jitter so games don't all move in lockstep
+        long delay = (long) (opts.moveIntervalMillis() * (0.5 + random.nextDouble()));
+        timer.schedule(() -> makeMove(gen), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void makeMove(int gen) {
+        if (gen != generation || !running || game == null) {
+            return;
+        }
+        ChessGame.TeamColor turn = game.getTeamTurn();
+        List<ChessMove> legal = legalMoves(game, turn);
+        if (legal.isEmpty() || game.getPly() >= opts.maxPly()) {
+            stats.gamesFinished.increment();
+            finish(gen);
+            return;
+        }
+        ChessMove move = legal.get(random.nextInt(legal.size()));
+        Player p = turn == ChessGame.TeamColor.WHITE ? white : black;
+        WsConnection conn = turn == ChessGame.TeamColor.WHITE ? whiteConn : blackConn;
+
+        pendingColor = turn;
+        pendingPly = game.getPly() + 1;
+        pendingStart = System.nanoTime();
+        stats.movesSent.increment();
+        long sentAt = pendingStart;
+        conn.send(gson.toJson(new MakeMoveCommand(p.token(), gameID, move))).exceptionally(e -> {
+            synchronized (this) {
+                if (gen == generation && pendingStart == sentAt) {
+                    stats.sendFailures.increment();
+                    finish(gen);
+                }
+            }
+            return null;
+        });
+        timer.schedule(() -> checkTimeout(gen, sentAt), MOVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void checkTimeout(int gen, long sentAt) {
+        if (gen == generation && running && pendingColor != null && pendingStart == sentAt) {
+            stats.timeouts.increment();
+            finish(gen);
+        }
+    }
+
+    static List<ChessMove> legalMoves(ChessGame game, ChessGame.TeamColor turn) {
+        var moves = new ArrayList<ChessMove>();
+        var board = game.getBoard();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                var pos = new ChessPosition(row, col);
+                ChessPiece piece = board.getPiece(pos);
+                if (piece != null && piece.getTeamColor() == turn) {
+                    var valid = game.validMoves(pos);
+                    if (valid != null) {
+                        moves.addAll(valid);
+                    }
+                }
+            }
+        }
+        return moves;
+    }
+
+    // ends this game and starts a new one for the same players
+    private void finish(int gen) {
+        if (gen != generation) {
+            return;
+        }
+        generation++;
+        pendingColor = null;
+        closeConnections();
+        restartLater(generation);
+    }
+
+    private void restartLater(int gen) {
+        timer.schedule(() -> Thread.ofVirtual().start(() -> {
+            synchronized (this) {
+                if (gen != generation || !running) {
+                    return;
+                }
+            }
+            start();
+        }), opts.moveIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void closeConnections() {
+        for (var c : connections) {
+            c.close();
+        }
+        connections.clear();
+        whiteConn = null;
+        blackConn = null;
+    }
+}
@@ -0,0 +1,226 @@
+package loadtest;
+
+import client.ServerFacade;
+import dataaccess.MemoryDataAccess;
+import server.Server;
+import server.ServerConfig;
+import server.ratelimit.RateLimits;
+import websocket.WireFormat;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load generator. Registers a pool of users, sets up a bunch of games with observers and has
+ * the players make random legal moves at a fixed rate, then prints throughput, move round trip
+ * percentiles and error counts.
+ * <p>
+ * Starts its own server on the in-memory DAO unless port= points at one that's already running.
+ * <p>
+ * usage: LoadTest [users=200] [games=100] [observers=1] [rate=1.0] [seconds=30] [port=0]
+ * [delta=false] [compact=false] [maxPly=200] [seed=1]
+ * <p>
+ * rate is moves per second per game.
+ */
+public class LoadTest {
+
+    record Options(int users, int games, int observers, double rate, int seconds, int port,
+                   boolean delta, boolean compact, int maxPly, long seed) {
+
+        long moveIntervalMillis() {
+            return Math.max(1, Math.round(1000 / rate));
+        }
+
+        Options withPort(int p) {
+            return new Options(users, games, observers, rate, seconds, p, delta, compact, maxPly, seed);
+        }
+
+        WireFormat format() {
+            return compact ? WireFormat.COMPACT : WireFormat.STANDARD;
+        }
+
+        String featuresQuery() {
+            var features = new ArrayList<String>();
+            if (delta) {
+                features.add("delta");
+            }
+            if (compact) {
+                features.add("compact");
+            }
+            return features.isEmpty() ? "" : "?features=" + String.join(",", features);
+        }
+
+        static Options parse(String[] args) {
+            Map<String, String> kv = new HashMap<>();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException("expected key=value, got " + arg);
+                }
+                kv.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+            var opts = new Options(
+                    Integer.parseInt(kv.getOrDefault("users", "200")),
+                    Integer.parseInt(kv.getOrDefault("games", "100")),
+                    Integer.parseInt(kv.getOrDefault("observers", "1")),
+                    Double.parseDouble(kv.getOrDefault("rate", "1.0")),
+                    Integer.parseInt(kv.getOrDefault("seconds", "30")),
+                    Integer.parseInt(kv.getOrDefault("port", "0")),
+                    Boolean.parseBoolean(kv.getOrDefault("delta", "false")),
+                    Boolean.parseBoolean(kv.getOrDefault("compact", "false")),
+                    Integer.parseInt(kv.getOrDefault("maxPly", "200")),
+                    Long.parseLong(kv.getOrDefault("seed", "1")));
+            if (opts.users < 2 || opts.games < 1 || opts.rate <= 0) {
+                throw new IllegalArgumentException("need users >= 2, games >= 1 and rate > 0");
+            }
+            return opts;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options opts = Options.parse(args);
+
+        Server server = null;
+        if (opts.port() == 0) {
+            // registering thousands of users at the production bcrypt cost would take minutes
+            if (System.getProperty("chess.bcrypt.cost") == null) {
+                System.setProperty("chess.bcrypt.cost", "4");
+            }
+            // every simulated user comes from this machine
+            if (System.getProperty("chess.rate.exempt") == null) {
+                System.setProperty("chess.rate.exempt", RateLimits.LOOPBACK);
+            }
+            server = new Server(ServerConfig.load(), new MemoryDataAccess());
+            opts = opts.withPort(server.run(0));
+            System.out.println("started local server on port " + opts.port());
+        }
+
+        System.out.printf("%d users, %d games, %d observers/game, %.2f moves/s/game, %d s%s%s%n",
+                opts.users(), opts.games(), opts.observers(), opts.rate(), opts.seconds(),
+                opts.delta() ? ", delta updates" : "", opts.compact() ? ", compact json" : "");
+
+        var http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        var stats = new Stats();
+
+        List<GameRun.Player> users = registerUsers(opts, http, stats);
+        if (users.size() < 2) {
+            System.out.println("could not register enough users, giving up");
+            System.exit(1);
+        }
+
+        var timer = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        var runs = new ArrayList<GameRun>();
+        for (int g = 0; g < opts.games(); g++) {
+            var white = users.get((2 * g) % users.size());
+            var black = users.get((2 * g + 1) % users.size());
+            var obs = new ArrayList<GameRun.Player>();
+            for (int o = 0; o < opts.observers(); o++) {
+                obs.add(users.get((2 * opts.games() + g * opts.observers() + o) % users.size()));
+            }
+            runs.add(new GameRun(g, white, black, obs, opts, http, timer, stats));
+        }
+
+        long setup = System.nanoTime();
+        parallel(runs.size(), 64, i -> runs.get(i).start());
+        System.out.printf("games set up in %.1f s%n", (System.nanoTime() - setup) / 1e9);
+        for (var run : runs) {
+            run.release();
+        }
+
+        long start = System.nanoTime();
+        long lastCount = 0;
+        long lastTick = start;
+        long end = start + TimeUnit.SECONDS.toNanos(opts.seconds());
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(5000, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            long now = System.nanoTime();
+            long count = stats.moveRtt.count();
+            stats.printProgress((now - start) / 1e9, count - lastCount, (now - lastTick) / 1e9);
+            lastCount = count;
+            lastTick = now;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (var run : runs) {
+            run.stop();
+        }
+        timer.shutdownNow();
+        stats.printSummary(seconds);
+
+        if (server != null) {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static List<GameRun.Player> registerUsers(Options opts, HttpClient http, Stats stats) throws Exception {
+        var players = new GameRun.Player[opts.users()];
+        var failed = new AtomicInteger();
+        long t0 = System.nanoTime();
+        // register hashes on the server's bcrypt pool, which sheds load past its queue, so go easy
+        parallel(opts.users(), 8, i -> {
+            var facade = new ServerFacade(opts.port(), http);
+            String name = "load" + opts.seed() + "_" + i + "_" + Long.toHexString(System.nanoTime());
+            for (int attempt = 0; attempt < 5; attempt++) {
+                try {
+                    var auth = facade.register(name, "pw", name + "@load.test");
+                    players[i] = new GameRun.Player(facade, auth.username(), auth.authToken());
+                    return;
+                } catch (Exception e) {
+                    sleepQuietly(50L << attempt);
+                }
+            }
+            stats.restFailures.increment();
+            failed.incrementAndGet();
+        });
+        System.out.printf("registered %d users in %.1f s (%d failed)%n",
+                opts.users() - failed.get(), (System.nanoTime() - t0) / 1e9, failed.get());
+
+        var ok = new ArrayList<GameRun.Player>();
+        for (var p : players) {
+            if (p != null) {
+                ok.add(p);
+            }
+        }
+        return ok;
+    }
+
+    interface IndexTask {
+        void run(int i) throws Exception;
+    }
+
+    // runs task(0..n-1) on virtual threads, at most limit at a time
+    private static void parallel(int n, int limit, IndexTask task) throws InterruptedException {
+        var permits = new Semaphore(limit);
+        try (var pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < n; i++) {
+                int idx = i;
+                permits.acquire();
+                pool.submit(() -> {
+                    try {
+                        task.run(idx);
+                    } catch (Exception e) {
+                        System.err.println("task " + idx + " failed: " + e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package loadtest;
+
+import server.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared by every simulated game. Move round trip is measured from sending
+ * MAKE_MOVE until the mover sees the server's update for that ply.
+ */
+class Stats {
+
+    final LatencyHistogram moveRtt = new LatencyHistogram();
+    final LongAdder movesSent = new LongAdder();
+    final LongAdder serverErrors = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder sendFailures = new LongAdder();
+    final LongAdder restFailures = new LongAdder();
+    final LongAdder disconnects = new LongAdder();
+    final LongAdder gamesFinished = new LongAdder();
+    final LongAdder observerFrames = new LongAdder();
+    // message text received by players and observers; nearly all ASCII, so about the same in bytes
+    final LongAdder charsReceived = new LongAdder();
+
+    long errors() {
+        return serverErrors.sum() + timeouts.sum() + sendFailures.sum();
+    }
+
+    static String ms(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    void printProgress(double elapsedSeconds, long movesInWindow, double windowSeconds) {
+        System.out.printf("[%5.0fs] %7.0f moves/s  p50 %s ms  p99 %s ms  errors %d  games done %d%n",
+                elapsedSeconds, movesInWindow / windowSeconds,
+                ms(moveRtt.valueAt(0.50)), ms(moveRtt.valueAt(0.99)),
+                errors(), gamesFinished.sum());
+    }
+
+    void printSummary(double seconds) {
+        long acked = moveRtt.count();
+        long sent = movesSent.sum();
+        System.out.println();
+        System.out.println("==== results ====");
+        System.out.printf("duration          %.1f s%n", seconds);
+        System.out.printf("moves sent/acked  %d / %d%n", sent, acked);
+        System.out.printf("throughput        %.1f moves/s%n", acked / seconds);
+        System.out.printf("move rtt          p50 %s  p99 %s  p999 %s  max %s ms%n",
+                ms(moveRtt.valueAt(0.50)), ms(moveRtt.valueAt(0.99)),
+                ms(moveRtt.valueAt(0.999)), ms(moveRtt.maxNanos()));
+        System.out.printf("errors            %d server, %d timeouts, %d send failures (%.3f%% of moves)%n",
+                serverErrors.sum(), timeouts.sum(), sendFailures.sum(),
+                sent == 0 ? 0.0 : 100.0 * errors() / sent);
+        System.out.printf("rest failures     %d%n", restFailures.sum());
+        System.out.printf("disconnects       %d%n", disconnects.sum());
+        System.out.printf("games finished    %d%n", gamesFinished.sum());
+        System.out.printf("observer frames   %d%n", observerFrames.sum());
+        System.out.printf("received          %.1f MB (%.0f B/move)%n", charsReceived.sum() / 1e6,
+                acked == 0 ? 0.0 : (double) charsReceived.sum() / acked);
+    }
+}
@@ -0,0 +1,77 @@
+package loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Thin wrapper around the JDK websocket client. It stitches partial frames back together
+ * and hands each complete text message to the callback, one at a time.
+ */
+class WsConnection implements WebSocket.Listener {
+
+    private final Consumer<String> onMessage;
+    private final Runnable onClosed;
+    private final StringBuilder partial = new StringBuilder();
+    private WebSocket socket;
+    // sendText only allows one outstanding send per socket, so chain them
+    private CompletableFuture<WebSocket> lastSend = CompletableFuture.completedFuture(null);
+
+    private WsConnection(Consumer<String> onMessage, Runnable onClosed) {
+        this.onMessage = onMessage;
+        this.onClosed = onClosed;
+    }
+
+    static WsConnection open(HttpClient http, URI uri, Consumer<String> onMessage, Runnable onClosed)
+            throws Exception {
+        var conn = new WsConnection(onMessage, onClosed);
+        conn.socket = http.newWebSocketBuilder()
+                .connectTimeout(java.time.Duration.ofSeconds(10))
+                .buildAsync(uri, conn)
+                .get(10, TimeUnit.SECONDS);
+        return conn;
+    }
+
+    synchronized CompletableFuture<WebSocket> send(String text) {
+        lastSend = lastSend.handle((ws, err) -> null)
+                .thenCompose(ignored -> socket.sendText(text, true));
+        return lastSend;
+    }
+
+    void close() {
+        if (socket != null && !socket.isOutputClosed()) {
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "done").exceptionally(e -> null);
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            String msg = partial.toString();
+            partial.setLength(0);
+            try {
+                onMessage.accept(msg);
+            } catch (RuntimeException ignored) {
+                // a bad message shouldn't stop the read loop, the caller counts its own errors
+            }
+        }
+        ws.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+        onClosed.run();
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket ws, Throwable error) {
+        onClosed.run();
+    }
+}
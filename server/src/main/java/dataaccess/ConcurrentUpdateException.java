@@ -0,0 +1,11 @@
+package dataaccess;
+
+/**
+ * Thrown by updateGame when the row's version no longer matches the one that was read,
+ * i.e. someone else changed the game in between. Re-read and try again.
+ */
+public class ConcurrentUpdateException extends DataAccessException {
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,57 @@
+package dataaccess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one MySqlDataAccess call. The event's own duration is the query time.
+ */
+@Name("chess.DaoCall")
+@Label("DAO Call")
+@Category({"Chess", "Database"})
+@Description("One DataAccess method call against MySQL")
+@StackTrace(false)
+public class DaoCallEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Rows")
+    @Description("Rows returned by a query or changed by an update")
+    public int rows;
+
+    @Label("Game ID")
+    @Description("Game the call was about, 0 if none")
+    public int gameID;
+
+    // transient fields aren't recorded; stops a catch block from committing a second time
+    private transient boolean ended;
+
+    /** Creates and begins the event. */
+    public static DaoCallEvent start(String method) {
+        var event = new DaoCallEvent();
+        event.method = method;
+        event.begin();
+        return event;
+    }
+
+    public void end(int rows) {
+        end(rows, 0);
+    }
+
+    public void end(int rows, int gameID) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        if (shouldCommit()) {
+            this.rows = rows;
+            this.gameID = gameID;
+            commit();
+        }
+    }
+}
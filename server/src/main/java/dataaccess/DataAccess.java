@@ -2,9 +2,11 @@ package dataaccess;
 
 import model.AuthData;
 import model.GameData;
+import model.GameSummaryData;
 import model.UserData;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface DataAccess {
 
@@ -16,6 +18,8 @@ public interface DataAccess {
 
     UserData getUser(String username) throws DataAccessException;
 
+    void updatePasswordHash(String username, String passwordHash) throws DataAccessException;
+
     // authenticator
     void createAuth(AuthData auth) throws DataAccessException;
 
@@ -30,5 +34,17 @@ public interface DataAccess {
 
     Collection<GameData> listGames() throws DataAccessException;
 
+    // one game's lobby row without its board; null if there is no such game
+    GameSummaryData getGameSummary(int gameID) throws DataAccessException;
+
+    // lobby listing: id, name and players only, never touches the board
+    List<GameSummaryData> listGameSummaries(GameQuery query) throws DataAccessException;
+
+    // sets whiteUsername/blackUsername only if that seat is still empty, without touching the board.
+    // white picks the seat: true for WHITE, false for BLACK. Also bumps the version.
+    SeatClaim claimSeat(int gameID, boolean white, String username) throws DataAccessException;
+
+    // compare-and-set: only applies if the stored version still equals game.version(), then bumps it.
+    // Throws ConcurrentUpdateException when someone else got there first.
     void updateGame(GameData game) throws DataAccessException;
 }
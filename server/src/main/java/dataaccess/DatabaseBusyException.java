@@ -0,0 +1,11 @@
+package dataaccess;
+
+/**
+ * Thrown by {@link DbLanes} when no database slot came free within the lane's patience.
+ * Nothing was sent to the database; the caller can try again shortly.
+ */
+public class DatabaseBusyException extends DataAccessException {
+    public DatabaseBusyException(String message) {
+        super(message);
+    }
+}
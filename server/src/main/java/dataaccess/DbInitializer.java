@@ -1,5 +1,8 @@
 package dataaccess;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+
 public final class DbInitializer {
     private DbInitializer() {}
 
@@ -34,11 +37,82 @@ public final class DbInitializer {
                     whiteUsername VARCHAR(50),
                     blackUsername VARCHAR(50),
                     gameJson MEDIUMTEXT NOT NULL,
+                    gameBlob BLOB,
+                    version INT NOT NULL DEFAULT 0,
+                    status VARCHAR(16) NOT NULL DEFAULT 'OPEN',
+                    result VARCHAR(16),
+                    reason VARCHAR(16),
+                    clockBase BIGINT,
+                    clockIncrement BIGINT,
+                    whiteMillis BIGINT,
+                    blackMillis BIGINT,
+                    turnStartedAt BIGINT,
                     createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                     FOREIGN KEY (whiteUsername) REFERENCES user(username) ON DELETE SET NULL,
                     FOREIGN KEY (blackUsername) REFERENCES user(username) ON DELETE SET NULL
                 )
             """);
+
+            // tables made before these columns existed
+            addColumnIfMissing(conn, "game", "version", "INT NOT NULL DEFAULT 0");
+            // binary ChessGameCodec form; old rows are converted when first read
+            addColumnIfMissing(conn, "game", "gameBlob", "BLOB");
+            // lifecycle; old rows with both seats taken are games in progress
+            if (addColumnIfMissing(conn, "game", "status", "VARCHAR(16) NOT NULL DEFAULT 'OPEN'")) {
+                stmt.executeUpdate("UPDATE game SET status='ACTIVE' "
+                        + "WHERE whiteUsername IS NOT NULL AND blackUsername IS NOT NULL");
+            }
+            addColumnIfMissing(conn, "game", "result", "VARCHAR(16)");
+            addColumnIfMissing(conn, "game", "reason", "VARCHAR(16)");
+            // chess clocks; null for untimed games, which is all the old ones
+            for (String column : new String[]{"clockBase", "clockIncrement", "whiteMillis", "blackMillis",
+                    "turnStartedAt"}) {
+                addColumnIfMissing(conn, "game", column, "BIGINT");
+            }
+            // GET /game?status=... pages through one status in id order
+            addIndexIfMissing(conn, "game", "idx_game_status", "(status, id)");
+        }
+    }
+
+    // true if the column had to be added
+    private static boolean addColumnIfMissing(Connection conn, String table, String column, String type)
+            throws SQLException {
+        final String sql = """
+            SELECT COUNT(*) FROM information_schema.COLUMNS
+             WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?
+        """;
+        try (var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (var rs = ps.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return false;
+                }
+            }
+        }
+        try (var st = conn.createStatement()) {
+            st.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+        return true;
+    }
+
+    private static void addIndexIfMissing(Connection conn, String table, String index, String columns)
+            throws SQLException {
+        final String sql = """
+            SELECT COUNT(*) FROM information_schema.STATISTICS
+             WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?
+        """;
+        try (var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, index);
+            try (var rs = ps.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+        try (var st = conn.createStatement()) {
+            st.executeUpdate("CREATE INDEX " + index + " ON " + table + " " + columns);
         }
     }
 }
@@ -0,0 +1,210 @@
+package dataaccess;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out database slots (one per call in progress, so effectively connections) to three
+ * lanes, so a flood of lobby listings or logins can't keep moves waiting on the database:
+ * <ul>
+ *     <li>every lane has a few slots reserved that the others can't take, so no lane starves;</li>
+ *     <li>the rest are shared, and when one frees up a waiting move gets it before a waiting
+ *     listing, and a listing before a login;</li>
+ *     <li>nobody waits forever: past the lane's patience the call fails with {@link DatabaseBusyException}.</li>
+ * </ul>
+ * Which lane a call is in comes from the thread making it: HTTP routes say so with
+ * {@link #run}, and anything that doesn't (websocket commands, clock timers) counts as gameplay.
+ */
+public final class DbLanes {
+
+    // in priority order
+    public enum Lane {
+        GAMEPLAY(5_000),
+        LOBBY(1_000),
+        ACCOUNT(1_000);
+
+        private final long patienceMillis;
+
+        Lane(long patienceMillis) {
+            this.patienceMillis = patienceMillis;
+        }
+    }
+
+    /**
+     * Told how long each successful acquire waited, e.g. to keep a histogram per lane.
+     */
+    @FunctionalInterface
+    public interface WaitListener {
+        void waited(Lane lane, long nanos);
+    }
+
+    private static final ThreadLocal<Lane> CURRENT = new ThreadLocal<>();
+
+    private final int total;
+    private final int[] reserved = new int[Lane.values().length];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, Condition> turns = new EnumMap<>(Lane.class);
+    // guarded by lock
+    private final int[] inUse = new int[Lane.values().length];
+    private final int[] waiting = new int[Lane.values().length];
+    private int totalInUse;
+
+    private final WaitListener onWait;
+    private final Map<Lane, LongAdder> timeouts = new EnumMap<>(Lane.class);
+
+    /**
+     * @param total            slots altogether
+     * @param gameplayReserved slots only gameplay can use; lobby and account keep total/16 each
+     */
+    public DbLanes(int total, int gameplayReserved) {
+        this(total, gameplayReserved, (lane, nanos) -> {});
+    }
+
+    public DbLanes(int total, int gameplayReserved, WaitListener onWait) {
+        int others = Math.max(1, total / 16);
+        if (gameplayReserved < 1 || gameplayReserved + 2 * others > total) {
+            throw new IllegalArgumentException("not enough slots for the reservations");
+        }
+        this.total = total;
+        this.onWait = onWait;
+        reserved[Lane.GAMEPLAY.ordinal()] = gameplayReserved;
+        reserved[Lane.LOBBY.ordinal()] = others;
+        reserved[Lane.ACCOUNT.ordinal()] = others;
+        for (var lane : Lane.values()) {
+            turns.put(lane, lock.newCondition());
+            timeouts.put(lane, new LongAdder());
+        }
+    }
+
+    /**
+     * Runs work with the calling thread in lane.
+     */
+    public static <T> T run(Lane lane, Callable<T> work) throws Exception {
+        var previous = CURRENT.get();
+        CURRENT.set(lane);
+        try {
+            return work.call();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static Lane current() {
+        var lane = CURRENT.get();
+        return lane == null ? Lane.GAMEPLAY : lane;
+    }
+
+    /**
+     * Waits for a slot in the calling thread's lane.
+     *
+     * @return the lane, to hand back to {@link #release}
+     * @throws DatabaseBusyException if none came free in time
+     */
+    public Lane acquire() throws DataAccessException {
+        var lane = current();
+        int i = lane.ordinal();
+        long start = System.nanoTime();
+        long left = TimeUnit.MILLISECONDS.toNanos(lane.patienceMillis);
+        lock.lock();
+        try {
+            waiting[i]++;
+            try {
+                while (!mayGo(lane)) {
+                    if (left <= 0) {
+                        timeouts.get(lane).increment();
+                        throw new DatabaseBusyException("database busy");
+                    }
+                    left = turns.get(lane).awaitNanos(left);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessException("interrupted waiting for the database", e);
+            } finally {
+                waiting[i]--;
+            }
+            inUse[i]++;
+            totalInUse++;
+        } finally {
+            // whoever's next may be able to go too (a slot we passed on, or a lower lane)
+            wakeNext();
+            lock.unlock();
+        }
+        onWait.waited(lane, System.nanoTime() - start);
+        return lane;
+    }
+
+    public void release(Lane lane) {
+        lock.lock();
+        try {
+            inUse[lane.ordinal()]--;
+            totalInUse--;
+            wakeNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // room for one more once the other lanes' unused reservations are held back
+    private boolean hasRoom(Lane lane) {
+        int needed = totalInUse + 1;
+        for (var other : Lane.values()) {
+            if (other != lane) {
+                needed += Math.max(0, reserved[other.ordinal()] - inUse[other.ordinal()]);
+            }
+        }
+        return needed <= total;
+    }
+
+    // a lane goes when it has room and no higher-priority lane is waiting for the same slot
+    private boolean mayGo(Lane lane) {
+        if (!hasRoom(lane)) {
+            return false;
+        }
+        for (var higher : Lane.values()) {
+            if (higher == lane) {
+                return true;
+            }
+            if (waiting[higher.ordinal()] > 0 && hasRoom(higher)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void wakeNext() {
+        for (var lane : Lane.values()) {
+            if (waiting[lane.ordinal()] > 0 && hasRoom(lane)) {
+                turns.get(lane).signalAll();
+                return;
+            }
+        }
+    }
+
+    public int inUse(Lane lane) {
+        lock.lock();
+        try {
+            return inUse[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int waiting(Lane lane) {
+        lock.lock();
+        try {
+            return waiting[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // calls that gave up waiting
+    public long timeouts(Lane lane) {
+        return timeouts.get(lane).sum();
+    }
+}
@@ -0,0 +1,91 @@
+package dataaccess;
+
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static dataaccess.DbLanes.Lane.ACCOUNT;
+import static dataaccess.DbLanes.Lane.GAMEPLAY;
+import static dataaccess.DbLanes.Lane.LOBBY;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DbLanesTest {
+
+    // 16 slots: 4 only for gameplay, 1 each only for lobby and account
+    private final DbLanes lanes = new DbLanes(16, 4);
+
+    private void take(DbLanes.Lane lane, int n) throws Exception {
+        for (int i = 0; i < n; i++) {
+            DbLanes.run(lane, lanes::acquire);
+        }
+    }
+
+    // waits for a slot on its own thread and reports which lane got one
+    private void waitFor(DbLanes.Lane lane, BlockingQueue<String> got) throws InterruptedException {
+        Thread.ofVirtual().start(() -> {
+            try {
+                DbLanes.run(lane, lanes::acquire);
+                got.add(lane.name());
+            } catch (Exception e) {
+                got.add(lane + " " + e.getClass().getSimpleName());
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (lanes.waiting(lane) == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, lanes.waiting(lane));
+    }
+
+    @Test
+    void lanesPositiveGameplayGoesFirst() throws Exception {
+        assertEquals(GAMEPLAY, DbLanes.current(), "unmarked threads are gameplay");
+        take(ACCOUNT, 10);
+        take(LOBBY, 1);
+        take(GAMEPLAY, 5);
+        assertEquals(10, lanes.inUse(ACCOUNT));
+
+        var got = new LinkedBlockingQueue<String>();
+        // the listing was waiting first, but a move gets the next free slot
+        waitFor(LOBBY, got);
+        waitFor(GAMEPLAY, got);
+        lanes.release(ACCOUNT);
+        assertEquals("GAMEPLAY", got.poll(2, TimeUnit.SECONDS));
+        assertNull(got.poll(100, TimeUnit.MILLISECONDS));
+        lanes.release(ACCOUNT);
+        assertEquals("LOBBY", got.poll(2, TimeUnit.SECONDS));
+        assertEquals(6, lanes.inUse(GAMEPLAY));
+        assertEquals(2, lanes.inUse(LOBBY));
+    }
+
+    @Test
+    void lanesNegativeNoLaneTakesAnotherLanesReservation() throws Exception {
+        // a flood of moves stops at 14, leaving the lobby and account slot alone
+        take(GAMEPLAY, 14);
+        take(LOBBY, 1);
+        take(ACCOUNT, 1);
+
+        // everything's taken now: the next listing gives up after a second instead of hanging
+        long start = System.nanoTime();
+        assertThrows(DatabaseBusyException.class, () -> take(LOBBY, 1));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(1, lanes.timeouts(LOBBY));
+        assertEquals(0, lanes.waiting(LOBBY));
+        lanes.release(GAMEPLAY);
+        take(LOBBY, 1);
+
+        // and lobby and account traffic together never get into gameplay's 4
+        var other = new DbLanes(16, 4);
+        for (int i = 0; i < 10; i++) {
+            DbLanes.run(LOBBY, other::acquire);
+        }
+        for (int i = 0; i < 2; i++) {
+            DbLanes.run(ACCOUNT, other::acquire);
+        }
+        assertThrows(DatabaseBusyException.class, () -> DbLanes.run(ACCOUNT, other::acquire));
+        assertEquals(12, other.inUse(LOBBY) + other.inUse(ACCOUNT));
+        assertThrows(IllegalArgumentException.class, () -> new DbLanes(4, 4));
+    }
+}
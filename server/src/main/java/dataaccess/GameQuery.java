@@ -0,0 +1,38 @@
+package dataaccess;
+
+import model.GameStatus;
+import model.GameSummaryData;
+
+/**
+ * Filter + cursor for listing game summaries.
+ *
+ * @param afterId  only return games with an id greater than this (0 = from the start)
+ * @param limit    max rows to return, 0 means no limit
+ * @param openOnly only games with at least one empty seat
+ * @param player   only games where this user sits as white or black (null = anyone)
+ * @param status   only games in this phase (null = any)
+ */
+public record GameQuery(int afterId, int limit, boolean openOnly, String player, GameStatus.Phase status) {
+
+    public GameQuery(int afterId, int limit, boolean openOnly, String player) {
+        this(afterId, limit, openOnly, player, null);
+    }
+
+    public static GameQuery all() {
+        return new GameQuery(0, 0, false, null);
+    }
+
+    // same rules as the WHERE clause in MySqlDataAccess.listGameSummaries
+    public boolean matches(GameSummaryData g) {
+        if (g.gameID() <= afterId) {
+            return false;
+        }
+        if (openOnly && g.whiteUsername() != null && g.blackUsername() != null) {
+            return false;
+        }
+        if (status != null && g.status().phase() != status) {
+            return false;
+        }
+        return player == null || player.equals(g.whiteUsername()) || player.equals(g.blackUsername());
+    }
+}
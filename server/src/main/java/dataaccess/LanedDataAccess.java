@@ -0,0 +1,118 @@
+package dataaccess;
+
+import model.AuthData;
+import model.GameData;
+import model.GameSummaryData;
+import model.UserData;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Wraps another DataAccess so every call first takes a slot from {@link DbLanes} in the calling
+ * thread's lane, and gives it back when it's done.
+ */
+public class LanedDataAccess implements DataAccess {
+
+    private final DataAccess delegate;
+    private final DbLanes lanes;
+
+    public LanedDataAccess(DataAccess delegate, DbLanes lanes) {
+        this.delegate = delegate;
+        this.lanes = lanes;
+    }
+
+    private interface Call<T> {
+        T run() throws DataAccessException;
+    }
+
+    private interface VoidCall {
+        void run() throws DataAccessException;
+    }
+
+    private <T> T gated(Call<T> call) throws DataAccessException {
+        var lane = lanes.acquire();
+        try {
+            return call.run();
+        } finally {
+            lanes.release(lane);
+        }
+    }
+
+    private void gated(VoidCall call) throws DataAccessException {
+        gated(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        gated(delegate::clear);
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        gated(() -> delegate.createUser(user));
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return gated(() -> delegate.getUser(username));
+    }
+
+    @Override
+    public void updatePasswordHash(String username, String passwordHash) throws DataAccessException {
+        gated(() -> delegate.updatePasswordHash(username, passwordHash));
+    }
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        gated(() -> delegate.createAuth(auth));
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        return gated(() -> delegate.getAuth(authToken));
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        gated(() -> delegate.deleteAuth(authToken));
+    }
+
+    @Override
+    public int createGame(GameData game) throws DataAccessException {
+        return gated(() -> delegate.createGame(game));
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        return gated(() -> delegate.getGame(gameID));
+    }
+
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        return gated(delegate::listGames);
+    }
+
+    @Override
+    public GameSummaryData getGameSummary(int gameID) throws DataAccessException {
+        return gated(() -> delegate.getGameSummary(gameID));
+    }
+
+    @Override
+    public List<GameSummaryData> listGameSummaries(GameQuery query) throws DataAccessException {
+        return gated(() -> delegate.listGameSummaries(query));
+    }
+
+    @Override
+    public SeatClaim claimSeat(int gameID, boolean white, String username) throws DataAccessException {
+        return gated(() -> delegate.claimSeat(gameID, white, username));
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        gated(() -> delegate.updateGame(game));
+    }
+}
@@ -2,10 +2,13 @@ package dataaccess;
 
 import model.AuthData;
 import model.GameData;
+import model.GameSummaryData;
 import model.UserData;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -44,6 +47,15 @@ public class MemoryDataAccess implements DataAccess {
         return users.get(username);
     }
 
+    @Override
+    public void updatePasswordHash(String username, String passwordHash) throws DataAccessException {
+        var user = getUser(username);
+        if (user == null) {
+            throw new DataAccessException("no such user: " + username);
+        }
+        users.put(username, new UserData(username, passwordHash, user.email()));
+    }
+
     //authentication
     @Override
     public void createAuth(AuthData auth) throws DataAccessException {
@@ -79,7 +91,10 @@ public class MemoryDataAccess implements DataAccess {
                 game.whiteUsername(),
                 game.blackUsername(),
                 game.gameName(),
-                game.game()
+                game.game(),
+                0,
+                game.status(),
+                game.clock()
         );
         games.put(id, toStore);
         return id;
@@ -87,7 +102,13 @@ public class MemoryDataAccess implements DataAccess {
 
     @Override
     public GameData getGame(int gameID) {
-        return games.get(gameID);
+        GameData g = games.get(gameID);
+        if (g == null) {
+            return null;
+        }
+        // hand out a copy like a real read would, so callers can't change the stored game
+        // without going through updateGame's version check
+        return g.withGame(g.game() == null ? null : g.game().copy());
     }
 
     @Override
@@ -95,14 +116,63 @@ public class MemoryDataAccess implements DataAccess {
         return Collections.unmodifiableCollection(games.values());
     }
 
+    @Override
+    public GameSummaryData getGameSummary(int gameID) {
+        GameData g = games.get(gameID);
+        return g == null ? null : summary(g);
+    }
+
+    private static GameSummaryData summary(GameData g) {
+        return new GameSummaryData(g.gameID(), g.whiteUsername(), g.blackUsername(), g.gameName(),
+                g.status(), g.version());
+    }
+
+    @Override
+    public List<GameSummaryData> listGameSummaries(GameQuery query) {
+        var stream = games.values().stream()
+                .map(MemoryDataAccess::summary)
+                .filter(query::matches)
+                .sorted(Comparator.comparingInt(GameSummaryData::gameID));
+        if (query.limit() > 0) {
+            stream = stream.limit(query.limit());
+        }
+        return stream.toList();
+    }
+
+    @Override
+    public SeatClaim claimSeat(int gameID, boolean white, String username) {
+        SeatClaim[] result = {SeatClaim.NO_SUCH_GAME};
+        games.computeIfPresent(gameID, (id, g) -> {
+            if ((white ? g.whiteUsername() : g.blackUsername()) != null) {
+                result[0] = SeatClaim.TAKEN;
+                return g;
+            }
+            result[0] = SeatClaim.CLAIMED;
+            return g.withSeats(white ? username : g.whiteUsername(), white ? g.blackUsername() : username)
+                    .withVersion(g.version() + 1);
+        });
+        return result[0];
+    }
+
     @Override
     public void updateGame(GameData game) throws DataAccessException {
         if (game == null) {
             throw new DataAccessException("null game");
         }
-        if (!games.containsKey(game.gameID())) {
+        boolean[] conflict = new boolean[1];
+        GameData stored = games.computeIfPresent(game.gameID(), (id, current) -> {
+            if (current.version() != game.version()) {
+                conflict[0] = true;
+                return current;
+            }
+            // OPEN/ACTIVE always follow the seats, whatever the caller passed
+            return game.withSeats(game.whiteUsername(), game.blackUsername()).withVersion(current.version() + 1);
+        });
+        if (stored == null) {
             throw new DataAccessException("no such game: " + game.gameID());
         }
-        games.put(game.gameID(), game);
+        if (conflict[0]) {
+            throw new ConcurrentUpdateException("game " + game.gameID() + " changed since version " + game.version());
+        }
     }
 }
@@ -1,21 +1,38 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessGameCodec;
 import com.google.gson.Gson;
 import model.AuthData;
+import model.GameClock;
 import model.GameData;
+import model.GameStatus;
+import model.GameSummaryData;
 import model.UserData;
+import websocket.WireFormat;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
+/**
+ * MySQL implementation. Every call also emits a chess.DaoCall JFR event (rows = -1 when it
+ * failed), which costs nothing unless a flight recording has that event turned on.
+ */
 public class MySqlDataAccess implements DataAccess {
 
-    private static final Gson GSON = new Gson();
+    private static final Gson GSON = WireFormat.STANDARD.gson();
+    private static final String CLOCK_COLUMNS = "clockBase, clockIncrement, whiteMillis, blackMillis, turnStartedAt";
 
     @Override
     public void clear() throws DataAccessException {
+        var event = DaoCallEvent.start("clear");
         try (var conn = DatabaseManager.getConnection();
              var st = conn.createStatement()) {
             st.executeUpdate("SET FOREIGN_KEY_CHECKS = 0");
@@ -23,7 +40,9 @@ public class MySqlDataAccess implements DataAccess {
             st.executeUpdate("TRUNCATE TABLE game");
             st.executeUpdate("TRUNCATE TABLE user");
             st.executeUpdate("SET FOREIGN_KEY_CHECKS = 1");
+            event.end(0);
         } catch (Exception e) {
+            event.end(-1);
             throw new DataAccessException("clear failed", e);
         }
     }
@@ -32,13 +51,15 @@ public class MySqlDataAccess implements DataAccess {
     @Override
     public void createUser(UserData user) throws DataAccessException {
         final String sql = "INSERT INTO user (username, passwordHash, email) VALUES (?,?,?)";
+        var event = DaoCallEvent.start("createUser");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             ps.setString(1, user.username());
             ps.setString(2, user.passwordHash());
             ps.setString(3, user.email());
-            ps.executeUpdate();
+            event.end(ps.executeUpdate());
         } catch (Exception e) {
+            event.end(-1);
             throw new DataAccessException("createUser failed", e);
         }
     }
@@ -46,13 +67,16 @@ public class MySqlDataAccess implements DataAccess {
     @Override
     public UserData getUser(String username) throws DataAccessException {
         final String sql = "SELECT username, passwordHash, email FROM user WHERE username=?";
+        var event = DaoCallEvent.start("getUser");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             ps.setString(1, username);
             try (var rs = ps.executeQuery()) {
                 if (!rs.next()) {
+                    event.end(0);
                     return null;
                 }
+                event.end(1);
                 return new UserData(
                         rs.getString("username"),
                         rs.getString("passwordHash"),
@@ -60,20 +84,42 @@ public class MySqlDataAccess implements DataAccess {
                 );
             }
         } catch (Exception e) {
+            event.end(-1);
             throw new DataAccessException("getUser failed", e);
         }
     }
 
+    @Override
+    public void updatePasswordHash(String username, String passwordHash) throws DataAccessException {
+        final String sql = "UPDATE user SET passwordHash=? WHERE username=?";
+        var event = DaoCallEvent.start("updatePasswordHash");
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, passwordHash);
+            ps.setString(2, username);
+            int rows = ps.executeUpdate();
+            event.end(rows);
+            if (rows == 0) {
+                throw new DataAccessException("updatePasswordHash: user not found " + username);
+            }
+        } catch (Exception e) {
+            event.end(-1);
+            throw new DataAccessException("updatePasswordHash failed", e);
+        }
+    }
+
     // auth
     @Override
     public void createAuth(AuthData auth) throws DataAccessException {
         final String sql = "INSERT INTO auth (token, username) VALUES (?,?)";
+        var event = DaoCallEvent.start("createAuth");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             ps.setString(1, auth.authToken());
             ps.setString(2, auth.username());
-            ps.executeUpdate();
+            event.end(ps.executeUpdate());
         } catch (Exception e) {
+            event.end(-1);
             throw new DataAccessException("createAuth failed", e);
         }
     }
@@ -81,19 +127,23 @@ public class MySqlDataAccess implements DataAccess {
     @Override
     public AuthData getAuth(String authToken) throws DataAccessException {
         final String sql = "SELECT token, username FROM auth WHERE token=?";
+        var event = DaoCallEvent.start("getAuth");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             ps.setString(1, authToken);
             try (var rs = ps.executeQuery()) {
                 if (!rs.next()) {
+                    event.end(0);
                     return null;
                 }
+                event.end(1);
                 return new AuthData(
                         rs.getString("token"),
                         rs.getString("username")
                 );
             }
         } catch (Exception e) {
+            event.end(-1);
             throw new DataAccessException("getAuth failed", e);
         }
     }
@@ -101,11 +151,13 @@ public class MySqlDataAccess implements DataAccess {
     @Override
     public void deleteAuth(String authToken) throws DataAccessException {
         final String sql = "DELETE FROM auth WHERE token=?";
+        var event = DaoCallEvent.start("deleteAuth");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             ps.setString(1, authToken);
-            ps.executeUpdate();
+            event.end(ps.executeUpdate());
         } catch (Exception e) {
+            event.end(-1);
             throw new DataAccessException("deleteAuth failed", e);
         }
     }
@@ -113,81 +165,241 @@ public class MySqlDataAccess implements DataAccess {
     // games
     @Override
     public int createGame(GameData game) throws DataAccessException {
-        final String sql = "INSERT INTO game (name, whiteUsername, blackUsername, gameJson) VALUES (?,?,?,?)";
+        // new rows only get the binary form; gameJson stays empty
+        final String sql = "INSERT INTO game (name, whiteUsername, blackUsername, gameJson, gameBlob, "
+                + "status, result, reason, " + CLOCK_COLUMNS + ") VALUES (?,?,?,'',?,?,?,?,?,?,?,?,?)";
+        var event = DaoCallEvent.start("createGame");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            // serializing
-            String json = GSON.toJson(game.game()); // game.game() returns ChessGame
-
             ps.setString(1, game.gameName());
             ps.setString(2, game.whiteUsername());
             ps.setString(3, game.blackUsername());
-            ps.setString(4, json);
-            ps.executeUpdate();
+            ps.setBytes(4, ChessGameCodec.encode(game.game()));
+            setStatus(ps, 5, game.status());
+            setClock(ps, 8, game.clock());
+            int rows = ps.executeUpdate();
 
             try (var keys = ps.getGeneratedKeys()) {
                 if (keys.next()) {
-                    return keys.getInt(1);
+                    int id = keys.getInt(1);
+                    event.end(rows, id);
+                    return id;
                 }
             }
             throw new DataAccessException("createGame: no generated key");
         } catch (Exception e) {
+            event.end(-1);
             throw new DataAccessException("createGame failed", e);
         }
     }
 
     @Override
     public GameData getGame(int gameID) throws DataAccessException {
-        final String sql = "SELECT id, name, whiteUsername, blackUsername, gameJson FROM game WHERE id=?";
+        final String sql = "SELECT id, name, whiteUsername, blackUsername, gameJson, gameBlob, version, "
+                + "status, result, reason, " + CLOCK_COLUMNS + " FROM game WHERE id=?";
+        var event = DaoCallEvent.start("getGame");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             ps.setInt(1, gameID);
             try (var rs = ps.executeQuery()) {
                 if (!rs.next()) {
+                    event.end(0, gameID);
                     return null;
                 }
 
-                ChessGame cg = GSON.fromJson(rs.getString("gameJson"), ChessGame.class);
+                byte[] blob = rs.getBytes("gameBlob");
+                ChessGame cg = readGame(blob, rs.getString("gameJson"));
+                if (blob == null) {
+                    migrateToBlob(conn, gameID, rs.getInt("version"), cg);
+                }
 
-                // (id, white, black, name, game)
-                return new GameData(
+                // (id, white, black, name, game, version, status, clock)
+                var data = new GameData(
                         rs.getInt("id"),
                         rs.getString("whiteUsername"),
                         rs.getString("blackUsername"),
                         rs.getString("name"),
-                        cg
+                        cg,
+                        rs.getInt("version"),
+                        readStatus(rs),
+                        readClock(rs)
                 );
+                event.end(1, gameID);
+                return data;
             }
         } catch (Exception e) {
+            event.end(-1, gameID);
             throw new DataAccessException("getGame failed", e);
         }
     }
 
+    // rows written before the gameBlob column existed only have JSON
+    private static ChessGame readGame(byte[] blob, String json) {
+        if (blob != null) {
+            return ChessGameCodec.decode(blob);
+        }
+        return GSON.fromJson(json, ChessGame.class);
+    }
+
+    // lazy migration: the first read of an old row stores the binary form. Guarded on the version
+    // so it can't overwrite a concurrent update, and it doesn't bump it since the game didn't change.
+    private static void migrateToBlob(Connection conn, int gameID, int version, ChessGame game) {
+        final String sql = "UPDATE game SET gameBlob=?, gameJson='' WHERE id=? AND version=? AND gameBlob IS NULL";
+        try (var ps = conn.prepareStatement(sql)) {
+            ps.setBytes(1, ChessGameCodec.encode(game));
+            ps.setInt(2, gameID);
+            ps.setInt(3, version);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            // not fatal, the next read just tries again
+        }
+    }
+
     @Override
     public Collection<GameData> listGames() throws DataAccessException {
-        final String sql = "SELECT id, name, whiteUsername, blackUsername, gameJson FROM game ORDER BY id";
+        final String sql = "SELECT id, name, whiteUsername, blackUsername, gameJson, gameBlob, version, "
+                + "status, result, reason, " + CLOCK_COLUMNS + " FROM game ORDER BY id";
         var out = new ArrayList<GameData>();
+        var event = DaoCallEvent.start("listGames");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql);
              var rs = ps.executeQuery()) {
             while (rs.next()) {
-                ChessGame cg = GSON.fromJson(rs.getString("gameJson"), ChessGame.class);
-                // (id, white, black, name, game)
+                ChessGame cg = readGame(rs.getBytes("gameBlob"), rs.getString("gameJson"));
+                // (id, white, black, name, game, version, status, clock)
                 out.add(new GameData(
                         rs.getInt("id"),
                         rs.getString("whiteUsername"),
                         rs.getString("blackUsername"),
                         rs.getString("name"),
-                        cg
+                        cg,
+                        rs.getInt("version"),
+                        readStatus(rs),
+                        readClock(rs)
                 ));
             }
+            event.end(out.size());
             return out;
         } catch (Exception e) {
+            event.end(-1);
             throw new DataAccessException("listGames failed", e);
         }
     }
 
+    @Override
+    public GameSummaryData getGameSummary(int gameID) throws DataAccessException {
+        // a primary key lookup that leaves the board columns alone
+        final String sql = "SELECT id, name, whiteUsername, blackUsername, status, result, reason, version"
+                + " FROM game WHERE id=?";
+        var event = DaoCallEvent.start("getGameSummary");
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, gameID);
+            try (var rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    event.end(0, gameID);
+                    return null;
+                }
+                var data = new GameSummaryData(
+                        rs.getInt("id"),
+                        rs.getString("whiteUsername"),
+                        rs.getString("blackUsername"),
+                        rs.getString("name"),
+                        readStatus(rs),
+                        rs.getInt("version")
+                );
+                event.end(1, gameID);
+                return data;
+            }
+        } catch (Exception e) {
+            event.end(-1, gameID);
+            throw new DataAccessException("getGameSummary failed", e);
+        }
+    }
+
+    @Override
+    public List<GameSummaryData> listGameSummaries(GameQuery query) throws DataAccessException {
+        // gameJson is deliberately left out, the lobby never needs the board
+        var sql = new StringBuilder(
+                "SELECT id, name, whiteUsername, blackUsername, status, result, reason, version FROM game WHERE id > ?");
+        if (query.openOnly()) {
+            sql.append(" AND (whiteUsername IS NULL OR blackUsername IS NULL)");
+        }
+        if (query.status() != null) {
+            // idx_game_status (status, id) covers this plus the ORDER BY
+            sql.append(" AND status = ?");
+        }
+        if (query.player() != null) {
+            sql.append(" AND (whiteUsername = ? OR blackUsername = ?)");
+        }
+        sql.append(" ORDER BY id");
+        if (query.limit() > 0) {
+            sql.append(" LIMIT ?");
+        }
+
+        var out = new ArrayList<GameSummaryData>();
+        var event = DaoCallEvent.start("listGameSummaries");
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            ps.setInt(i++, query.afterId());
+            if (query.status() != null) {
+                ps.setString(i++, query.status().name());
+            }
+            if (query.player() != null) {
+                ps.setString(i++, query.player());
+                ps.setString(i++, query.player());
+            }
+            if (query.limit() > 0) {
+                ps.setInt(i, query.limit());
+            }
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new GameSummaryData(
+                            rs.getInt("id"),
+                            rs.getString("whiteUsername"),
+                            rs.getString("blackUsername"),
+                            rs.getString("name"),
+                            readStatus(rs),
+                            rs.getInt("version")
+                    ));
+                }
+            }
+            event.end(out.size());
+            return out;
+        } catch (Exception e) {
+            event.end(-1);
+            throw new DataAccessException("listGameSummaries failed", e);
+        }
+    }
+
+    @Override
+    public SeatClaim claimSeat(int gameID, boolean white, String username) throws DataAccessException {
+        // one round trip, no gameJson; the IS NULL check makes it safe against racing joins.
+        // Filling the last seat makes an unfinished game ACTIVE.
+        final String sql = white
+                ? "UPDATE game SET whiteUsername=?, version=version+1, status=IF(status='FINISHED', status,"
+                        + " IF(blackUsername IS NULL, 'OPEN', 'ACTIVE')) WHERE id=? AND whiteUsername IS NULL"
+                : "UPDATE game SET blackUsername=?, version=version+1, status=IF(status='FINISHED', status,"
+                        + " IF(whiteUsername IS NULL, 'OPEN', 'ACTIVE')) WHERE id=? AND blackUsername IS NULL";
+        var event = DaoCallEvent.start("claimSeat");
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, username);
+            ps.setInt(2, gameID);
+            int rows = ps.executeUpdate();
+            event.end(rows, gameID);
+            if (rows == 1) {
+                return SeatClaim.CLAIMED;
+            }
+            return gameExists(conn, gameID) ? SeatClaim.TAKEN : SeatClaim.NO_SUCH_GAME;
+        } catch (Exception e) {
+            event.end(-1, gameID);
+            throw new DataAccessException("claimSeat failed", e);
+        }
+    }
+
     @Override
     public void updateGame(GameData game) throws DataAccessException {
         final String sql = """
@@ -195,26 +407,97 @@ public class MySqlDataAccess implements DataAccess {
                SET name=?,
                    whiteUsername=?,
                    blackUsername=?,
-                   gameJson=?
-             WHERE id=?
+                   gameJson='',
+                   gameBlob=?,
+                   status=?,
+                   result=?,
+                   reason=?,
+                   clockBase=?,
+                   clockIncrement=?,
+                   whiteMillis=?,
+                   blackMillis=?,
+                   turnStartedAt=?,
+                   version=version+1
+             WHERE id=? AND version=?
         """;
+        var event = DaoCallEvent.start("updateGame");
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
 
-            // serializing the gamechess
-            String json = GSON.toJson(game.game());
-
             ps.setString(1, game.gameName());
             ps.setString(2, game.whiteUsername());
             ps.setString(3, game.blackUsername());
-            ps.setString(4, json);
-            ps.setInt(5, game.gameID());
+            ps.setBytes(4, ChessGameCodec.encode(game.game()));
+            // OPEN/ACTIVE always follow the seats, whatever the caller passed
+            setStatus(ps, 5, game.status().afterSeats(game.whiteUsername(), game.blackUsername()));
+            setClock(ps, 8, game.clock());
+            ps.setInt(13, game.gameID());
+            ps.setInt(14, game.version());
 
-            if (ps.executeUpdate() == 0) {
+            int rows = ps.executeUpdate();
+            event.end(rows, game.gameID());
+            if (rows == 0) {
+                // either the game is gone or its version moved on
+                if (gameExists(conn, game.gameID())) {
+                    throw new ConcurrentUpdateException("game " + game.gameID()
+                            + " changed since version " + game.version());
+                }
                 throw new DataAccessException("updateGame: game not found id=" + game.gameID());
             }
+        } catch (ConcurrentUpdateException e) {
+            throw e;
         } catch (Exception e) {
+            event.end(-1, game.gameID());
             throw new DataAccessException("updateGame failed", e);
         }
     }
+
+    // status, result, reason starting at parameter index i
+    private static void setStatus(PreparedStatement ps, int i, GameStatus status) throws SQLException {
+        ps.setString(i, status.phase().name());
+        ps.setString(i + 1, status.result() == null ? null : status.result().name());
+        ps.setString(i + 2, status.reason() == null ? null : status.reason().name());
+    }
+
+    // the five clock columns starting at parameter index i, all null for an untimed game
+    private static void setClock(PreparedStatement ps, int i, GameClock clock) throws SQLException {
+        if (clock == null) {
+            for (int k = 0; k < 5; k++) {
+                ps.setNull(i + k, Types.BIGINT);
+            }
+            return;
+        }
+        ps.setLong(i, clock.baseMillis());
+        ps.setLong(i + 1, clock.incrementMillis());
+        ps.setLong(i + 2, clock.whiteMillis());
+        ps.setLong(i + 3, clock.blackMillis());
+        ps.setLong(i + 4, clock.turnStartedAt());
+    }
+
+    private static GameClock readClock(ResultSet rs) throws SQLException {
+        long base = rs.getLong("clockBase");
+        if (rs.wasNull()) {
+            return null;
+        }
+        return new GameClock(base, rs.getLong("clockIncrement"), rs.getLong("whiteMillis"),
+                rs.getLong("blackMillis"), rs.getLong("turnStartedAt"));
+    }
+
+    private static GameStatus readStatus(ResultSet rs) throws SQLException {
+        String result = rs.getString("result");
+        String reason = rs.getString("reason");
+        return GameStatus.of(
+                GameStatus.Phase.valueOf(rs.getString("status")),
+                result == null ? null : GameStatus.Result.valueOf(result),
+                reason == null ? null : GameStatus.Reason.valueOf(reason));
+    }
+
+    private static boolean gameExists(Connection conn, int gameID) throws SQLException {
+        try (var ps = conn.prepareStatement("SELECT 1 FROM game WHERE id=?")) {
+            ps.setInt(1, gameID);
+            try (var rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
 }
@@ -3,6 +3,7 @@ package dataaccess;
 import chess.ChessGame;
 import model.AuthData;
 import model.GameData;
+import model.GameStatus;
 import model.UserData;
 import org.junit.jupiter.api.*;
 import org.mindrot.jbcrypt.BCrypt;
@@ -193,4 +194,181 @@ public class MySqlDataAccessTests {
         var bad = new GameData(999_999, "w", "b", "ghost", new ChessGame());
         assertThrows(DataAccessException.class, () -> dao.updateGame(bad));
     }
+
+    @Test @DisplayName("20. listGameSummaries — positive (cursor + open filter)")
+    void listGameSummariesPositive() throws Exception {
+        var hash = BCrypt.hashpw("pw", BCrypt.gensalt());
+        dao.createUser(new UserData("white", hash, "w@w"));
+        dao.createUser(new UserData("black", hash, "b@b"));
+
+        int a = dao.createGame(newGame("a"));
+        dao.createGame(newGame("b"));
+        dao.updateGame(new GameData(a, "white", "black", "a", new ChessGame()));
+
+        var open = dao.listGameSummaries(new GameQuery(0, 0, true, null));
+        assertEquals(1, open.size());
+        assertEquals("b", open.get(0).gameName());
+
+        var afterA = dao.listGameSummaries(new GameQuery(a, 10, false, null));
+        assertEquals(1, afterA.size());
+
+        var byPlayer = dao.listGameSummaries(new GameQuery(0, 0, false, "black"));
+        assertEquals(1, byPlayer.size());
+        assertEquals(a, byPlayer.get(0).gameID());
+    }
+
+    @Test @DisplayName("21. listGameSummaries — negative (no matches)")
+    void listGameSummariesNoMatchNegative() throws Exception {
+        dao.createGame(newGame("a"));
+        assertTrue(dao.listGameSummaries(new GameQuery(0, 0, false, "nobody")).isEmpty());
+    }
+
+    @Test @DisplayName("22. updatePasswordHash — positive")
+    void updatePasswordHashPositive() throws Exception {
+        var hash = BCrypt.hashpw("pw", BCrypt.gensalt(4));
+        dao.createUser(new UserData("erin", hash, "e@e"));
+        var newer = BCrypt.hashpw("pw", BCrypt.gensalt(5));
+        dao.updatePasswordHash("erin", newer);
+        assertEquals(newer, dao.getUser("erin").passwordHash());
+    }
+
+    @Test @DisplayName("23. updatePasswordHash — negative (no such user)")
+    void updatePasswordHashMissingNegative() {
+        assertThrows(DataAccessException.class, () -> dao.updatePasswordHash("ghost", "x"));
+    }
+
+    @Test @DisplayName("24. updateGame — positive (version bumps)")
+    void updateGameVersionPositive() throws Exception {
+        int id = dao.createGame(newGame("v"));
+        var g = dao.getGame(id);
+        assertEquals(0, g.version());
+
+        dao.updateGame(new GameData(id, null, null, "v2", g.game(), g.version()));
+        assertEquals(1, dao.getGame(id).version());
+        assertEquals("v2", dao.getGame(id).gameName());
+    }
+
+    @Test @DisplayName("25. updateGame — negative (stale version)")
+    void updateGameStaleVersionNegative() throws Exception {
+        int id = dao.createGame(newGame("v"));
+        var g = dao.getGame(id);
+        dao.updateGame(new GameData(id, null, null, "first", g.game(), g.version()));
+
+        var stale = new GameData(id, null, null, "second", g.game(), g.version());
+        assertThrows(ConcurrentUpdateException.class, () -> dao.updateGame(stale));
+        assertEquals("first", dao.getGame(id).gameName());
+    }
+
+    @Test @DisplayName("26. claimSeat — positive")
+    void claimSeatPositive() throws Exception {
+        var hash = BCrypt.hashpw("pw", BCrypt.gensalt(4));
+        dao.createUser(new UserData("white", hash, "w@w"));
+        int id = dao.createGame(newGame("seat"));
+
+        assertEquals(SeatClaim.CLAIMED, dao.claimSeat(id, true, "white"));
+        var g = dao.getGame(id);
+        assertEquals("white", g.whiteUsername());
+        assertNull(g.blackUsername());
+        assertEquals(1, g.version());
+    }
+
+    @Test @DisplayName("27. claimSeat — negative (taken / missing game)")
+    void claimSeatNegative() throws Exception {
+        var hash = BCrypt.hashpw("pw", BCrypt.gensalt(4));
+        dao.createUser(new UserData("white", hash, "w@w"));
+        dao.createUser(new UserData("other", hash, "o@o"));
+        int id = dao.createGame(newGame("seat"));
+        dao.claimSeat(id, true, "white");
+
+        assertEquals(SeatClaim.TAKEN, dao.claimSeat(id, true, "other"));
+        assertEquals("white", dao.getGame(id).whiteUsername());
+        assertEquals(SeatClaim.NO_SUCH_GAME, dao.claimSeat(999_999, false, "other"));
+    }
+
+    @Test @DisplayName("28. getGame — positive (old JSON row is migrated to the blob)")
+    void getGameMigratesJsonPositive() throws Exception {
+        var game = new ChessGame();
+        game.makeMove(new chess.ChessMove(new chess.ChessPosition(2, 5), new chess.ChessPosition(4, 5), null));
+        int id;
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("INSERT INTO game (name, gameJson) VALUES ('old', ?)",
+                     java.sql.Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, new com.google.gson.Gson().toJson(game));
+            ps.executeUpdate();
+            try (var keys = ps.getGeneratedKeys()) {
+                keys.next();
+                id = keys.getInt(1);
+            }
+        }
+
+        assertEquals(game, dao.getGame(id).game());
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("SELECT gameBlob, gameJson, version FROM game WHERE id=?")) {
+            ps.setInt(1, id);
+            try (var rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertNotNull(rs.getBytes("gameBlob"));
+                assertEquals("", rs.getString("gameJson"));
+                assertEquals(0, rs.getInt("version"));
+            }
+        }
+        assertEquals(game, dao.getGame(id).game());
+    }
+
+    @Test @DisplayName("29. getGame — negative (corrupt blob)")
+    void getGameCorruptBlobNegative() throws Exception {
+        int id = dao.createGame(newGame("bad"));
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("UPDATE game SET gameBlob=? WHERE id=?")) {
+            ps.setBytes(1, new byte[]{42});
+            ps.setInt(2, id);
+            ps.executeUpdate();
+        }
+        assertThrows(DataAccessException.class, () -> dao.getGame(id));
+    }
+
+    @Test @DisplayName("30. game status — positive (seats, finish, filter)")
+    void gameStatusPositive() throws Exception {
+        var hash = BCrypt.hashpw("pw", BCrypt.gensalt(4));
+        dao.createUser(new UserData("white", hash, "w@w"));
+        dao.createUser(new UserData("black", hash, "b@b"));
+        int open = dao.createGame(newGame("open"));
+        int done = dao.createGame(newGame("done"));
+        assertEquals(GameStatus.OPEN, dao.getGame(done).status());
+
+        dao.claimSeat(done, true, "white");
+        assertEquals(GameStatus.OPEN, dao.getGame(done).status());
+        dao.claimSeat(done, false, "black");
+        var g = dao.getGame(done);
+        assertEquals(GameStatus.ACTIVE, g.status());
+
+        var over = GameStatus.finished(GameStatus.Result.BLACK_WON, GameStatus.Reason.CHECKMATE);
+        dao.updateGame(g.withStatus(over));
+        assertEquals(over, dao.getGame(done).status());
+
+        var finished = dao.listGameSummaries(new GameQuery(0, 0, false, null, GameStatus.Phase.FINISHED));
+        assertEquals(1, finished.size());
+        assertEquals(done, finished.get(0).gameID());
+        assertEquals(over, finished.get(0).status());
+        var stillOpen = dao.listGameSummaries(new GameQuery(0, 0, false, null, GameStatus.Phase.OPEN));
+        assertEquals(open, stillOpen.get(0).gameID());
+    }
+
+    @Test @DisplayName("31. game status — negative (finished stays finished when a seat frees)")
+    void gameStatusNegative() throws Exception {
+        var hash = BCrypt.hashpw("pw", BCrypt.gensalt(4));
+        dao.createUser(new UserData("white", hash, "w@w"));
+        int id = dao.createGame(newGame("resigned"));
+        dao.claimSeat(id, true, "white");
+        var over = GameStatus.finished(GameStatus.Result.BLACK_WON, GameStatus.Reason.RESIGNATION);
+        dao.updateGame(dao.getGame(id).withStatus(over));
+
+        var g = dao.getGame(id);
+        dao.updateGame(g.withSeats(null, null));
+        assertEquals(over, dao.getGame(id).status());
+        // a join doesn't reopen it either
+        assertEquals(SeatClaim.CLAIMED, dao.claimSeat(id, true, "white"));
+        assertEquals(over, dao.getGame(id).status());
+        assertTrue(dao.listGameSummaries(new GameQuery(0, 0, false, null, GameStatus.Phase.OPEN)).isEmpty());
+    }
 }
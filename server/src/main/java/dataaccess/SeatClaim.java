@@ -0,0 +1,11 @@
+package dataaccess;
+
+/**
+ * Outcome of {@link DataAccess#claimSeat}.
+ */
+public enum SeatClaim {
+    CLAIMED,
+    // someone already sits there
+    TAKEN,
+    NO_SUCH_GAME
+}
@@ -0,0 +1,137 @@
+package dataaccess;
+
+import model.AuthData;
+import model.GameData;
+import model.GameSummaryData;
+import model.UserData;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Wraps another DataAccess and sleeps before every call, to stand in for a database
+ * round trip in benchmarks without needing MySQL. With a capacity, only that many calls are
+ * served at once and the rest wait their turn, like a database that's run out of headroom.
+ */
+public class SlowDataAccess implements DataAccess {
+
+    private final DataAccess delegate;
+    private final long latencyMillis;
+    // null = unlimited
+    private final Semaphore capacity;
+
+    public SlowDataAccess(DataAccess delegate, long latencyMillis) {
+        this.delegate = delegate;
+        this.latencyMillis = latencyMillis;
+        this.capacity = null;
+    }
+
+    public SlowDataAccess(DataAccess delegate, long latencyMillis, int capacity) {
+        this.delegate = delegate;
+        this.latencyMillis = latencyMillis;
+        this.capacity = new Semaphore(capacity, true);
+    }
+
+    private void pause() throws DataAccessException {
+        try {
+            if (capacity == null) {
+                Thread.sleep(latencyMillis);
+                return;
+            }
+            capacity.acquire();
+            try {
+                Thread.sleep(latencyMillis);
+            } finally {
+                capacity.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("interrupted", e);
+        }
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        pause();
+        delegate.clear();
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        pause();
+        delegate.createUser(user);
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        pause();
+        return delegate.getUser(username);
+    }
+
+    @Override
+    public void updatePasswordHash(String username, String passwordHash) throws DataAccessException {
+        pause();
+        delegate.updatePasswordHash(username, passwordHash);
+    }
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        pause();
+        delegate.createAuth(auth);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        pause();
+        return delegate.getAuth(authToken);
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        pause();
+        delegate.deleteAuth(authToken);
+    }
+
+    @Override
+    public int createGame(GameData game) throws DataAccessException {
+        pause();
+        return delegate.createGame(game);
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        pause();
+        return delegate.getGame(gameID);
+    }
+
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        pause();
+        return delegate.listGames();
+    }
+
+    @Override
+    public GameSummaryData getGameSummary(int gameID) throws DataAccessException {
+        pause();
+        return delegate.getGameSummary(gameID);
+    }
+
+    @Override
+    public List<GameSummaryData> listGameSummaries(GameQuery query) throws DataAccessException {
+        pause();
+        return delegate.listGameSummaries(query);
+    }
+
+    @Override
+    public SeatClaim claimSeat(int gameID, boolean white, String username) throws DataAccessException {
+        pause();
+        return delegate.claimSeat(gameID, white, username);
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        pause();
+        delegate.updateGame(game);
+    }
+}
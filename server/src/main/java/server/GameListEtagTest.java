@@ -0,0 +1,186 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.*;
+import server.ratelimit.RateLimits;
+import service.GameService;
+import websocket.WireFormat;
+import websocket.commands.UserGameCommand;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameListEtagTest {
+
+    private final MemoryDataAccess dao = new MemoryDataAccess();
+    private final HttpClient http = HttpClient.newHttpClient();
+    private Server server;
+    private int port;
+
+    @BeforeEach
+    void start() throws Exception {
+        // fifty creates in a row from this host would otherwise be rate limited
+        server = new Server(ServerConfig.load().withRateExempt(RateLimits.LOOPBACK), dao);
+        port = server.run(0);
+        dao.createUser(new UserData("alice", "x", "a@test"));
+        dao.createAuth(new AuthData("alice-token", "alice"));
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    private HttpResponse<byte[]> list(String token, String etag) throws Exception {
+        return list("", token, etag);
+    }
+
+    private HttpResponse<byte[]> list(String params, String token, String etag) throws Exception {
+        var b = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/game" + params))
+                .header("authorization", token).header("Accept-Encoding", "gzip").GET();
+        if (etag != null) {
+            b.header("If-None-Match", etag);
+        }
+        return http.send(b.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private void create(String name) throws Exception {
+        var req = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/game"))
+                .header("authorization", "alice-token")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"gameName\":\"" + name + "\"}")).build();
+        assertEquals(200, http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    private long listQueries() {
+        return server.metrics().scrape().lines()
+                .filter(l -> l.startsWith("chess_dao_call_seconds_count{op=\"listGameSummaries\"}"))
+                .mapToLong(l -> (long) Double.parseDouble(l.substring(l.lastIndexOf(' ') + 1)))
+                .findFirst().orElseThrow();
+    }
+
+    @Test
+    void etagPositiveUnchangedListIsNotModified() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            create("a game with a fairly long name, number " + i);
+        }
+        var first = list("alice-token", null);
+        assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        // big enough to be worth compressing
+        assertEquals("gzip", first.headers().firstValue("Content-Encoding").orElse(null));
+        String json = new String(new GZIPInputStream(new ByteArrayInputStream(first.body())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertTrue(json.contains("number 49"));
+        assertTrue(first.body().length < json.length() / 3, first.body().length + " vs " + json.length());
+
+        long queries = listQueries();
+        var again = list("alice-token", etag);
+        assertEquals(304, again.statusCode());
+        assertEquals(0, again.body().length);
+        assertEquals(etag, again.headers().firstValue("ETag").orElse(null));
+        assertEquals(queries, listQueries(), "a 304 doesn't touch the games table");
+
+        create("one more");
+        var changed = list("alice-token", etag);
+        assertEquals(200, changed.statusCode());
+        assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+    }
+
+    @Test
+    void etagNegativeStillNeedsAuthAndClearChangesTag() throws Exception {
+        create("g");
+        String etag = list("alice-token", null).headers().firstValue("ETag").orElseThrow();
+        assertEquals(401, list("stolen-etag-no-token", etag).statusCode());
+        assertEquals(200, list("alice-token", "W/\"something-else\"").statusCode());
+
+        var clear = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/db")).DELETE().build();
+        http.send(clear, HttpResponse.BodyHandlers.discarding());
+        dao.createAuth(new AuthData("alice-token", "alice"));
+        var after = list("alice-token", etag);
+        assertEquals(200, after.statusCode());
+        assertNotEquals(etag, after.headers().firstValue("ETag").orElse(null));
+    }
+
+    private static String tag(HttpResponse<?> r) {
+        return r.headers().firstValue("ETag").orElseThrow();
+    }
+
+    @Test
+    void etagPositiveLeaveChangesTag() throws Exception {
+        dao.createUser(new UserData("bob", "x", "b@test"));
+        dao.createAuth(new AuthData("bob-token", "bob"));
+        int id = dao.createGame(new GameData(0, null, "bob", "g", new ChessGame()));
+        String before = tag(list("alice-token", null));
+
+        // bob leaves over the websocket: the game is OPEN before and after, only a seat changes
+        var ws = http.newWebSocketBuilder().buildAsync(URI.create("ws://localhost:" + port + "/ws"),
+                new WebSocket.Listener() { }).get(5, TimeUnit.SECONDS);
+        try {
+            ws.sendText(WireFormat.STANDARD.gson().toJson(
+                    new UserGameCommand(UserGameCommand.CommandType.CONNECT, "bob-token", id)), true).get();
+            ws.sendText(WireFormat.STANDARD.gson().toJson(
+                    new UserGameCommand(UserGameCommand.CommandType.LEAVE, "bob-token", id)), true).get();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (dao.getGame(id).blackUsername() != null) {
+                assertTrue(System.nanoTime() < deadline, "bob never left");
+                Thread.sleep(10);
+            }
+        } finally {
+            ws.abort();
+        }
+        var after = list("alice-token", before);
+        assertEquals(200, after.statusCode());
+        assertNotEquals(before, tag(after));
+    }
+
+    @Test
+    void etagPositiveMoveKeepsTagAndRowsMatchIt() throws Exception {
+        int id = dao.createGame(new GameData(0, "alice", "bob", "g", new ChessGame()));
+        var first = list("alice-token", null);
+        String body = first.headers().firstValue("Content-Encoding").isPresent()
+                ? new String(new GZIPInputStream(new ByteArrayInputStream(first.body())).readAllBytes(),
+                        StandardCharsets.UTF_8)
+                : new String(first.body(), StandardCharsets.UTF_8);
+        // a row shows nothing a move changes, so a 304 after a move isn't confirming anything stale
+        assertFalse(body.contains("version"), body);
+
+        var game = dao.getGame(id);
+        game.game().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        dao.updateGame(game);
+        assertEquals(304, list("alice-token", tag(first)).statusCode());
+    }
+
+    @Test
+    void etagNegativeOtherQueryGetsItsOwnTag() throws Exception {
+        create("g1");
+        create("g2");
+        String all = tag(list("alice-token", null));
+        // a page, a filter or a player isn't the same answer as the whole list
+        for (String params : new String[] {"?limit=1", "?cursor=1", "?open=true", "?player=alice", "?status=open"}) {
+            var r = list(params, "alice-token", all);
+            assertEquals(200, r.statusCode(), params);
+            assertNotEquals(all, tag(r), params);
+            // while the same query again is still a 304
+            assertEquals(304, list(params, "alice-token", tag(r)).statusCode(), params);
+        }
+        // limits past the cap are the same query as the cap
+        String capped = tag(list("?limit=" + GameService.MAX_PAGE_SIZE, "alice-token", null));
+        assertEquals(304, list("?limit=100000", "alice-token", capped).statusCode());
+        assertEquals(400, list("?limit=-1", "alice-token", capped).statusCode());
+    }
+}
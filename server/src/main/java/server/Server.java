@@ -3,35 +3,149 @@ package server;
 import com.google.gson.Gson;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.DatabaseBusyException;
+import dataaccess.DbLanes;
+import dataaccess.GameQuery;
+import dataaccess.LanedDataAccess;
 import dataaccess.MySqlDataAccess;
 //import dataaccess.MemoryDataAccess;
 import dataaccess.DbInitializer;
 import io.javalin.Javalin;
+import io.javalin.http.Handler;
+import io.javalin.util.ConcurrencyUtil;
+import model.GameStatus;
+import server.bus.GameEventBus;
+import server.bus.InProcessGameEventBus;
+import server.bus.NodeMessage;
+import server.bus.TcpGameEventBus;
+import server.clock.TimingWheel;
+import server.cluster.Cluster;
+import server.cluster.HashRing;
+import server.limit.AdaptiveLimiter;
+import server.lobby.LobbyStream;
+import server.metrics.InstrumentedDataAccess;
+import server.metrics.LatencyHistogram;
+import server.metrics.Metrics;
+import server.ratelimit.RateLimits;
+import server.websocket.Broadcaster;
+import server.websocket.CommandDecoder;
 import server.websocket.WebSocketHandler;
+import server.websocket.WsCompression;
+import service.AuthTokens;
 import service.ClearService;
 import service.GameService;
+import service.PasswordHasher;
+import service.ServiceUnavailableException;
 import service.UserService;
+import websocket.commands.UserGameCommand;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Server {
 
     private final Javalin javalin;
     private final Gson gson = new Gson();
 
+    private final ServerConfig config;
+    private final Metrics metrics = new Metrics();
+
     // DAOs / services
-    private final DataAccess dao = new MySqlDataAccess();
-    private final ClearService clearSvc = new ClearService(dao);
-    private final UserService userSvc = new UserService(dao);
-    private final GameService gameSvc = new GameService(dao);
+    private final DataAccess dao;
+    private final PasswordHasher hasher;
+    private final AuthTokens tokens;
+    private final ClearService clearSvc;
+    private final UserService userSvc;
+    private final GameService gameSvc;
+
+    private final GameEventBus bus;
+    // only a bus we made ourselves gets closed on stop()
+    private final boolean ownsBus;
+    private final Cluster cluster;
+    // 50 ms ticks, 256 slots, 4 levels: reaches far past any time control
+    private final TimingWheel wheel = new TimingWheel(50, 256, 4);
+    // part of every game list ETag, so a tag from before a restart never matches
+    private final String bootId = Long.toHexString(new SecureRandom().nextLong());
+    private final LongAdder notModified = new LongAdder();
+    private final RateLimits rateLimits;
+    // in front of every DAO-bound route; null when turned off
+    private final AdaptiveLimiter limiter;
+    // database slots per lane, so lobby traffic can't hold up moves; null when turned off
+    private final DbLanes lanes;
+    // time spent waiting for a database slot, by lane ordinal
+    private final LatencyHistogram[] laneWaits = new LatencyHistogram[DbLanes.Lane.values().length];
+    private final WsCompression wsCompression;
 
     public Server() {
-        // Database initialization
-        try {
-            DbInitializer.init();
-        } catch (Exception e) {
-            throw new RuntimeException("Database initialization failed", e);
+        this(ServerConfig.load(), initMySql());
+    }
+
+    // lets benchmarks and tools run the server against any DataAccess
+    public Server(ServerConfig config, DataAccess dao) {
+        // checked before the bus opens its port
+        this(config, dao, createBus(requireSharedTokenKey(config)), true);
+    }
+
+    // several nodes in one JVM, sharing one bus (and usually one DataAccess)
+    public Server(ServerConfig config, DataAccess dao, GameEventBus bus) {
+        this(config, dao, bus, false);
+    }
+
+    private Server(ServerConfig config, DataAccess dao, GameEventBus bus, boolean ownsBus) {
+        this.config = requireSharedTokenKey(config);
+        this.bus = bus;
+        this.ownsBus = ownsBus;
+        // alone on a private in-process bus there's nobody to talk to
+        boolean alone = ownsBus && config.busPort() == 0;
+        this.cluster = alone
+                ? Cluster.single(config.nodeId())
+                : new Cluster(config.nodeId(), bus, HashRing.DEFAULT_VNODES,
+                        config.heartbeatMillis(), 4L * config.heartbeatMillis());
+        this.rateLimits = createRateLimits(config);
+        this.limiter = config.concurrencyLimit() > 0
+                ? new AdaptiveLimiter(config.concurrencyLimit(), Math.min(4, config.concurrencyLimit()),
+                        Math.max(config.concurrencyLimit(), config.maxConcurrency()))
+                : null;
+        for (int i = 0; i < laneWaits.length; i++) {
+            laneWaits[i] = new LatencyHistogram();
         }
+        this.lanes = config.dbSlots() > 0
+                ? new DbLanes(config.dbSlots(), config.dbGameplayReserved(),
+                        (lane, nanos) -> laneWaits[lane.ordinal()].record(nanos))
+                : null;
+        // lanes outside the timing, so chess_dao_call_seconds stays the database's own time
+        this.dao = lanes != null
+                ? new LanedDataAccess(new InstrumentedDataAccess(dao, metrics), lanes)
+                : new InstrumentedDataAccess(dao, metrics);
+        this.hasher = new PasswordHasher(config.bcryptCost(), config.hashThreads(), config.hashQueueSize());
+        this.tokens = createTokens(config, this.dao);
+        this.clearSvc = new ClearService(this.dao, tokens);
+        this.userSvc = new UserService(this.dao, hasher, tokens);
+        this.gameSvc = new GameService(this.dao, tokens);
 
-        javalin = Javalin.create(cfg -> cfg.staticFiles.add("web"));
+        this.wsCompression = new WsCompression(config.wsDeflateLevel(), config.wsContextTakeover());
+        javalin = Javalin.create(cfg -> {
+            cfg.staticFiles.add("web");
+            // responses over 1500 bytes, when the client accepts it. Brotli would need the native
+            // jvm-brotli library on the classpath; gzip at a middling level is most of the win
+            cfg.http.gzipOnlyCompression(4);
+            wsCompression.configure(cfg);
+            // virtual threads: blocking JDBC / bcrypt waits park the virtual thread instead of
+            // holding one of the pool's platform threads
+            cfg.useVirtualThreads = config.virtualThreads();
+            if (!config.virtualThreads()) {
+                cfg.jetty.threadPool = ConcurrencyUtil.jettyThreadPool("JettyServerThreadPool",
+                        Math.min(8, config.maxThreads()), config.maxThreads(), false);
+            }
+        });
 
         javalin.exception(IllegalArgumentException.class, (e, ctx) ->
                 ctx.status(400)
@@ -51,6 +165,19 @@ public class Server {
             }
         });
 
+        javalin.exception(ServiceUnavailableException.class, (e, ctx) ->
+                ctx.status(503)
+                        .header("Retry-After", "1")
+                        .result(gson.toJson(new ErrorMsg("Error: server busy, try again")))
+                        .contentType("application/json"));
+
+        // ran out of patience waiting for a database slot
+        javalin.exception(DatabaseBusyException.class, (e, ctx) ->
+                ctx.status(503)
+                        .header("Retry-After", "1")
+                        .result(gson.toJson(new ErrorMsg("Error: server busy, try again")))
+                        .contentType("application/json"));
+
         javalin.exception(DataAccessException.class, (e, ctx) ->
                 ctx.status(500)
                         .result(gson.toJson(new ErrorMsg("Error: " + e.getMessage())))
@@ -62,59 +189,255 @@ public class Server {
                         .contentType("application/json"));
 
         // https routes
-        javalin.delete("/db", ctx -> {
+        javalin.delete("/db", timed("DELETE", "/db", ctx -> {
             clearSvc.clear();
+            gameSvc.forgetStatuses();
             ctx.status(200)
                     .result(gson.toJson(new Empty()))
                     .contentType("application/json");
-        });
+        }));
 
-        javalin.post("/user", ctx -> {
+        javalin.post("/user", timed("POST", "/user", ctx -> {
             var req = gson.fromJson(ctx.body(), RegisterRequest.class);
             var res = userSvc.register(req);
             ctx.status(200).result(gson.toJson(res)).contentType("application/json");
-        });
+        }));
 
-        javalin.post("/session", ctx -> {
+        javalin.post("/session", timed("POST", "/session", ctx -> {
             var req = gson.fromJson(ctx.body(), LoginRequest.class);
             var res = userSvc.login(req);
             ctx.status(200).result(gson.toJson(res)).contentType("application/json");
-        });
+        }));
 
-        javalin.delete("/session", ctx -> {
+        javalin.delete("/session", timed("DELETE", "/session", ctx -> {
             var token = ctx.header("authorization");
             var res = userSvc.logout(new LogoutRequest(token));
             ctx.status(200).result(gson.toJson(res)).contentType("application/json");
-        });
+        }));
 
-        javalin.get("/game", ctx -> {
+        javalin.get("/game", timed("GET", "/game", ctx -> {
             var token = ctx.header("authorization");
-            var res = gameSvc.list(token);
-            ctx.status(200).result(gson.toJson(res)).contentType("application/json");
-        });
+            // optional: ?cursor=<last id>&limit=<n>&open=true&player=<username>&status=open|active|finished
+            var query = GameService.normalize(new GameQuery(
+                    intParam(ctx.queryParam("cursor")),
+                    intParam(ctx.queryParam("limit")),
+                    Boolean.parseBoolean(ctx.queryParam("open")),
+                    ctx.queryParam("player"),
+                    statusParam(ctx.queryParam("status"))));
+            // version read before the query: a change that lands during it makes the next poll
+            // miss, never the other way round. Each page and filter gets its own tag
+            String etag = "W/\"" + bootId + "-" + gameSvc.lobby().version() + "-" + queryTag(query) + "\"";
+            if (etag.equals(ctx.header("If-None-Match"))) {
+                if (userSvc.authenticate(token) == null) {
+                    throw new SecurityException("unauthorized");
+                }
+                notModified.increment();
+                ctx.status(304).header("ETag", etag);
+                return;
+            }
+            var res = gameSvc.list(token, query);
+            ctx.status(200).header("ETag", etag).result(gson.toJson(res)).contentType("application/json");
+        }));
 
-        javalin.post("/game", ctx -> {
+        javalin.post("/game", timed("POST", "/game", ctx -> {
             var token = ctx.header("authorization");
             var req = gson.fromJson(ctx.body(), CreateGameRequest.class);
             var res = gameSvc.create(token, req);
             ctx.status(200).result(gson.toJson(res)).contentType("application/json");
-        });
+        }));
 
-        javalin.put("/game", ctx -> {
+        javalin.put("/game", timed("PUT", "/game", ctx -> {
             var token = ctx.header("authorization");
             var req = gson.fromJson(ctx.body(), JoinGameRequest.class);
             var res = gameSvc.join(token, req);
             ctx.status(200).result(gson.toJson(res)).contentType("application/json");
+        }));
+
+        // lobby pushed to the client: a snapshot, then changes (instead of polling GET /game)
+        var lobbyStream = new LobbyStream(gameSvc, gson);
+        javalin.before("/lobby", ctx -> {
+            String token = ctx.header("authorization");
+            if (!rateLimits.allow("GET /lobby", token, ctx.ip())) {
+                ctx.status(429)
+                        .header("Retry-After", "1")
+                        .result(gson.toJson(new ErrorMsg("Error: too many requests")))
+                        .contentType("application/json")
+                        .skipRemainingHandlers();
+                return;
+            }
+            if (DbLanes.run(DbLanes.Lane.LOBBY, () -> userSvc.authenticate(token)) == null) {
+                throw new SecurityException("unauthorized");
+            }
         });
+        javalin.sse("/lobby", lobbyStream::handle);
+        if (!alone) {
+            // other nodes' games show up in our lobby and ours in theirs
+            var lobby = gameSvc.lobby();
+            lobby.sendChangesTo(g -> bus.send(NodeMessage.lobby(config.nodeId(), g)));
+            // and a logout or clear on one node holds on all of them
+            if (tokens.isSigned()) {
+                tokens.sendRevocationsTo(r -> bus.send(NodeMessage.revoke(config.nodeId(), r)));
+            }
+            bus.onNodeMessage(m -> {
+                if (config.nodeId().equals(m.from())) {
+                    return;
+                }
+                if (m.kind() == NodeMessage.Kind.LOBBY && m.game() != null) {
+                    lobby.apply(m.game());
+                } else if (m.kind() == NodeMessage.Kind.REVOKE && m.revoked() != null) {
+                    tokens.apply(m.revoked());
+                }
+            });
+        }
 
         //websocket additions
-        var wsHandler = new WebSocketHandler(dao, userSvc, gameSvc);
+        var wsHandler = new WebSocketHandler(this.dao, userSvc, gameSvc,
+                new Broadcaster.Limits(config.wsHighWater(), config.wsMaxQueue(), config.wsSlowMillis()),
+                new CommandDecoder(config.wsMaxFrameChars()), bus, cluster, wheel, rateLimits);
 
         javalin.ws("/ws", ws -> {
             ws.onConnect(wsHandler::onConnect);
             ws.onClose(wsHandler::onClose);
             ws.onMessage(wsHandler::onMessage);
         });
+
+        registerMetrics(wsHandler);
+        metrics.counter("chess_http_not_modified_total", "Game lists answered 304 from the client's copy",
+                notModified::sum);
+        metrics.gauge("chess_lobby_games", "Games in this node's lobby index", gameSvc.lobby()::size);
+        metrics.gauge("chess_lobby_subscribers", "Clients watching the lobby", gameSvc.lobby()::subscribers);
+        metrics.counter("chess_lobby_updates_total", "Changes to the lobby index", gameSvc.lobby()::seq);
+        metrics.counter("chess_lobby_events_sent_total", "Lobby events written to clients", lobbyStream::eventsSent);
+        metrics.counter("chess_lobby_overflows_total", "Lobby clients cut off for falling behind",
+                lobbyStream::overflows);
+        javalin.get("/metrics", ctx -> ctx.status(200)
+                .result(metrics.scrape())
+                .contentType("text/plain; version=0.0.4; charset=utf-8"));
+    }
+
+    // times a route into chess_http_request_seconds; the histogram is resolved once, not per request.
+    // also where the route's rate limit and the concurrency limit are checked, before any DB or bcrypt work
+    private Handler timed(String method, String path, Handler handler) {
+        String route = method + " " + path;
+        // register/login/logout are the account lane, the rest is lobby; websocket commands are gameplay
+        var lane = path.equals("/user") || path.equals("/session") ? DbLanes.Lane.ACCOUNT : DbLanes.Lane.LOBBY;
+        // register and login spend ~250 ms in bcrypt by design and PasswordHasher sheds them itself;
+        // their times would only read as queueing to the limiter, which is for database-bound routes
+        var routeLimiter = lane == DbLanes.Lane.ACCOUNT && method.equals("POST") ? null : limiter;
+        LatencyHistogram times = metrics.timer("chess_http_request_seconds",
+                "Time spent handling HTTP requests", "method", method, "route", path);
+        var errors = new LongAdder();
+        metrics.counter("chess_http_exceptions_total", "Requests that ended in an exception",
+                errors::sum, "method", method, "route", path);
+        return ctx -> {
+            if (!rateLimits.allow(route, ctx.header("authorization"), ctx.ip())) {
+                ctx.status(429)
+                        .header("Retry-After", "1")
+                        .result(gson.toJson(new ErrorMsg("Error: too many requests")))
+                        .contentType("application/json");
+                return;
+            }
+            if (routeLimiter != null && !routeLimiter.tryAcquire()) {
+                // shed now rather than queue behind requests that are already slow
+                throw new ServiceUnavailableException("too many requests in flight");
+            }
+            long start = System.nanoTime();
+            try {
+                DbLanes.run(lane, () -> {
+                    handler.handle(ctx);
+                    return null;
+                });
+            } catch (Exception e) {
+                errors.increment();
+                throw e;
+            } finally {
+                times.recordSince(start);
+                if (routeLimiter != null) {
+                    routeLimiter.release(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    private void registerMetrics(WebSocketHandler ws) {
+        for (var type : UserGameCommand.CommandType.values()) {
+            metrics.timer("chess_ws_command_seconds", "Time spent handling websocket commands",
+                    ws.commandTimes(type), "command", type.name());
+        }
+        metrics.gauge("chess_ws_sessions", "Open websocket sessions", ws::activeSessions);
+        metrics.gauge("chess_ws_games", "Games with at least one connected session", ws::activeGames);
+        metrics.gauge("chess_ws_deflate_sessions", "Open websocket sessions that negotiated permessage-deflate",
+                wsCompression::sessions);
+        metrics.counter("chess_ws_rejected_frames_total", "Frames too large or not a valid command",
+                ws::rejectedFrames);
+
+        Broadcaster b = ws.broadcaster();
+        metrics.distribution("chess_ws_broadcast_fanout", "Sessions reached per broadcast", b.fanout());
+        metrics.gauge("chess_ws_pending_writes", "Frames queued or in flight across all sessions",
+                b::pendingWrites);
+        metrics.gauge("chess_ws_max_queue_depth", "Deepest single session outbox", b::maxQueueDepth);
+        metrics.counter("chess_ws_frames_sent_total", "Frames written to sockets", b::framesSent);
+        metrics.counter("chess_ws_bytes_sent_total", "Payload bytes written to sockets", b::bytesSent);
+        metrics.counter("chess_ws_failed_writes_total", "Socket writes that failed", b::failedWrites);
+        metrics.counter("chess_ws_dropped_frames_total", "Stale board frames dropped for slow sessions",
+                b::droppedFrames);
+        metrics.counter("chess_ws_slow_disconnects_total", "Sessions cut off for not keeping up",
+                b::slowDisconnects);
+
+        metrics.counter("chess_bus_published_total", "Messages this node published to the bus",
+                bus::published);
+        metrics.counter("chess_bus_received_total", "Messages delivered to this node by the bus",
+                bus::received);
+        metrics.counter("chess_bus_dropped_total", "Messages not handed to a peer (down or backed up)",
+                bus::dropped);
+        metrics.gauge("chess_cluster_nodes", "Nodes on this node's hash ring", () -> cluster.ring().nodes().size());
+        metrics.counter("chess_cluster_ownership_changes_total", "Times the ring changed and games moved",
+                cluster::ownershipChanges);
+        metrics.counter("chess_ws_forwarded_moves_total", "Moves sent on to the node that owns the game",
+                ws::forwardedMoves);
+        metrics.gauge("chess_clock_games", "Timed games with a running clock on this node", ws::timedGames);
+        metrics.gauge("chess_clock_timers", "Timers waiting on the timing wheel", wheel::pending);
+        metrics.counter("chess_clock_flag_falls_total", "Games lost on time", ws::flagFalls);
+
+        for (var name : rateLimits.names()) {
+            metrics.counter("chess_rate_limited_total", "Requests and commands turned away by a rate limit",
+                    () -> rateLimits.rejected(name), "limit", name);
+        }
+
+        if (limiter != null) {
+            metrics.gauge("chess_http_concurrency_limit", "HTTP requests allowed in flight right now",
+                    limiter::limit);
+            metrics.gauge("chess_http_inflight", "HTTP requests being handled", limiter::inflight);
+            metrics.counter("chess_http_shed_total", "HTTP requests turned away at the concurrency limit",
+                    limiter::shed);
+        }
+
+        if (lanes != null) {
+            for (var lane : DbLanes.Lane.values()) {
+                String name = lane.name().toLowerCase(Locale.ROOT);
+                metrics.gauge("chess_db_lane_in_use", "Database slots held, per lane", () -> lanes.inUse(lane),
+                        "lane", name);
+                metrics.gauge("chess_db_lane_waiting", "Calls waiting for a database slot, per lane",
+                        () -> lanes.waiting(lane), "lane", name);
+                metrics.timer("chess_db_lane_wait_seconds", "Time spent waiting for a database slot",
+                        laneWaits[lane.ordinal()], "lane", name);
+                metrics.counter("chess_db_lane_timeouts_total", "Calls that gave up waiting for a database slot",
+                        () -> lanes.timeouts(lane), "lane", name);
+            }
+        }
+
+        metrics.timer("chess_bcrypt_seconds", "Time on the bcrypt pool per operation",
+                hasher.hashTimes(), "op", "hash");
+        metrics.timer("chess_bcrypt_seconds", "Time on the bcrypt pool per operation",
+                hasher.checkTimes(), "op", "check");
+        metrics.gauge("chess_bcrypt_queue_depth", "Hash requests waiting for a bcrypt thread", hasher::queueDepth);
+        metrics.gauge("chess_bcrypt_active", "bcrypt threads currently busy", hasher::activeCount);
+        metrics.counter("chess_bcrypt_rejected_total", "Hash requests shed because the pool was full",
+                hasher::rejectedCount);
+    }
+
+    public Metrics metrics() {
+        return metrics;
     }
 
     public int run(int desiredPort) {
@@ -122,8 +445,108 @@ public class Server {
         return javalin.port();
     }
 
+    // who owns which game, for tools and tests
+    public Cluster cluster() {
+        return cluster;
+    }
+
     public void stop() {
+        // say goodbye first so the others take over our games without waiting out the timeout
+        cluster.close();
         javalin.stop();
+        wheel.close();
+        hasher.shutdown();
+        if (ownsBus) {
+            bus.close();
+        }
+    }
+
+    private static GameEventBus createBus(ServerConfig config) {
+        if (config.busPort() == 0) {
+            return new InProcessGameEventBus();
+        }
+        try {
+            return new TcpGameEventBus(config.busPort(), TcpGameEventBus.parsePeers(config.busPeers()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't listen for the game bus on port " + config.busPort(), e);
+        }
+    }
+
+    private static RateLimits createRateLimits(ServerConfig config) {
+        try {
+            return RateLimits.parse(config.rateLimits(), config.rateExempt());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("bad value for chess.rate.limits: " + e.getMessage(), e);
+        }
+    }
+
+    private static DataAccess initMySql() {
+        // Database initialization
+        try {
+            DbInitializer.init();
+        } catch (Exception e) {
+            throw new RuntimeException("Database initialization failed", e);
+        }
+        return new MySqlDataAccess();
+    }
+
+    // a random key per node would quietly turn away every token another node issued
+    private static ServerConfig requireSharedTokenKey(ServerConfig config) {
+        if (config.signedTokens() && config.tokenSecret() == null
+                && config.busPeers() != null && !config.busPeers().isBlank()) {
+            throw new IllegalStateException("chess.auth.secret must be set when chess.bus.peers is");
+        }
+        return config;
+    }
+
+    private static AuthTokens createTokens(ServerConfig config, DataAccess dao) {
+        if (!config.signedTokens()) {
+            return AuthTokens.stored(dao);
+        }
+        byte[] secret;
+        if (config.tokenSecret() != null) {
+            secret = Base64.getDecoder().decode(config.tokenSecret());
+        } else {
+            // fine for one node; every node needs the same -Dchess.auth.secret to share tokens
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            System.out.println("chess.auth.secret not set, using a random per-process token key");
+        }
+        return AuthTokens.signed(dao, secret, config.tokenTtlMinutes() * 60_000L);
+    }
+
+    // short, quote-free stand-in for the query in an ETag (player names can hold anything)
+    private static String queryTag(GameQuery q) {
+        String key = q.afterId() + "|" + q.limit() + "|" + q.openOnly() + "|" + q.status() + "|"
+                + (q.player() == null ? "" : "=" + q.player());
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int intParam(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad request");
+        }
+    }
+
+    private static GameStatus.Phase statusParam(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return GameStatus.Phase.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("bad request");
+        }
     }
 
     record ErrorMsg(String message) {}
@@ -132,6 +555,11 @@ public class Server {
     public static record RegisterRequest(String username, String password, String email) {}
     public static record LoginRequest(String username, String password) {}
     public static record LogoutRequest(String authToken) {}
-    public static record CreateGameRequest(String gameName) {}
+    // timeControl: "5+3" = 5 minutes each + 3 seconds a move; absent for an untimed game
+    public static record CreateGameRequest(String gameName, String timeControl) {
+        public CreateGameRequest(String gameName) {
+            this(gameName, null);
+        }
+    }
     public static record JoinGameRequest(String playerColor, Integer gameID) {}
 }
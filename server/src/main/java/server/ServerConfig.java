@@ -0,0 +1,119 @@
+package server;
+
+import server.ratelimit.RateLimits;
+import server.websocket.CommandDecoder;
+
+import java.util.UUID;
+
+/**
+ * Tunables for the server. Everything can be overridden with a -Dchess.* system property,
+ * otherwise the defaults below are used.
+ */
+public record ServerConfig(
+        int bcryptCost,
+        int hashThreads,
+        int hashQueueSize,
+        boolean signedTokens,
+        String tokenSecret,
+        int tokenTtlMinutes,
+        int wsHighWater,
+        int wsMaxQueue,
+        int wsSlowMillis,
+        int wsMaxFrameChars,
+        int wsDeflateLevel,
+        boolean wsContextTakeover,
+        boolean virtualThreads,
+        int maxThreads,
+        String nodeId,
+        int busPort,
+        String busPeers,
+        int heartbeatMillis,
+        String rateLimits,
+        String rateExempt,
+        int concurrencyLimit,
+        int maxConcurrency,
+        int dbSlots,
+        int dbGameplayReserved
+) {
+
+    public static ServerConfig load() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new ServerConfig(
+                intProp("chess.bcrypt.cost", 12),
+                intProp("chess.hash.threads", cores),
+                intProp("chess.hash.queue", cores * 8),
+                "signed".equalsIgnoreCase(System.getProperty("chess.auth.mode", "stored")),
+                System.getProperty("chess.auth.secret"),
+                intProp("chess.auth.ttlMinutes", 12 * 60),
+                intProp("chess.ws.highWater", 32),
+                intProp("chess.ws.maxQueue", 256),
+                intProp("chess.ws.slowMillis", 10_000),
+                intProp("chess.ws.maxFrameChars", CommandDecoder.DEFAULT_MAX_CHARS),
+                // permessage-deflate level for clients that offer it (browsers do), 1-9; 0 = not offered
+                intProp("chess.ws.deflateLevel", 1),
+                // keep each session's deflate window between messages: boards compress against the
+                // last one to a few dozen bytes, for ~300 KB of native memory per compressing session
+                !"false".equalsIgnoreCase(System.getProperty("chess.ws.contextTakeover", "true")),
+                "virtual".equalsIgnoreCase(System.getProperty("chess.threads", "pool")),
+                intProp("chess.http.maxThreads", 250),
+                System.getProperty("chess.node.id", UUID.randomUUID().toString().substring(0, 8)),
+                // 0 = single node; otherwise the loopback port this node's game bus listens on
+                intProp("chess.bus.port", 0),
+                // other nodes' bus ports, "localhost:7001,localhost:7002"
+                System.getProperty("chess.bus.peers", ""),
+                // how often nodes say they're alive; one silent for 4 beats loses its games
+                intProp("chess.cluster.heartbeatMillis", 500),
+                // per route / websocket command, "POST /session=2/10, MAKE_MOVE=10/30" (per second/burst)
+                System.getProperty("chess.rate.limits", RateLimits.DEFAULT_SPEC),
+                // addresses never limited, comma separated
+                System.getProperty("chess.rate.exempt", RateLimits.DEFAULT_EXEMPT),
+                // HTTP requests in flight to start with; moves with latency from there. 0 = no limit
+                intProp("chess.limit.initial", 100),
+                intProp("chess.limit.max", 1000),
+                // database calls in progress at once, shared by gameplay, lobby and account lanes. 0 = no lanes
+                intProp("chess.db.slots", 32),
+                // of those, how many only gameplay (websocket commands, clocks) can use
+                intProp("chess.db.gameplayReserved", 8)
+        );
+    }
+
+    public ServerConfig withVirtualThreads(boolean on) {
+        return new ServerConfig(bcryptCost, hashThreads, hashQueueSize, signedTokens, tokenSecret,
+                tokenTtlMinutes, wsHighWater, wsMaxQueue, wsSlowMillis, wsMaxFrameChars, wsDeflateLevel, wsContextTakeover,
+                on, maxThreads, nodeId, busPort, busPeers, heartbeatMillis, rateLimits, rateExempt,
+                concurrencyLimit, maxConcurrency, dbSlots, dbGameplayReserved);
+    }
+
+    public ServerConfig withConcurrencyLimit(int initial) {
+        return new ServerConfig(bcryptCost, hashThreads, hashQueueSize, signedTokens, tokenSecret,
+                tokenTtlMinutes, wsHighWater, wsMaxQueue, wsSlowMillis, wsMaxFrameChars, wsDeflateLevel, wsContextTakeover,
+                virtualThreads, maxThreads, nodeId, busPort, busPeers, heartbeatMillis, rateLimits, rateExempt,
+                initial, maxConcurrency, dbSlots, dbGameplayReserved);
+    }
+
+    public ServerConfig withWsDeflate(int level, boolean contextTakeover) {
+        return new ServerConfig(bcryptCost, hashThreads, hashQueueSize, signedTokens, tokenSecret,
+                tokenTtlMinutes, wsHighWater, wsMaxQueue, wsSlowMillis, wsMaxFrameChars, level, contextTakeover,
+                virtualThreads, maxThreads, nodeId, busPort, busPeers, heartbeatMillis, rateLimits, rateExempt,
+                concurrencyLimit, maxConcurrency, dbSlots, dbGameplayReserved);
+    }
+
+    public ServerConfig withRateExempt(String addresses) {
+        return new ServerConfig(bcryptCost, hashThreads, hashQueueSize, signedTokens, tokenSecret,
+                tokenTtlMinutes, wsHighWater, wsMaxQueue, wsSlowMillis, wsMaxFrameChars, wsDeflateLevel, wsContextTakeover,
+                virtualThreads, maxThreads, nodeId, busPort, busPeers, heartbeatMillis, rateLimits, addresses,
+                concurrencyLimit, maxConcurrency, dbSlots, dbGameplayReserved);
+    }
+
+    static int intProp(String name, int fallback) {
+        var value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("bad value for " + name + ": " + value, e);
+        }
+    }
+}
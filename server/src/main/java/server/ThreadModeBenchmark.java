@@ -0,0 +1,85 @@
+package server;
+
+import dataaccess.MemoryDataAccess;
+import dataaccess.SlowDataAccess;
+import server.ratelimit.RateLimits;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the platform thread pool with virtual threads under many concurrent clients.
+ * Each client hammers GET /game against a server whose DAO sleeps to fake a database round trip.
+ * <p>
+ * usage: ThreadModeBenchmark [clients=10000] [requestsPerClient=5] [daoLatencyMs=5]
+ */
+public class ThreadModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int perClient = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int latency = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        // one client hammering from loopback is the point here, not something to rate limit
+        if (System.getProperty("chess.rate.exempt") == null) {
+            System.setProperty("chess.rate.exempt", RateLimits.LOOPBACK);
+        }
+        System.out.printf("%d clients x %d requests, dao latency %d ms%n", clients, perClient, latency);
+        for (boolean virtual : new boolean[]{false, true}) {
+            run(virtual, clients, perClient, latency);
+        }
+        System.exit(0);
+    }
+
+    private static void run(boolean virtual, int clients, int perClient, int latency) throws Exception {
+        var config = ServerConfig.load().withVirtualThreads(virtual);
+        var server = new Server(config, new SlowDataAccess(new MemoryDataAccess(), latency));
+        int port = server.run(0);
+        var http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        var base = "http://localhost:" + port;
+
+        var reg = http.send(HttpRequest.newBuilder(URI.create(base + "/user"))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"bench\",\"password\":\"pw\",\"email\":\"b@b\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        var token = reg.body().replaceAll(".*\"authToken\":\"([^\"]+)\".*", "$1");
+        var list = HttpRequest.newBuilder(URI.create(base + "/game")).header("authorization", token).GET().build();
+
+        long[] latencies = new long[clients * perClient];
+        var next = new AtomicInteger();
+        var errors = new AtomicInteger();
+        long start = System.nanoTime();
+        try (var pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                pool.submit(() -> {
+                    for (int i = 0; i < perClient; i++) {
+                        long t0 = System.nanoTime();
+                        try {
+                            var res = http.send(list, HttpResponse.BodyHandlers.discarding());
+                            if (res.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[next.getAndIncrement()] = System.nanoTime() - t0;
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        server.stop();
+
+        Arrays.sort(latencies);
+        System.out.printf("%-8s %8.0f req/s  p50 %7.1f ms  p99 %7.1f ms  errors %d%n",
+                virtual ? "virtual" : "pool", latencies.length / seconds,
+                latencies[latencies.length / 2] / 1e6,
+                latencies[(int) (latencies.length * 0.99)] / 1e6,
+                errors.get());
+    }
+}
@@ -0,0 +1,16 @@
+package server.bus;
+
+import server.websocket.FrameBatch;
+
+import java.util.List;
+
+/**
+ * Everything one node broadcast to a game, for the other nodes to hand to their own sessions.
+ *
+ * @param origin node that published it; a node ignores its own events
+ * @param sender session that caused it, which skips the items not meant for the sender;
+ *               may live on another node than origin when the move was forwarded
+ * @param items  the batch's messages, see {@link FrameBatch#items()}
+ */
+public record GameEvent(String origin, int gameID, String sender, List<FrameBatch.Item> items) {
+}
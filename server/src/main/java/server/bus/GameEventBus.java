@@ -0,0 +1,37 @@
+package server.bus;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries game broadcasts between server nodes, so a session sees moves made through any node.
+ * Delivery is best effort and in order per publishing node; a node that is down or too slow
+ * misses events, and its clients catch up with SYNC.
+ */
+public interface GameEventBus extends AutoCloseable {
+
+    void publish(GameEvent event);
+
+    // listeners may be called on any thread, and may see this node's own events
+    void subscribe(Consumer<GameEvent> listener);
+
+    /**
+     * Same delivery as publish, for traffic between nodes rather than to games.
+     *
+     * @return false if the message certainly didn't go out, e.g. its target node is down or
+     * backed up; true doesn't promise it arrived
+     */
+    boolean send(NodeMessage message);
+
+    void onNodeMessage(Consumer<NodeMessage> listener);
+
+    // counters cover both events and node messages
+    long published();
+
+    long received();
+
+    // ones that couldn't be handed to some peer
+    long dropped();
+
+    @Override
+    void close();
+}
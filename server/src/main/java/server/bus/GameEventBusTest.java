@@ -0,0 +1,160 @@
+package server.bus;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.*;
+import server.websocket.FrameBatch;
+import websocket.WireFormat;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.NotificationMessage;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameEventBusTest {
+
+    private static GameEvent moveEvent(String origin, int gameID) throws Exception {
+        var game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        var load = new LoadGameMessage(game);
+        return new GameEvent(origin, gameID, "session-1", List.of(
+                new FrameBatch.Item(load, load, true),
+                new FrameBatch.Item(new NotificationMessage("alice moved e2 to e4"), null, false)));
+    }
+
+    private static InetSocketAddress local(int port) {
+        return new InetSocketAddress("127.0.0.1", port);
+    }
+
+    @Test
+    void tcpPositiveBothDirections() throws Exception {
+        try (var a = new TcpGameEventBus(0, List.of()); var b = new TcpGameEventBus(0, List.of())) {
+            a.addPeer(local(b.port()));
+            b.addPeer(local(a.port()));
+            var atA = new LinkedBlockingQueue<GameEvent>();
+            var atB = new LinkedBlockingQueue<GameEvent>();
+            a.subscribe(atA::add);
+            b.subscribe(atB::add);
+
+            var sent = moveEvent("a", 7);
+            a.publish(sent);
+            var got = atB.poll(5, TimeUnit.SECONDS);
+            assertNotNull(got, "b never heard from a");
+            assertEquals("a", got.origin());
+            assertEquals(7, got.gameID());
+            assertEquals(2, got.items().size());
+            // same bytes on the wire as the original, so the fan-out on b is identical
+            var gson = WireFormat.STANDARD.gson();
+            assertEquals(gson.toJson(sent), gson.toJson(got));
+            var load = assertInstanceOf(LoadGameMessage.class, got.items().get(0).full());
+            assertEquals(gson.toJson(((LoadGameMessage) sent.items().get(0).full()).getGame()),
+                    gson.toJson(load.getGame()));
+            assertTrue(got.items().get(0).includeSender());
+            var note = assertInstanceOf(NotificationMessage.class, got.items().get(1).full());
+            assertEquals("alice moved e2 to e4", note.getMessage());
+            assertNull(got.items().get(1).delta());
+
+            b.publish(moveEvent("b", 9));
+            assertEquals(9, atA.poll(5, TimeUnit.SECONDS).gameID());
+            // a node doesn't hear itself
+            assertNull(atA.poll(100, TimeUnit.MILLISECONDS));
+            assertEquals(1, a.published());
+            assertEquals(1, b.received());
+            assertEquals(0, a.dropped() + b.dropped());
+        }
+    }
+
+    @Test
+    void tcpNegativePeerDownDropsThenCatchesUp() throws Exception {
+        int port;
+        try (var probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        try (var a = new TcpGameEventBus(0, List.of(local(port)))) {
+            // nobody on the other end: publishing still returns right away, and the overflow is counted
+            long start = System.nanoTime();
+            var event = moveEvent("a", 1);
+            for (int i = 0; i < TcpGameEventBus.PEER_QUEUE + 10; i++) {
+                a.publish(event);
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertTrue(a.dropped() >= 10, "dropped " + a.dropped());
+
+            // the peer shows up late and gets what was still queued
+            try (var b = new TcpGameEventBus(port, List.of())) {
+                var atB = new LinkedBlockingQueue<GameEvent>();
+                b.subscribe(atB::add);
+                assertNotNull(atB.poll(5, TimeUnit.SECONDS), "queued events never arrived");
+            }
+        }
+    }
+
+    @Test
+    void tcpPositiveDirectedMessageGoesOnlyToItsNode() throws Exception {
+        try (var a = new TcpGameEventBus(0, List.of()); var b = new TcpGameEventBus(0, List.of());
+             var c = new TcpGameEventBus(0, List.of())) {
+            a.addPeer(local(b.port()));
+            a.addPeer(local(c.port()));
+            b.addPeer(local(a.port()));
+            c.addPeer(local(a.port()));
+            var atA = new LinkedBlockingQueue<NodeMessage>();
+            var atB = new LinkedBlockingQueue<NodeMessage>();
+            var atC = new LinkedBlockingQueue<NodeMessage>();
+            a.onNodeMessage(atA::add);
+            b.onNodeMessage(atB::add);
+            c.onNodeMessage(atC::add);
+            // a learns who is behind which connection from what they send
+            b.send(NodeMessage.hello("b"));
+            c.send(NodeMessage.hello("c"));
+            assertNotNull(atA.poll(5, TimeUnit.SECONDS));
+            assertNotNull(atA.poll(5, TimeUnit.SECONDS));
+
+            assertTrue(a.send(NodeMessage.reply("a", "b", "session-1", new NotificationMessage("hi"))));
+            assertEquals(NodeMessage.Kind.REPLY, atB.poll(5, TimeUnit.SECONDS).kind());
+            assertNull(atC.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    void tcpNegativeDirectedMessageToDeadNodeFails() throws Exception {
+        try (var a = new TcpGameEventBus(0, List.of())) {
+            var atA = new LinkedBlockingQueue<NodeMessage>();
+            a.onNodeMessage(atA::add);
+            var b = new TcpGameEventBus(0, List.of(local(a.port())));
+            a.addPeer(local(b.port()));
+            b.send(NodeMessage.hello("b"));
+            assertNotNull(atA.poll(5, TimeUnit.SECONDS));
+            assertTrue(a.send(NodeMessage.hello("a")));
+
+            // b is gone: a says so instead of queueing the message for later or dropping it quietly
+            b.close();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            boolean sent = true;
+            while (sent && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+                sent = a.send(NodeMessage.reply("a", "b", "session-1", new NotificationMessage("hi")));
+            }
+            assertFalse(sent, "a never noticed b went away");
+            assertTrue(a.dropped() >= 1);
+        }
+    }
+
+    @Test
+    void inProcessPositiveDeliversToEverySubscriber() throws Exception {
+        try (var bus = new InProcessGameEventBus()) {
+            var seen = new LinkedBlockingQueue<String>();
+            bus.subscribe(e -> seen.add("x" + e.gameID()));
+            bus.subscribe(e -> seen.add("y" + e.gameID()));
+            bus.publish(moveEvent("n1", 4));
+            assertEquals(List.of("x4", "y4"), List.copyOf(seen));
+            assertEquals(1, bus.published());
+            assertEquals(2, bus.received());
+        }
+    }
+}
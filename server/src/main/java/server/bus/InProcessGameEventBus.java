@@ -0,0 +1,68 @@
+package server.bus;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bus for nodes in one JVM (or just one node). Calls every listener on the publishing thread,
+ * which is fine since listeners only queue frames.
+ */
+public class InProcessGameEventBus implements GameEventBus {
+
+    private final List<Consumer<GameEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<NodeMessage>> nodeListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    @Override
+    public void publish(GameEvent event) {
+        published.increment();
+        for (var l : listeners) {
+            received.increment();
+            l.accept(event);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<GameEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean send(NodeMessage message) {
+        published.increment();
+        for (var l : nodeListeners) {
+            received.increment();
+            l.accept(message);
+        }
+        return true;
+    }
+
+    @Override
+    public void onNodeMessage(Consumer<NodeMessage> listener) {
+        nodeListeners.add(listener);
+    }
+
+    @Override
+    public long published() {
+        return published.sum();
+    }
+
+    @Override
+    public long received() {
+        return received.sum();
+    }
+
+    @Override
+    public long dropped() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        listeners.clear();
+        nodeListeners.clear();
+    }
+}
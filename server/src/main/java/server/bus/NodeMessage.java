@@ -0,0 +1,64 @@
+package server.bus;
+
+import service.AuthTokens;
+import service.GameService;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+/**
+ * Node-to-node traffic that isn't a game broadcast: membership heartbeats, moves forwarded
+ * to the node that owns the game plus the owner's answer when it rejects one, lobby changes,
+ * and logouts.
+ * One with a {@code to} is only acted on by that node; the bus sends it there alone once it
+ * knows where that node is, and to everyone until then.
+ *
+ * @param to      target node, null for everyone
+ * @param session websocket session on {@code from} the move came in on
+ * @param game    the lobby row a LOBBY message is about
+ * @param revoked the logout or clear a REVOKE message is about
+ */
+public record NodeMessage(Kind kind, String from, String to, String session,
+                          UserGameCommand command, ServerMessage reply, GameService.GameSummary game,
+                          AuthTokens.Revocation revoked) {
+
+    public enum Kind {
+        // "I'm here", sent on start and then every heartbeat
+        HELLO,
+        // "I'm going", sent on a clean stop so the others don't wait for the timeout
+        BYE,
+        MOVE,
+        REPLY,
+        // a game was created, filled or finished on `from`
+        LOBBY,
+        // a token was logged out, or all of them cleared, on `from`
+        REVOKE
+    }
+
+    public static NodeMessage hello(String from) {
+        return new NodeMessage(Kind.HELLO, from, null, null, null, null, null, null);
+    }
+
+    public static NodeMessage bye(String from) {
+        return new NodeMessage(Kind.BYE, from, null, null, null, null, null, null);
+    }
+
+    public static NodeMessage move(String from, String owner, String session, UserGameCommand command) {
+        return new NodeMessage(Kind.MOVE, from, owner, session, command, null, null, null);
+    }
+
+    public static NodeMessage reply(String from, String to, String session, ServerMessage reply) {
+        return new NodeMessage(Kind.REPLY, from, to, session, null, reply, null, null);
+    }
+
+    public static NodeMessage lobby(String from, GameService.GameSummary game) {
+        return new NodeMessage(Kind.LOBBY, from, null, null, null, null, game, null);
+    }
+
+    public static NodeMessage revoke(String from, AuthTokens.Revocation revoked) {
+        return new NodeMessage(Kind.REVOKE, from, null, null, null, null, null, revoked);
+    }
+
+    public boolean isFor(String node) {
+        return to == null || to.equals(node);
+    }
+}
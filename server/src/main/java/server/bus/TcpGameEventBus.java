@@ -0,0 +1,324 @@
+package server.bus;
+
+import com.google.gson.Gson;
+import websocket.WireFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bus between nodes on one machine over loopback TCP. Every node listens on its own port and
+ * keeps one outgoing connection per peer; an event is JSON encoded once and written to each
+ * peer as a length-prefixed frame.
+ * <p>
+ * Publishing never blocks: each peer has a bounded queue drained by its own writer thread,
+ * and events for a peer that's down or backed up are dropped once the queue is full.
+ * A node message with a {@code to} goes only to that node's peer once we know which one it is
+ * (each writer opens its connection by naming its own port), and isn't queued for a peer
+ * that's down, so the sender can tell it didn't go out.
+ * Writers reconnect on their own, so nodes can start in any order. The few I/O threads are
+ * platform threads: a writer stuck on a full socket must not take a carrier away from the
+ * reader that would drain it.
+ */
+public class TcpGameEventBus implements GameEventBus {
+
+    // frames waiting for one peer before new ones are dropped
+    static final int PEER_QUEUE = 4096;
+    // anything bigger is a bad peer, not a game event
+    static final int MAX_FRAME = 1 << 20;
+    private static final long RETRY_MILLIS = 250;
+
+    private final Gson gson = WireFormat.STANDARD.gson();
+    private final ServerSocket server;
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    // node id -> the peer it listens behind, learned from what arrives on each connection
+    private final Map<String, Peer> nodes = new ConcurrentHashMap<>();
+    private final List<Consumer<GameEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<NodeMessage>> nodeListeners = new CopyOnWriteArrayList<>();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param port  port to listen on (0 = any free one, see {@link #port()})
+     * @param peers the other nodes' bus ports
+     */
+    public TcpGameEventBus(int port, List<InetSocketAddress> peers) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread.ofPlatform().daemon().name("bus-accept-" + port()).start(this::acceptLoop);
+        for (var address : peers) {
+            addPeer(address);
+        }
+    }
+
+    // starts sending to another node; it doesn't have to be up yet
+    public void addPeer(InetSocketAddress address) {
+        var peer = new Peer(address);
+        peers.add(peer);
+        Thread.ofPlatform().daemon().name("bus-write-" + address.getPort()).start(peer::writeLoop);
+    }
+
+    // "host:port,host:port"
+    public static List<InetSocketAddress> parsePeers(String peers) {
+        var out = new ArrayList<InetSocketAddress>();
+        if (peers == null || peers.isBlank()) {
+            return out;
+        }
+        for (String p : peers.split(",")) {
+            String s = p.trim();
+            int colon = s.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("expected host:port, got " + s);
+            }
+            out.add(new InetSocketAddress(s.substring(0, colon), Integer.parseInt(s.substring(colon + 1))));
+        }
+        return out;
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    @Override
+    public void publish(GameEvent event) {
+        write(new Envelope(event, null, null));
+    }
+
+    @Override
+    public boolean send(NodeMessage message) {
+        var target = message.to() == null ? null : nodes.get(message.to());
+        if (target == null) {
+            return write(new Envelope(null, message, null));
+        }
+        published.increment();
+        if (!target.connected || !target.heard || !target.queue.offer(encode(new Envelope(null, message, null)))) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // to every peer; true if at least one took it
+    private boolean write(Envelope envelope) {
+        published.increment();
+        byte[] frame = encode(envelope);
+        boolean any = false;
+        for (var peer : peers) {
+            if (peer.queue.offer(frame)) {
+                any = true;
+            } else {
+                dropped.increment();
+            }
+        }
+        return any;
+    }
+
+    private byte[] encode(Envelope envelope) {
+        return gson.toJson(envelope).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void subscribe(Consumer<GameEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void onNodeMessage(Consumer<NodeMessage> listener) {
+        nodeListeners.add(listener);
+    }
+
+    @Override
+    public long published() {
+        return published.sum();
+    }
+
+    @Override
+    public long received() {
+        return received.sum();
+    }
+
+    @Override
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        for (var s : inbound) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+        for (var peer : peers) {
+            peer.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket s = server.accept();
+                inbound.add(s);
+                Thread.ofPlatform().daemon().name("bus-read").start(() -> readLoop(s));
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket s) {
+        // the peer we write to on the node at the other end, once it has said its port
+        Peer origin = null;
+        try (s; var in = new DataInputStream(new BufferedInputStream(s.getInputStream()))) {
+            while (!closed) {
+                int len = in.readInt();
+                if (len <= 0 || len > MAX_FRAME) {
+                    throw new IOException("bad frame length " + len);
+                }
+                byte[] frame = new byte[len];
+                in.readFully(frame);
+                var envelope = gson.fromJson(new String(frame, StandardCharsets.UTF_8), Envelope.class);
+                if (envelope.port() != null) {
+                    origin = peerOn(envelope.port());
+                    if (origin != null) {
+                        origin.heard = true;
+                    }
+                    continue;
+                }
+                received.increment();
+                if (envelope.event() != null) {
+                    for (var l : listeners) {
+                        l.accept(envelope.event());
+                    }
+                } else if (envelope.node() != null) {
+                    if (origin != null && envelope.node().from() != null) {
+                        nodes.put(envelope.node().from(), origin);
+                    }
+                    for (var l : nodeListeners) {
+                        l.accept(envelope.node());
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            // peer went away; it reconnects to us when it comes back
+        } catch (Exception e) {
+            if (!closed) {
+                System.err.println("game bus: dropping connection from " + s.getRemoteSocketAddress() + ": " + e);
+            }
+        } finally {
+            inbound.remove(s);
+            // its connection to us going away is the quickest sign the node is gone; our writer
+            // may not find out until a write fails, which loses that frame
+            if (origin != null) {
+                origin.heard = false;
+            }
+        }
+    }
+
+    // everything is on loopback, so the port alone says which node it is
+    private Peer peerOn(int port) {
+        for (var peer : peers) {
+            if (peer.address.getPort() == port) {
+                return peer;
+            }
+        }
+        return null;
+    }
+
+    // one frame on the wire, exactly one field set; port is the sender's listening port,
+    // sent once as the first frame of a connection
+    private record Envelope(GameEvent event, NodeMessage node, Integer port) {}
+
+    private final class Peer {
+        private final InetSocketAddress address;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(PEER_QUEUE);
+        private volatile Socket socket;
+        private volatile boolean connected;
+        // the node's own connection to us is up
+        private volatile boolean heard;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void writeLoop() {
+            while (!closed) {
+                try (var s = new Socket()) {
+                    s.connect(address, 1000);
+                    s.setTcpNoDelay(true);
+                    socket = s;
+                    var out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                    write(out, encode(new Envelope(null, null, port())));
+                    out.flush();
+                    connected = true;
+                    while (!closed) {
+                        write(out, queue.take());
+                        // send whatever else piled up in the same flush
+                        byte[] next;
+                        while ((next = queue.poll()) != null) {
+                            write(out, next);
+                        }
+                        out.flush();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    // not up yet or gone; events keep queueing (and then dropping) until we're back
+                    connected = false;
+                    try {
+                        Thread.sleep(RETRY_MILLIS);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private static void write(DataOutputStream out, byte[] frame) throws IOException {
+            out.writeInt(frame.length);
+            out.write(frame);
+        }
+
+        void close() {
+            var s = socket;
+            if (s != null) {
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }
+            // wakes a writer blocked in take(); the closed flag then ends its loop
+            queue.offer(new byte[0]);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package server.clock;
+
+import chess.ChessGame;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flag-fall and low-time timers for the timed games this node plays moves for, all on one
+ * {@link TimingWheel}. A game has at most one of each, for the side to move, and every move
+ * replaces them, so a game costs two wheel entries however long it runs.
+ */
+public class GameTimers {
+
+    // warn the side to move when this much is left
+    public static final long LOW_TIME_MILLIS = 10_000;
+
+    public interface Listener {
+        void lowTime(int gameID, ChessGame.TeamColor side, int ply);
+
+        // side's time is up at position ply, as far as this node's clock can tell
+        void flagFall(int gameID, ChessGame.TeamColor side, int ply);
+    }
+
+    private record Armed(int ply, TimingWheel.Timeout flag, TimingWheel.Timeout low) {
+        void cancel() {
+            flag.cancel();
+            if (low != null) {
+                low.cancel();
+            }
+        }
+    }
+
+    private final TimingWheel wheel;
+    private final Listener listener;
+    private final Map<Integer, Armed> armed = new ConcurrentHashMap<>();
+
+    public GameTimers(TimingWheel wheel, Listener listener) {
+        this.wheel = wheel;
+        this.listener = listener;
+    }
+
+    /**
+     * A move was made: toMove now has leftMillis on a running clock.
+     */
+    public void afterMove(int gameID, int ply, ChessGame.TeamColor toMove, long leftMillis) {
+        var flag = wheel.schedule(leftMillis, () -> fire(gameID, ply, toMove, true));
+        var low = leftMillis > LOW_TIME_MILLIS
+                ? wheel.schedule(leftMillis - LOW_TIME_MILLIS, () -> fire(gameID, ply, toMove, false))
+                : null;
+        var next = new Armed(ply, flag, low);
+        Armed[] loser = {null};
+        // two moves' bookkeeping can race after their writes; the later position wins
+        armed.compute(gameID, (id, old) -> {
+            if (old != null && old.ply() > ply) {
+                loser[0] = next;
+                return old;
+            }
+            loser[0] = old;
+            return next;
+        });
+        if (loser[0] != null) {
+            loser[0].cancel();
+        }
+    }
+
+    // game over (or gone): nothing left to time
+    public void cancel(int gameID) {
+        var old = armed.remove(gameID);
+        if (old != null) {
+            old.cancel();
+        }
+    }
+
+    public int games() {
+        return armed.size();
+    }
+
+    private void fire(int gameID, int ply, ChessGame.TeamColor side, boolean flagFall) {
+        var current = armed.get(gameID);
+        if (current == null || current.ply() != ply) {
+            // a move got in first
+            return;
+        }
+        if (flagFall) {
+            armed.remove(gameID, current);
+            listener.flagFall(gameID, side, ply);
+        } else {
+            listener.lowTime(gameID, side, ply);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package server.clock;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.GameClock;
+import model.GameData;
+import model.GameStatus;
+import model.UserData;
+import org.junit.jupiter.api.*;
+import server.Server;
+import server.ServerConfig;
+import websocket.WireFormat;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ErrorMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameTimersTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+    private final List<String> events = new ArrayList<>();
+    private final TimingWheel wheel = new TimingWheel(10, 64, 3, clock::get, false);
+    private final GameTimers timers = new GameTimers(wheel,
+            new GameTimers.Listener() {
+                @Override
+                public void lowTime(int gameID, ChessGame.TeamColor side, int ply) {
+                    events.add("low " + gameID + " " + side + " " + ply);
+                }
+
+                @Override
+                public void flagFall(int gameID, ChessGame.TeamColor side, int ply) {
+                    events.add("flag " + gameID + " " + side + " " + ply);
+                }
+            });
+
+    private void runFor(long millis) {
+        clock.addAndGet(millis);
+        wheel.advance();
+    }
+
+    @Test
+    void timersPositiveLatestMoveWins() {
+        timers.afterMove(1, 1, ChessGame.TeamColor.BLACK, 15_000);
+        timers.afterMove(2, 1, ChessGame.TeamColor.BLACK, 3_000);
+        runFor(5_000);
+        assertEquals(List.of("flag 2 BLACK 1", "low 1 BLACK 1"), events);
+        assertEquals(1, timers.games());
+
+        // black moved in time: the old flag is gone and white's clock runs instead
+        timers.afterMove(1, 2, ChessGame.TeamColor.WHITE, 20_000);
+        // a late bookkeeping call for an older position doesn't win
+        timers.afterMove(1, 1, ChessGame.TeamColor.BLACK, 1);
+        runFor(15_000);
+        assertEquals(List.of("flag 2 BLACK 1", "low 1 BLACK 1", "low 1 WHITE 2"), events);
+        runFor(5_100);
+        assertEquals("flag 1 WHITE 2", events.get(3));
+        assertEquals(0, timers.games());
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void timersNegativeCancelledGameStaysQuiet() {
+        timers.afterMove(5, 9, ChessGame.TeamColor.WHITE, 30_000);
+        timers.cancel(5);
+        timers.cancel(5);
+        runFor(60_000);
+        assertTrue(events.isEmpty());
+        assertEquals(0, wheel.pending());
+    }
+
+    // ---- through a running server ----
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(new ChessPosition(from.charAt(1) - '0', from.charAt(0) - 'a' + 1),
+                new ChessPosition(to.charAt(1) - '0', to.charAt(0) - 'a' + 1), null);
+    }
+
+    private static BlockingQueue<ServerMessage> connect(HttpClient http, int port, String token, int gameID,
+                                                        List<WebSocket> sockets) throws Exception {
+        var inbox = new LinkedBlockingQueue<ServerMessage>();
+        var ws = http.newWebSocketBuilder().buildAsync(URI.create("ws://localhost:" + port + "/ws"),
+                new WebSocket.Listener() {
+                    private final StringBuilder partial = new StringBuilder();
+
+                    @Override
+                    public CompletionStage<?> onText(WebSocket socket, CharSequence data, boolean last) {
+                        partial.append(data);
+                        if (last) {
+                            inbox.add(WireFormat.STANDARD.gson().fromJson(partial.toString(), ServerMessage.class));
+                            partial.setLength(0);
+                        }
+                        socket.request(1);
+                        return null;
+                    }
+                }).get(5, TimeUnit.SECONDS);
+        sockets.add(ws);
+        ws.sendText(WireFormat.STANDARD.gson().toJson(
+                new UserGameCommand(UserGameCommand.CommandType.CONNECT, token, gameID)), true).get();
+        return inbox;
+    }
+
+    // skips anything else (connect notices, boards) until a message of the wanted kind shows up
+    private static <T extends ServerMessage> T await(BlockingQueue<ServerMessage> inbox, Class<T> type)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            var msg = inbox.poll(100, TimeUnit.MILLISECONDS);
+            if (type.isInstance(msg)) {
+                return type.cast(msg);
+            }
+        }
+        return fail("no " + type.getSimpleName());
+    }
+
+    @Test
+    void clockPositiveFlagFallsWithoutAMove() throws Exception {
+        var dao = new MemoryDataAccess();
+        var server = new Server(ServerConfig.load(), dao);
+        var sockets = new ArrayList<WebSocket>();
+        try {
+            int port = server.run(0);
+            dao.createUser(new UserData("alice", "x", "a@test"));
+            dao.createAuth(new AuthData("alice-token", "alice"));
+            // black has 400 ms for the whole game
+            int id = dao.createGame(new GameData(0, "alice", "bob", "blitz", new ChessGame(), 0, null,
+                    new GameClock(60_000, 0, 60_000, 400, 0)));
+
+            var white = connect(HttpClient.newHttpClient(), port, "alice-token", id, sockets);
+            sockets.get(0).sendText(WireFormat.STANDARD.gson().toJson(
+                    new MakeMoveCommand("alice-token", id, move("e2", "e4"))), true).get();
+
+            // nobody sends anything: the wheel notices bob's time is up
+            var note = await(white, NotificationMessage.class);
+            while (!note.getMessage().contains("out of time")) {
+                note = await(white, NotificationMessage.class);
+            }
+            assertEquals("bob ran out of time", note.getMessage());
+            var game = dao.getGame(id);
+            assertEquals(GameStatus.finished(GameStatus.Result.WHITE_WON, GameStatus.Reason.TIMEOUT), game.status());
+            assertEquals(1, game.game().getPly());
+        } finally {
+            sockets.forEach(WebSocket::abort);
+            server.stop();
+        }
+    }
+
+    @Test
+    void clockNegativeLateMoveLosesOnTime() throws Exception {
+        var dao = new MemoryDataAccess();
+        var server = new Server(ServerConfig.load(), dao);
+        var sockets = new ArrayList<WebSocket>();
+        try {
+            int port = server.run(0);
+            dao.createUser(new UserData("bob", "x", "b@test"));
+            dao.createAuth(new AuthData("bob-token", "bob"));
+            var chess = new ChessGame();
+            chess.makeMove(move("e2", "e4"));
+            // black's clock has been running for 5 s with 1 s on it, and no timer knows (e.g. a restart)
+            int id = dao.createGame(new GameData(0, "alice", "bob", "blitz", chess, 0, null,
+                    new GameClock(60_000, 0, 60_000, 1_000, System.currentTimeMillis() - 5_000)));
+
+            var black = connect(HttpClient.newHttpClient(), port, "bob-token", id, sockets);
+            sockets.get(0).sendText(WireFormat.STANDARD.gson().toJson(
+                    new MakeMoveCommand("bob-token", id, move("e7", "e5"))), true).get();
+
+            assertEquals("Error: out of time", await(black, ErrorMessage.class).getErrorMessage());
+            var game = dao.getGame(id);
+            assertEquals(GameStatus.Reason.TIMEOUT, game.status().reason());
+            assertEquals(GameStatus.Result.WHITE_WON, game.status().result());
+            // the move wasn't played
+            assertEquals(ChessGame.TeamColor.BLACK, game.game().getTeamTurn());
+        } finally {
+            sockets.forEach(WebSocket::abort);
+            server.stop();
+        }
+    }
+}
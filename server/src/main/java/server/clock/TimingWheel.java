@@ -0,0 +1,244 @@
+package server.clock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed hierarchical timing wheel: lots of timers, most of them cancelled before they fire,
+ * for the price of one thread. Level 0 has {@code slots} buckets of one tick each; every level
+ * above covers {@code slots} times the span of the one below, and its buckets are re-spread one
+ * level down ("cascaded") as time reaches them. Scheduling and cancelling just link or unlink a
+ * node in a bucket's list, O(1) either way; a tick only touches its own bucket.
+ * <p>
+ * A timer never fires early, and fires at most one tick late. Tasks run on the wheel's thread,
+ * one after another, so anything slow should hand off to another thread.
+ */
+public final class TimingWheel implements AutoCloseable {
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final Bucket[][] levels;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Thread ticker;
+
+    // last tick processed
+    private long now;
+    private int pending;
+    private volatile boolean closed;
+
+    /**
+     * @param tickMillis resolution; deadlines are rounded up to a whole tick
+     * @param slots      buckets per level, a power of two
+     * @param levels     how many levels; the wheel reaches tickMillis * slots^levels ahead
+     *                   (timers further out than that still work, they just cascade more often)
+     */
+    public TimingWheel(long tickMillis, int slots, int levels) {
+        this(tickMillis, slots, levels, System::currentTimeMillis, true);
+    }
+
+    // tests drive a manual clock with advance() instead of running the thread
+    TimingWheel(long tickMillis, int slots, int levels, LongSupplier clock, boolean start) {
+        if (tickMillis < 1 || Integer.bitCount(slots) != 1 || slots < 2 || levels < 1) {
+            throw new IllegalArgumentException("bad wheel shape");
+        }
+        this.tickMillis = tickMillis;
+        this.bits = Integer.numberOfTrailingZeros(slots);
+        this.mask = slots - 1;
+        this.clock = clock;
+        this.levels = new Bucket[levels][slots];
+        for (var level : this.levels) {
+            for (int i = 0; i < slots; i++) {
+                level[i] = new Bucket();
+            }
+        }
+        this.now = clock.getAsLong() / tickMillis;
+        if (start) {
+            ticker = new Thread(this::run, "timing-wheel");
+            ticker.setDaemon(true);
+            ticker.start();
+        } else {
+            ticker = null;
+        }
+    }
+
+    /**
+     * Runs task once, delayMillis from now, unless cancelled first.
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        // ceil, so a task never runs before its delay is up
+        long deadline = Math.floorDiv(clock.getAsLong() + Math.max(0, delayMillis) + tickMillis - 1, tickMillis);
+        var t = new Timeout(deadline, task);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("wheel closed");
+            }
+            place(t);
+            pending++;
+        } finally {
+            lock.unlock();
+        }
+        return t;
+    }
+
+    // timers scheduled and not yet fired or cancelled
+    public int pending() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void place(Timeout t) {
+        // anything already due goes in the next tick's bucket
+        long deadline = Math.max(t.deadline, now + 1);
+        long delta = deadline - now;
+        int level = 0;
+        while (level < levels.length - 1 && delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        levels[level][(int) ((deadline >>> (bits * level)) & mask)].add(t);
+    }
+
+    /**
+     * Processes every tick up to the clock's current time and runs what came due.
+     *
+     * @return how many tasks ran
+     */
+    int advance() {
+        long target = clock.getAsLong() / tickMillis;
+        List<Timeout> due = new ArrayList<>();
+        lock.lock();
+        try {
+            while (now < target) {
+                now++;
+                // a higher level's bucket comes due when all the levels below wrap round
+                for (int level = levels.length - 1; level >= 1; level--) {
+                    if ((now & ((1L << (bits * level)) - 1)) == 0) {
+                        cascade(levels[level][(int) ((now >>> (bits * level)) & mask)]);
+                    }
+                }
+                Bucket bucket = levels[0][(int) (now & mask)];
+                for (Timeout t = bucket.head; t != null; ) {
+                    Timeout next = t.next;
+                    bucket.remove(t);
+                    if (t.deadline <= now) {
+                        pending--;
+                        due.add(t);
+                    } else {
+                        // a far timer that shares the slot; its turn is a later lap
+                        place(t);
+                    }
+                    t = next;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (var t : due) {
+            try {
+                t.task.run();
+            } catch (RuntimeException e) {
+                System.err.println("timer task failed: " + e);
+            }
+        }
+        return due.size();
+    }
+
+    private void cascade(Bucket bucket) {
+        Timeout t = bucket.head;
+        bucket.head = null;
+        while (t != null) {
+            Timeout next = t.next;
+            t.prev = null;
+            t.next = null;
+            t.bucket = null;
+            place(t);
+            t = next;
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            advance();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+    }
+
+    public final class Timeout {
+        private final long deadline;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private Bucket bucket;
+
+        private Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * @return true if it was still pending and now won't run
+         */
+        public boolean cancel() {
+            lock.lock();
+            try {
+                if (bucket == null) {
+                    return false;
+                }
+                bucket.remove(this);
+                pending--;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // doubly linked so a cancel can unlink from the middle without a search
+    private static final class Bucket {
+        private Timeout head;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            t.prev = null;
+            t.next = head;
+            if (head != null) {
+                head.prev = t;
+            }
+            head = t;
+        }
+
+        void remove(Timeout t) {
+            if (t.prev != null) {
+                t.prev.next = t.next;
+            } else {
+                head = t.next;
+            }
+            if (t.next != null) {
+                t.next.prev = t.prev;
+            }
+            t.prev = null;
+            t.next = null;
+            t.bucket = null;
+        }
+    }
+}
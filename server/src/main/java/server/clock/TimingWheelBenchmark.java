@@ -0,0 +1,88 @@
+package server.clock;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a move costs the clock bookkeeping with many games going: cancel the side to move's
+ * flag timer and schedule the other side's. TimingWheel against the obvious alternative, a
+ * ScheduledThreadPoolExecutor (a binary heap, so O(log n) per schedule and cancel).
+ * <p>
+ * usage: TimingWheelBenchmark [games=100000] [moves=2000000]
+ */
+public class TimingWheelBenchmark {
+
+    interface Timers {
+        Object schedule(long delayMillis);
+
+        void cancel(Object timer);
+    }
+
+    private static final Runnable NOOP = () -> { };
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        System.out.printf("%d games, %d moves%n", games, moves);
+
+        var wheel = new TimingWheel(50, 256, 4);
+        var executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        try {
+            for (int round = 0; round < 2; round++) {
+                boolean report = round == 1;
+                run("timing wheel", games, moves, report, new Timers() {
+                    public Object schedule(long delayMillis) {
+                        return wheel.schedule(delayMillis, NOOP);
+                    }
+
+                    public void cancel(Object timer) {
+                        ((TimingWheel.Timeout) timer).cancel();
+                    }
+                });
+                run("scheduled pool", games, moves, report, new Timers() {
+                    public Object schedule(long delayMillis) {
+                        return executor.schedule(NOOP, delayMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    public void cancel(Object timer) {
+                        ((ScheduledFuture<?>) timer).cancel(false);
+                    }
+                });
+            }
+        } finally {
+            wheel.close();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void run(String name, int games, int moves, boolean report, Timers timers) {
+        var rnd = new Random(1);
+        // every game has a running clock, 1 to 10 minutes left
+        Object[] armed = new Object[games];
+        for (int g = 0; g < games; g++) {
+            armed[g] = timers.schedule(60_000 + rnd.nextInt(540_000));
+        }
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        long bytesBefore = threads.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        for (int i = 0; i < moves; i++) {
+            int g = rnd.nextInt(games);
+            timers.cancel(armed[g]);
+            armed[g] = timers.schedule(60_000 + rnd.nextInt(540_000));
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(tid) - bytesBefore;
+        for (Object t : armed) {
+            timers.cancel(t);
+        }
+        if (report) {
+            System.out.printf("%-16s %8.0f ns/move %8d B/move%n", name,
+                    (double) nanos / moves, allocated / moves);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package server.clock;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    // 8 slots x 3 levels with 10 ms ticks: level 0 covers 80 ms, level 1 640 ms, level 2 5.12 s
+    private TimingWheel smallWheel() {
+        return new TimingWheel(TICK, 8, 3, clock::get, false);
+    }
+
+    @Test
+    void schedulePositiveFiresOnTimeAcrossLevels() {
+        var wheel = smallWheel();
+        var rnd = new Random(7);
+        long start = clock.get();
+        int n = 2000;
+        long[] due = new long[n];
+        long[] firedAt = new long[n];
+        var fired = new AtomicInteger();
+        for (int i = 0; i < n; i++) {
+            int idx = i;
+            // up to 12 s: some timers are past the top level's reach and have to go round again
+            long delay = i < 10 ? i : rnd.nextInt(12_000);
+            due[i] = start + delay;
+            wheel.schedule(delay, () -> {
+                firedAt[idx] = clock.get();
+                fired.incrementAndGet();
+            });
+        }
+        assertEquals(n, wheel.pending());
+
+        while (clock.get() < start + 12_100) {
+            clock.addAndGet(TICK);
+            wheel.advance();
+        }
+        assertEquals(n, fired.get());
+        assertEquals(0, wheel.pending());
+        for (int i = 0; i < n; i++) {
+            assertTrue(firedAt[i] >= due[i], "timer " + i + " fired early");
+            assertTrue(firedAt[i] - due[i] < 2 * TICK, "timer " + i + " fired " + (firedAt[i] - due[i]) + " ms late");
+        }
+    }
+
+    @Test
+    void scheduleNegativeCancelledNeverFire() {
+        var wheel = smallWheel();
+        var fired = new ArrayList<Integer>();
+        List<TimingWheel.Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int idx = i;
+            timeouts.add(wheel.schedule(50L * i, () -> fired.add(idx)));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(timeouts.get(i).cancel());
+            assertFalse(timeouts.get(i).cancel(), "second cancel");
+        }
+        assertEquals(50, wheel.pending());
+
+        clock.addAndGet(10_000);
+        assertEquals(50, wheel.advance());
+        for (int idx : fired) {
+            assertEquals(1, idx % 2, "cancelled timer " + idx + " ran");
+        }
+        // too late to cancel once it ran
+        assertFalse(timeouts.get(1).cancel());
+        assertEquals(0, wheel.pending());
+
+        wheel.close();
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(1, () -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(10, 6, 2));
+    }
+}
@@ -0,0 +1,149 @@
+package server.cluster;
+
+import server.bus.GameEventBus;
+import server.bus.NodeMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Which node owns which game. Nodes find each other through HELLO heartbeats on the game bus;
+ * one that says BYE, or goes quiet for {@code timeoutMillis}, is taken off the ring and its
+ * games move to the nodes next to it. Ownership is advisory: every write is still a versioned
+ * update, so two nodes that briefly disagree about an owner can't corrupt a game, they just
+ * lose the in-memory shortcut for it.
+ * <p>
+ * A single node (the default) owns every game and never sends anything.
+ */
+public class Cluster implements AutoCloseable {
+
+    private final String nodeId;
+    private final GameEventBus bus;
+    private final int vnodes;
+    private final long timeoutMillis;
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final List<Consumer<HashRing>> changeListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeat;
+    private final LongAdder ownershipChanges = new LongAdder();
+    private volatile HashRing ring;
+
+    // just this node, no heartbeats
+    public static Cluster single(String nodeId) {
+        return new Cluster(nodeId, null, HashRing.DEFAULT_VNODES, 0, 0);
+    }
+
+    /**
+     * @param heartbeatMillis how often to say HELLO; 0 for a single node that never talks
+     * @param timeoutMillis   silence after which a peer counts as gone
+     */
+    public Cluster(String nodeId, GameEventBus bus, int vnodes, long heartbeatMillis, long timeoutMillis) {
+        this.nodeId = nodeId;
+        this.bus = bus;
+        this.vnodes = vnodes;
+        this.timeoutMillis = timeoutMillis;
+        this.ring = new HashRing(List.of(nodeId), vnodes);
+        if (bus == null || heartbeatMillis <= 0) {
+            heartbeat = null;
+            return;
+        }
+        bus.onNodeMessage(this::onNodeMessage);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "cluster-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleAtFixedRate(this::tick, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public HashRing ring() {
+        return ring;
+    }
+
+    public String owner(int gameID) {
+        return ring.owner(gameID);
+    }
+
+    public boolean owns(int gameID) {
+        return nodeId.equals(ring.owner(gameID));
+    }
+
+    // called with the new ring after every membership change, on the bus or heartbeat thread
+    public void onChange(Consumer<HashRing> listener) {
+        changeListeners.add(listener);
+    }
+
+    public long ownershipChanges() {
+        return ownershipChanges.sum();
+    }
+
+    private void onNodeMessage(NodeMessage m) {
+        if (nodeId.equals(m.from())) {
+            return;
+        }
+        switch (m.kind()) {
+            case HELLO -> {
+                boolean isNew = lastSeen.put(m.from(), System.currentTimeMillis()) == null;
+                if (isNew) {
+                    // answer right away so the newcomer doesn't wait a heartbeat to see us
+                    bus.send(NodeMessage.hello(nodeId));
+                    update();
+                }
+            }
+            case BYE -> {
+                if (lastSeen.remove(m.from()) != null) {
+                    update();
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void tick() {
+        try {
+            bus.send(NodeMessage.hello(nodeId));
+            long cutoff = System.currentTimeMillis() - timeoutMillis;
+            if (lastSeen.values().removeIf(seen -> seen < cutoff)) {
+                update();
+            }
+        } catch (RuntimeException e) {
+            // a failed beat must not cancel the schedule
+            System.err.println("cluster heartbeat failed: " + e);
+        }
+    }
+
+    // rebuilt from lastSeen rather than patched, so racing updates all settle on the same ring
+    private synchronized void update() {
+        var members = new TreeSet<>(lastSeen.keySet());
+        members.add(nodeId);
+        if (members.equals(ring.nodes())) {
+            return;
+        }
+        ring = new HashRing(members, vnodes);
+        ownershipChanges.increment();
+        for (var l : changeListeners) {
+            l.accept(ring);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (heartbeat == null) {
+            return;
+        }
+        heartbeat.shutdownNow();
+        bus.send(NodeMessage.bye(nodeId));
+    }
+}
@@ -0,0 +1,282 @@
+package server.cluster;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.*;
+import server.Server;
+import server.ServerConfig;
+import server.bus.TcpGameEventBus;
+import server.websocket.CommandDecoder;
+import websocket.WireFormat;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes talking over the loopback TCP bus, like two processes on one machine would; they
+ * share one in-memory store because that's the only store available without MySQL.
+ */
+public class ClusterTest {
+
+    private static final int HEARTBEAT_MILLIS = 50;
+
+    private final MemoryDataAccess dao = new MemoryDataAccess();
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final List<Server> servers = new ArrayList<>();
+    private final List<WebSocket> sockets = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (var ws : sockets) {
+            ws.abort();
+        }
+        for (var s : servers) {
+            try {
+                s.stop();
+            } catch (RuntimeException ignored) {
+            }
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (var s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    private Server node(String id, int busPort, int peerPort) {
+        var server = new Server(config(id, busPort, peerPort, HEARTBEAT_MILLIS), dao);
+        servers.add(server);
+        return server;
+    }
+
+    private static ServerConfig config(String id, int busPort, int peerPort, int heartbeatMillis) {
+        return new ServerConfig(4, 1, 8, false, null, 60, 32, 256, 10_000,
+                CommandDecoder.DEFAULT_MAX_CHARS, 1, true, false, 50, id, busPort, "localhost:" + peerPort,
+                heartbeatMillis, "", "", 0, 0, 0, 0);
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private String login(String user) throws DataAccessException {
+        dao.createUser(new UserData(user, "x", user + "@test"));
+        String token = user + "-token";
+        dao.createAuth(new AuthData(token, user));
+        return token;
+    }
+
+    // a game between alice and bob that node `owner` is responsible for
+    private int gameOwnedBy(Server owner) throws DataAccessException {
+        while (true) {
+            int id = dao.createGame(new GameData(0, "alice", "bob", "g", new ChessGame()));
+            if (owner.cluster().owns(id)) {
+                return id;
+            }
+        }
+    }
+
+    private BlockingQueue<ServerMessage> connect(int port, String token, int gameID) throws Exception {
+        var inbox = new LinkedBlockingQueue<ServerMessage>();
+        var ws = http.newWebSocketBuilder().buildAsync(URI.create("ws://localhost:" + port + "/ws"),
+                new WebSocket.Listener() {
+                    private final StringBuilder partial = new StringBuilder();
+
+                    @Override
+                    public CompletionStage<?> onText(WebSocket socket, CharSequence data, boolean last) {
+                        partial.append(data);
+                        if (last) {
+                            inbox.add(WireFormat.STANDARD.gson().fromJson(partial.toString(), ServerMessage.class));
+                            partial.setLength(0);
+                        }
+                        socket.request(1);
+                        return null;
+                    }
+                }).get(5, TimeUnit.SECONDS);
+        sockets.add(ws);
+        send(ws, new UserGameCommand(UserGameCommand.CommandType.CONNECT, token, gameID));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, next(inbox).getServerMessageType());
+        return inbox;
+    }
+
+    private static void send(WebSocket ws, UserGameCommand cmd) throws Exception {
+        ws.sendText(WireFormat.STANDARD.gson().toJson(cmd), true).get(5, TimeUnit.SECONDS);
+    }
+
+    private static ServerMessage next(BlockingQueue<ServerMessage> inbox) throws InterruptedException {
+        var msg = inbox.poll(5, TimeUnit.SECONDS);
+        assertNotNull(msg, "no message");
+        return msg;
+    }
+
+    private static ServerMessage.ServerMessageType nextType(BlockingQueue<ServerMessage> inbox)
+            throws InterruptedException {
+        return next(inbox).getServerMessageType();
+    }
+
+    // "x connected" goes out after x's board, so it can race the next connect; wait it out
+    @SafeVarargs
+    private static void drain(BlockingQueue<ServerMessage>... inboxes) throws InterruptedException {
+        Thread.sleep(300);
+        for (var inbox : inboxes) {
+            inbox.clear();
+        }
+    }
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(new ChessPosition(from.charAt(1) - '0', from.charAt(0) - 'a' + 1),
+                new ChessPosition(to.charAt(1) - '0', to.charAt(0) - 'a' + 1), null);
+    }
+
+    @Test
+    void ownershipPositiveMovesForwardedToOwnerThenHandedOff() throws Exception {
+        int busA = freePort();
+        int busB = freePort();
+        var a = node("node-a", busA, busB);
+        var b = node("node-b", busB, busA);
+        int portA = a.run(0);
+        int portB = b.run(0);
+        await(() -> a.cluster().ring().nodes().size() == 2 && b.cluster().ring().nodes().size() == 2,
+                "nodes to find each other");
+
+        String alice = login("alice");
+        String bob = login("bob");
+        String carol = login("carol");
+        int gameID = gameOwnedBy(a);
+        assertEquals("node-a", b.cluster().owner(gameID));
+
+        // both players on the node that doesn't own the game, an observer on the one that does
+        var white = connect(portB, alice, gameID);
+        var black = connect(portB, bob, gameID);
+        var observer = connect(portA, carol, gameID);
+        drain(white, black, observer);
+
+        send(sockets.get(0), new MakeMoveCommand(alice, gameID, move("e2", "e4")));
+        // applied on node-a, broadcast back over the bus to everyone, "alice moved" skips alice
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, nextType(white));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, nextType(black));
+        assertEquals(ServerMessage.ServerMessageType.NOTIFICATION, nextType(black));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, nextType(observer));
+        assertEquals(ServerMessage.ServerMessageType.NOTIFICATION, nextType(observer));
+        assertNull(white.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, forwarded(b));
+        assertEquals(0, forwarded(a));
+        assertEquals(ChessGame.TeamColor.BLACK, dao.getGame(gameID).game().getTeamTurn());
+
+        // node-a goes away: node-b takes its games over and plays them itself
+        a.stop();
+        servers.remove(a);
+        await(() -> b.cluster().ring().nodes().size() == 1, "node-b to notice node-a left");
+        assertTrue(b.cluster().owns(gameID));
+        send(sockets.get(1), new MakeMoveCommand(bob, gameID, move("e7", "e5")));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, nextType(black));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, nextType(white));
+        assertEquals(1, forwarded(b));
+        assertEquals(ChessGame.TeamColor.WHITE, dao.getGame(gameID).game().getTeamTurn());
+    }
+
+    @Test
+    void ownershipNegativeForwardedRejectionReachesSender() throws Exception {
+        int busA = freePort();
+        int busB = freePort();
+        var a = node("node-a", busA, busB);
+        var b = node("node-b", busB, busA);
+        a.run(0);
+        int portB = b.run(0);
+        await(() -> b.cluster().ring().nodes().size() == 2, "nodes to find each other");
+
+        String alice = login("alice");
+        login("bob");
+        int gameID = gameOwnedBy(a);
+        var white = connect(portB, alice, gameID);
+
+        // illegal, and then out of turn: both are turned down by node-a and the error comes back
+        send(sockets.get(0), new MakeMoveCommand(alice, gameID, move("e2", "e5")));
+        assertEquals(ServerMessage.ServerMessageType.ERROR, nextType(white));
+        send(sockets.get(0), new MakeMoveCommand(alice, gameID, move("e2", "e4")));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, nextType(white));
+        send(sockets.get(0), new MakeMoveCommand(alice, gameID, move("d2", "d4")));
+        assertEquals(ServerMessage.ServerMessageType.ERROR, nextType(white));
+        assertEquals(3, forwarded(b));
+        assertEquals(ChessGame.TeamColor.BLACK, dao.getGame(gameID).game().getTeamTurn());
+    }
+
+    @Test
+    void ownershipNegativeOwnerDiesMoveStillApplied() throws Exception {
+        int busA = freePort();
+        int busB = freePort();
+        // a slow heartbeat, so node-b still thinks node-a owns the game after it's gone
+        var busOfA = new TcpGameEventBus(busA, List.of(new InetSocketAddress("localhost", busB)));
+        var a = new Server(config("node-a", busA, busB, 1_000), dao, busOfA);
+        servers.add(a);
+        var b = new Server(config("node-b", busB, busA, 1_000), dao);
+        servers.add(b);
+        a.run(0);
+        int portB = b.run(0);
+        await(() -> b.cluster().ring().nodes().size() == 2, "nodes to find each other");
+
+        String alice = login("alice");
+        login("bob");
+        int gameID = gameOwnedBy(a);
+        var white = connect(portB, alice, gameID);
+        drain(white);
+
+        // node-a drops off the bus without a goodbye, the way a crash would
+        busOfA.close();
+        Thread.sleep(300);
+        assertEquals("node-a", b.cluster().owner(gameID));
+
+        // nobody to forward to: node-b applies the move itself instead of losing it
+        send(sockets.get(0), new MakeMoveCommand(alice, gameID, move("e2", "e4")));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, nextType(white));
+        assertEquals(0, forwarded(b));
+        assertEquals(ChessGame.TeamColor.BLACK, dao.getGame(gameID).game().getTeamTurn());
+    }
+
+    @Test
+    void signedTokensNegativeNoSharedSecretFailsFast() {
+        // signed tokens, no secret, and peers: every node would reject the others' tokens
+        var config = new ServerConfig(4, 1, 8, true, null, 60, 32, 256, 10_000,
+                CommandDecoder.DEFAULT_MAX_CHARS, 1, true, false, 50, "node-a", 0, "localhost:1",
+                HEARTBEAT_MILLIS, "", "", 0, 0, 0, 0);
+        var e = assertThrows(IllegalStateException.class, () -> new Server(config, dao));
+        assertTrue(e.getMessage().contains("chess.auth.secret"), e.getMessage());
+    }
+
+    private static long forwarded(Server s) {
+        for (String line : s.metrics().scrape().split("\n")) {
+            if (line.startsWith("chess_ws_forwarded_moves_total ")) {
+                return (long) Double.parseDouble(line.substring(line.indexOf(' ') + 1));
+            }
+        }
+        throw new AssertionError("no forwarded moves counter");
+    }
+}
@@ -0,0 +1,93 @@
+package server.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent-hash ring that maps game ids to node ids. Each node gets {@code vnodes} points on
+ * the ring and a game belongs to the first point at or after its own hash, so when a node joins
+ * or leaves only the games next to its points change owner (about 1/n of them) and the rest stay
+ * where they are.
+ * <p>
+ * Immutable; {@link #with} and {@link #without} return a new ring.
+ */
+public final class HashRing {
+
+    public static final int DEFAULT_VNODES = 128;
+
+    private final int vnodes;
+    private final Set<String> nodes;
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    public HashRing(Collection<String> nodes, int vnodes) {
+        if (vnodes < 1) {
+            throw new IllegalArgumentException("vnodes must be >= 1");
+        }
+        this.vnodes = vnodes;
+        this.nodes = Set.copyOf(new TreeSet<>(nodes));
+        // sorted so two nodes with the same membership build the same ring even if two points collide
+        for (String node : new TreeSet<>(nodes)) {
+            for (int i = 0; i < vnodes; i++) {
+                points.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    public HashRing with(String node) {
+        if (nodes.contains(node)) {
+            return this;
+        }
+        var next = new TreeSet<>(nodes);
+        next.add(node);
+        return new HashRing(next, vnodes);
+    }
+
+    public HashRing without(String node) {
+        if (!nodes.contains(node)) {
+            return this;
+        }
+        var next = new TreeSet<>(nodes);
+        next.remove(node);
+        return new HashRing(next, vnodes);
+    }
+
+    /**
+     * @return the node that owns this game, or null if the ring is empty
+     */
+    public String owner(int gameID) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> e = points.ceilingEntry(mix(gameID));
+        return (e != null ? e : points.firstEntry()).getValue();
+    }
+
+    // FNV-1a over the UTF-8 bytes, then mixed so nearby names don't land next to each other
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // murmur3's 64-bit finalizer; game ids are sequential, this spreads them over the ring
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
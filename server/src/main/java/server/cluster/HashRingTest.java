@@ -0,0 +1,67 @@
+package server.cluster;
+
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashRingTest {
+
+    private static final int GAMES = 30_000;
+
+    @Test
+    void ownerPositiveSpreadsEvenlyAndAgrees() {
+        var ring = new HashRing(List.of("a", "b", "c"), HashRing.DEFAULT_VNODES);
+        // another node with the same members, found in another order, must agree on every game
+        var other = new HashRing(List.of("c", "a", "b"), HashRing.DEFAULT_VNODES);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int id = 1; id <= GAMES; id++) {
+            String owner = ring.owner(id);
+            assertEquals(owner, other.owner(id));
+            counts.merge(owner, 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        for (int n : counts.values()) {
+            // sequential ids, 128 points each: every node within 25% of a fair share
+            assertTrue(Math.abs(n - GAMES / 3) < GAMES / 3 / 4, counts.toString());
+        }
+    }
+
+    @Test
+    void ownerPositiveJoinAndLeaveOnlyMoveTheirShare() {
+        var three = new HashRing(List.of("a", "b", "c"), HashRing.DEFAULT_VNODES);
+        var four = three.with("d");
+        int moved = 0;
+        for (int id = 1; id <= GAMES; id++) {
+            String before = three.owner(id);
+            String after = four.owner(id);
+            if (!before.equals(after)) {
+                // a join only ever takes games, it never shuffles them between the old nodes
+                assertEquals("d", after);
+                moved++;
+            }
+        }
+        assertTrue(moved > GAMES / 4 * 0.75 && moved < GAMES / 4 * 1.25, "moved " + moved);
+
+        var two = three.without("b");
+        for (int id = 1; id <= GAMES; id++) {
+            if (!"b".equals(three.owner(id))) {
+                assertEquals(three.owner(id), two.owner(id));
+            } else {
+                assertNotEquals("b", two.owner(id));
+            }
+        }
+        assertSame(three, three.with("a"));
+        assertSame(three, three.without("z"));
+    }
+
+    @Test
+    void ownerNegativeEmptyAndBadRing() {
+        assertNull(new HashRing(List.of(), 8).owner(1));
+        assertNull(new HashRing(List.of("a"), 8).without("a").owner(1));
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of("a"), 0));
+    }
+}
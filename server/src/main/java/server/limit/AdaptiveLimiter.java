@@ -0,0 +1,109 @@
+package server.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many requests are in flight at once, and moves the cap with measured latency
+ * (the "gradient" approach): the average of the last few requests is compared with a long-run
+ * average, and while requests take much longer than usual the cap shrinks, on the theory that
+ * they're queueing somewhere (usually the database). When latency is back to normal the cap
+ * grows again by about its square root at a time. A request over the cap is turned away right
+ * away, which is much kinder than letting it sit in a queue behind everyone else.
+ * <p>
+ * Averaging the recent side too means a steady mix of quick and slow requests looks steady,
+ * rather than every slow one reading as a spike; still, routes that are slow on purpose
+ * (bcrypt) are best left out of the limiter altogether.
+ * <p>
+ * Only samples taken while at least half the cap is in use count: with the server mostly idle,
+ * a slow request says nothing about how many requests it can take.
+ */
+public class AdaptiveLimiter {
+
+    // latency up to this many times the average is normal
+    private static final double TOLERANCE = 1.5;
+    // how much of each new estimate goes into the cap
+    private static final double SMOOTHING = 0.2;
+    // samples the long-run average is taken over
+    private static final int LONG_WINDOW = 500;
+    // samples the recent average is taken over
+    private static final int SHORT_WINDOW = 5;
+    // below this, differences are jitter (GC, scheduling), not queueing
+    private static final long MIN_RTT_NANOS = 1_000_000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+
+    // read on every request without the lock
+    private volatile double limit;
+    // guarded by this
+    private double longRtt;
+    private double shortRtt;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("need 1 <= min <= initial <= max");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @return false if the server is at its limit and this request should be shed; otherwise
+     * the caller must {@link #release} once it's done
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                shed.increment();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long rttNanos) {
+        int busy = inflight.getAndDecrement();
+        sample(Math.max(rttNanos, MIN_RTT_NANOS), busy);
+    }
+
+    private synchronized void sample(long rtt, int busy) {
+        if (longRtt == 0) {
+            longRtt = rtt;
+            shortRtt = rtt;
+        } else {
+            longRtt += (rtt - longRtt) / LONG_WINDOW;
+            shortRtt += (rtt - shortRtt) / SHORT_WINDOW;
+        }
+        if (longRtt > 2.0 * shortRtt) {
+            // well under the average again: let the average come down quickly too
+            longRtt *= 0.95;
+        }
+        double current = limit;
+        if (busy < current / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double next = current * gradient + Math.sqrt(current);
+        limit = Math.max(minLimit, Math.min(maxLimit, current * (1 - SMOOTHING) + next * SMOOTHING));
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inflight() {
+        return inflight.get();
+    }
+
+    // requests turned away so far
+    public long shed() {
+        return shed.sum();
+    }
+}
@@ -0,0 +1,113 @@
+package server.limit;
+
+import dataaccess.MemoryDataAccess;
+import dataaccess.SlowDataAccess;
+import server.Server;
+import server.ServerConfig;
+import server.ratelimit.RateLimits;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offers more GET /game traffic than a struggling database can serve, at a fixed rate however
+ * slowly responses come back (the way real users keep arriving), with and without the
+ * adaptive limiter. Without it every request waits in line and latency grows for the whole run;
+ * with it the excess gets a quick 503 and the requests that are let in stay fast.
+ * <p>
+ * usage: AdaptiveLimiterBenchmark [requestsPerSecond=400] [seconds=8] [daoLatencyMs=10] [daoCapacity=4]
+ */
+public class AdaptiveLimiterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int latency = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int capacity = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        // one client hammering from loopback is the point here, not something to rate limit
+        if (System.getProperty("chess.rate.exempt") == null) {
+            System.setProperty("chess.rate.exempt", RateLimits.LOOPBACK);
+        }
+        System.out.printf("%d req/s for %d s, dao %d ms per call, %d calls at a time%n",
+                rate, seconds, latency, capacity);
+        for (int initial : new int[]{0, 100}) {
+            run(initial, rate, seconds, latency, capacity);
+        }
+        System.exit(0);
+    }
+
+    private static void run(int initialLimit, int rate, int seconds, int latency, int capacity) throws Exception {
+        var config = ServerConfig.load().withConcurrencyLimit(initialLimit);
+        var server = new Server(config, new SlowDataAccess(new MemoryDataAccess(), latency, capacity));
+        int port = server.run(0);
+        var http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        var base = "http://localhost:" + port;
+
+        var reg = http.send(HttpRequest.newBuilder(URI.create(base + "/user"))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"bench\",\"password\":\"pw\",\"email\":\"b@b\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        var token = reg.body().replaceAll(".*\"authToken\":\"([^\"]+)\".*", "$1");
+        var list = HttpRequest.newBuilder(URI.create(base + "/game")).header("authorization", token).GET().build();
+
+        List<Long> served = Collections.synchronizedList(new ArrayList<>());
+        List<Long> shedTimes = Collections.synchronizedList(new ArrayList<>());
+        var errors = new AtomicInteger();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        try (var pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < (long) rate * seconds; i++) {
+                long due = start + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                pool.submit(() -> {
+                    // measured from when it was due, so a late send counts against the server
+                    try {
+                        int status = http.send(list, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        long took = System.nanoTime() - due;
+                        if (status == 200) {
+                            served.add(took);
+                        } else if (status == 503) {
+                            shedTimes.add(took);
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                });
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        String limit = server.metrics().scrape().lines()
+                .filter(l -> l.startsWith("chess_http_concurrency_limit "))
+                .map(l -> l.substring(l.indexOf(' ') + 1))
+                .findFirst().orElse("-");
+        server.stop();
+
+        System.out.printf("%-9s served %6.0f/s  p50 %7.1f ms  p99 %7.1f ms | shed %6d  p99 %6.1f ms | errors %d, limit at end %s%n",
+                initialLimit == 0 ? "unlimited" : "adaptive", served.size() / elapsed,
+                percentile(served, 0.50), percentile(served, 0.99),
+                shedTimes.size(), percentile(shedTimes, 0.99), errors.get(), limit);
+    }
+
+    private static double percentile(List<Long> nanos, double p) {
+        if (nanos.isEmpty()) {
+            return 0;
+        }
+        var sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+        return sorted.get(Math.min(sorted.size() - 1, (int) (sorted.size() * p))) / 1e6;
+    }
+}
@@ -0,0 +1,88 @@
+package server.limit;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveLimiterTest {
+
+    private static final long MS = 1_000_000;
+
+    // fills the limiter, then finishes everything it let in, each taking rttMillis
+    private static void busyRound(AdaptiveLimiter limiter, long rttMillis) {
+        int n = 0;
+        while (limiter.tryAcquire()) {
+            n++;
+        }
+        for (int i = 0; i < n; i++) {
+            limiter.release(rttMillis * MS);
+        }
+    }
+
+    @Test
+    void limitPositiveShedsPastTheLimitAndGrowsWhileFast() {
+        var limiter = new AdaptiveLimiter(10, 2, 50);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.shed());
+        assertEquals(10, limiter.inflight());
+        for (int i = 0; i < 10; i++) {
+            limiter.release(20 * MS);
+        }
+        assertEquals(0, limiter.inflight());
+
+        // steady latency with the limit in use: room to grow, up to the max
+        for (int i = 0; i < 50; i++) {
+            busyRound(limiter, 20);
+        }
+        assertEquals(50, limiter.limit());
+    }
+
+    @Test
+    void limitNegativeShrinksWhenLatencyClimbs() {
+        var limiter = new AdaptiveLimiter(40, 2, 100);
+        for (int i = 0; i < 5; i++) {
+            busyRound(limiter, 10);
+        }
+        int before = limiter.limit();
+
+        // the database slows down tenfold: requests are queueing, so let fewer in
+        for (int i = 0; i < 5; i++) {
+            busyRound(limiter, 100);
+        }
+        assertTrue(limiter.limit() < before / 2, limiter.limit() + " vs " + before);
+        int shrunk = limiter.limit();
+
+        // a few slow requests while mostly idle don't count either way
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(1_000 * MS);
+        }
+        assertEquals(shrunk, limiter.limit());
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimiter(10, 20, 30));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLimiter(10, 0, 30));
+    }
+
+    @Test
+    void limitPositiveSteadyMixOfSlowAndFastHolds() {
+        var limiter = new AdaptiveLimiter(40, 2, 100);
+        // one request in five takes 250 ms (say a login), the rest 1 ms; nothing is getting
+        // worse, so the limit has no reason to shrink
+        long n = 0;
+        int lowest = limiter.limit();
+        for (int round = 0; round < 200; round++) {
+            int let = 0;
+            while (limiter.tryAcquire()) {
+                let++;
+            }
+            for (int i = 0; i < let; i++) {
+                limiter.release(n++ % 5 == 0 ? 250 * MS : MS);
+            }
+            lowest = Math.min(lowest, limiter.limit());
+        }
+        assertTrue(lowest >= 40, "limit fell to " + lowest);
+        assertEquals(100, limiter.limit());
+    }
+}
@@ -0,0 +1,112 @@
+package server.lobby;
+
+import com.google.gson.Gson;
+import dataaccess.DbLanes;
+import io.javalin.http.sse.SseClient;
+import service.GameService;
+import service.LobbyIndex;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * GET /lobby as server-sent events: a "snapshot" event with every game, then one event per
+ * change ("created", "seat_taken", "finished", "cleared"), each with the index's sequence
+ * number as its id. The index only queues updates here; each client has its own virtual thread
+ * writing them out, so a slow client holds up nobody but itself. One that falls too far behind
+ * is cut off and has to reconnect, which gets it a fresh snapshot.
+ */
+public class LobbyStream {
+
+    // updates a client can be behind before it's cut off
+    static final int MAX_BACKLOG = 1024;
+    // a comment every so often finds clients that went away without closing
+    private static final long PING_SECONDS = 15;
+
+    private final GameService games;
+    private final Gson gson;
+    private final LongAdder eventsSent = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    public LobbyStream(GameService games, Gson gson) {
+        this.games = games;
+        this.gson = gson;
+    }
+
+    // rows as GET /game lists them
+    record SnapshotData(long seq, List<GameService.GameListing> games) {
+    }
+
+    // game is null for cleared
+    record UpdateData(long seq, GameService.GameListing game) {
+    }
+
+    // the route checked the token already, so an auth failure here means it just expired
+    public void handle(SseClient client) {
+        BlockingQueue<LobbyIndex.Update> queue = new ArrayBlockingQueue<>(MAX_BACKLOG);
+        var behind = new AtomicBoolean();
+        Consumer<LobbyIndex.Update> listener = u -> {
+            if (!queue.offer(u)) {
+                behind.set(true);
+            }
+        };
+        LobbyIndex.Snapshot snapshot;
+        try {
+            // the first watcher loads the index from storage
+            snapshot = DbLanes.run(DbLanes.Lane.LOBBY,
+                    () -> games.watchLobby(client.ctx().header("authorization"), listener));
+        } catch (Exception e) {
+            client.close();
+            return;
+        }
+        client.keepAlive();
+        var writer = Thread.ofVirtual().name("lobby-sse").unstarted(() -> {
+            try {
+                send(client, "snapshot", new SnapshotData(snapshot.seq(),
+                        snapshot.games().stream().map(GameService.GameSummary::listing).toList()), snapshot.seq());
+                while (!client.terminated()) {
+                    var u = queue.poll(PING_SECONDS, TimeUnit.SECONDS);
+                    if (behind.get()) {
+                        overflows.increment();
+                        break;
+                    }
+                    if (u == null) {
+                        client.sendComment("ping");
+                    } else {
+                        send(client, u.change().name().toLowerCase(Locale.ROOT),
+                                new UpdateData(u.seq(), u.game() == null ? null : u.game().listing()), u.seq());
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            } finally {
+                games.lobby().unsubscribe(listener);
+                client.close();
+            }
+        });
+        client.onClose(() -> {
+            games.lobby().unsubscribe(listener);
+            writer.interrupt();
+        });
+        writer.start();
+    }
+
+    private void send(SseClient client, String event, Object data, long seq) {
+        client.sendEvent(event, gson.toJson(data), Long.toString(seq));
+        eventsSent.increment();
+    }
+
+    public long eventsSent() {
+        return eventsSent.sum();
+    }
+
+    // clients cut off for falling behind
+    public long overflows() {
+        return overflows.sum();
+    }
+}
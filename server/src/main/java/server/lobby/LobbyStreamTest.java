@@ -0,0 +1,95 @@
+package server.lobby;
+
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.UserData;
+import org.junit.jupiter.api.*;
+import server.Server;
+import server.ServerConfig;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LobbyStreamTest {
+
+    private final MemoryDataAccess dao = new MemoryDataAccess();
+    private final HttpClient http = HttpClient.newHttpClient();
+    private Server server;
+    private int port;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new Server(ServerConfig.load(), dao);
+        port = server.run(0);
+        dao.createUser(new UserData("alice", "x", "a@test"));
+        dao.createAuth(new AuthData("alice-token", "alice"));
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+    }
+
+    // the next event's "event:" and "data:" lines, skipping ids and pings
+    private static String nextEvent(Iterator<String> lines) {
+        String event = null;
+        String data = null;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.isEmpty() && event != null) {
+                return event + " " + data;
+            } else if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                data = line.substring(5).trim();
+            }
+        }
+        return fail("stream ended");
+    }
+
+    @Test
+    void lobbyPositiveSnapshotThenCreatedGame() throws Exception {
+        var create = request("/game").header("authorization", "alice-token")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"gameName\":\"first\"}")).build();
+        assertEquals(200, http.send(create, HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        HttpResponse<Stream<String>> res = http.send(request("/lobby").header("authorization", "alice-token")
+                .header("Accept", "text/event-stream").GET().build(), HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, res.statusCode());
+        try (var body = res.body()) {
+            var lines = body.iterator();
+            String snapshot = nextEvent(lines);
+            assertTrue(snapshot.startsWith("snapshot "), snapshot);
+            assertTrue(snapshot.contains("\"gameName\":\"first\""), snapshot);
+
+            var second = request("/game").header("authorization", "alice-token")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"gameName\":\"second\"}")).build();
+            http.send(second, HttpResponse.BodyHandlers.discarding());
+            String created = nextEvent(lines);
+            assertTrue(created.startsWith("created "), created);
+            assertTrue(created.contains("\"gameName\":\"second\""), created);
+            assertFalse(created.contains("first"), "only the change, not the lobby again");
+        }
+    }
+
+    @Test
+    void lobbyNegativeNeedsAuth() throws Exception {
+        var res = http.send(request("/lobby").header("authorization", "nope").GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(401, res.statusCode());
+        res = http.send(request("/lobby").GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(401, res.statusCode());
+        assertEquals(0, server.metrics().scrape().lines()
+                .filter(l -> l.startsWith("chess_lobby_subscribers ") && !l.endsWith(" 0")).count());
+    }
+}
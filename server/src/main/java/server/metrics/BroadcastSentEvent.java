@@ -0,0 +1,32 @@
+package server.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one broadcast to a game's sessions. Duration covers encoding and queueing,
+ * not the socket writes, which finish later on Jetty's threads.
+ */
+@Name("chess.BroadcastSent")
+@Label("Broadcast Sent")
+@Category({"Chess", "WebSocket"})
+@Description("A batch of frames queued for every session in a game")
+@StackTrace(false)
+public class BroadcastSentEvent extends Event {
+
+    @Label("Game ID")
+    public int gameID;
+
+    @Label("Recipients")
+    public int recipients;
+
+    @Label("Bytes")
+    @Description("Payload bytes queued across all recipients")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,159 @@
+package server.metrics;
+
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.GameQuery;
+import dataaccess.SeatClaim;
+import model.AuthData;
+import model.GameData;
+import model.GameSummaryData;
+import model.UserData;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps another DataAccess and times every call into chess_dao_call_seconds{op=...}.
+ * The histograms are looked up once here so each call only pays for two nanoTime reads.
+ */
+public class InstrumentedDataAccess implements DataAccess {
+
+    private final DataAccess delegate;
+    private final LongAdder errors = new LongAdder();
+
+    private final LatencyHistogram clear;
+    private final LatencyHistogram createUser;
+    private final LatencyHistogram getUser;
+    private final LatencyHistogram updatePasswordHash;
+    private final LatencyHistogram createAuth;
+    private final LatencyHistogram getAuth;
+    private final LatencyHistogram deleteAuth;
+    private final LatencyHistogram createGame;
+    private final LatencyHistogram getGame;
+    private final LatencyHistogram listGames;
+    private final LatencyHistogram getGameSummary;
+    private final LatencyHistogram listGameSummaries;
+    private final LatencyHistogram claimSeat;
+    private final LatencyHistogram updateGame;
+
+    public InstrumentedDataAccess(DataAccess delegate, Metrics metrics) {
+        this.delegate = delegate;
+        clear = timer(metrics, "clear");
+        createUser = timer(metrics, "createUser");
+        getUser = timer(metrics, "getUser");
+        updatePasswordHash = timer(metrics, "updatePasswordHash");
+        createAuth = timer(metrics, "createAuth");
+        getAuth = timer(metrics, "getAuth");
+        deleteAuth = timer(metrics, "deleteAuth");
+        createGame = timer(metrics, "createGame");
+        getGame = timer(metrics, "getGame");
+        listGames = timer(metrics, "listGames");
+        getGameSummary = timer(metrics, "getGameSummary");
+        listGameSummaries = timer(metrics, "listGameSummaries");
+        claimSeat = timer(metrics, "claimSeat");
+        updateGame = timer(metrics, "updateGame");
+        metrics.counter("chess_dao_errors_total", "DAO calls that threw DataAccessException", errors::sum);
+    }
+
+    private static LatencyHistogram timer(Metrics metrics, String op) {
+        return metrics.timer("chess_dao_call_seconds", "Time spent in DataAccess calls", "op", op);
+    }
+
+    private interface Call<T> {
+        T run() throws DataAccessException;
+    }
+
+    private interface VoidCall {
+        void run() throws DataAccessException;
+    }
+
+    private <T> T timed(LatencyHistogram h, Call<T> call) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return call.run();
+        } catch (DataAccessException e) {
+            errors.increment();
+            throw e;
+        } finally {
+            h.recordSince(start);
+        }
+    }
+
+    private void timed(LatencyHistogram h, VoidCall call) throws DataAccessException {
+        timed(h, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        timed(clear, delegate::clear);
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        timed(createUser, () -> delegate.createUser(user));
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return timed(getUser, () -> delegate.getUser(username));
+    }
+
+    @Override
+    public void updatePasswordHash(String username, String passwordHash) throws DataAccessException {
+        timed(updatePasswordHash, () -> delegate.updatePasswordHash(username, passwordHash));
+    }
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        timed(createAuth, () -> delegate.createAuth(auth));
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        return timed(getAuth, () -> delegate.getAuth(authToken));
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        timed(deleteAuth, () -> delegate.deleteAuth(authToken));
+    }
+
+    @Override
+    public int createGame(GameData game) throws DataAccessException {
+        return timed(createGame, () -> delegate.createGame(game));
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        return timed(getGame, () -> delegate.getGame(gameID));
+    }
+
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        return timed(listGames, delegate::listGames);
+    }
+
+    @Override
+    public GameSummaryData getGameSummary(int gameID) throws DataAccessException {
+        return timed(getGameSummary, () -> delegate.getGameSummary(gameID));
+    }
+
+    @Override
+    public List<GameSummaryData> listGameSummaries(GameQuery query) throws DataAccessException {
+        return timed(listGameSummaries, () -> delegate.listGameSummaries(query));
+    }
+
+    @Override
+    public SeatClaim claimSeat(int gameID, boolean white, String username) throws DataAccessException {
+        return timed(claimSeat, () -> delegate.claimSeat(gameID, white, username));
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        timed(updateGame, () -> delegate.updateGame(game));
+    }
+}
@@ -0,0 +1,90 @@
+package server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDR-style latency histogram: log-linear buckets with 32 sub-buckets per power of two,
+ * so any recorded value is reported within ~3% of what it was. Recording is a couple of
+ * atomic adds and never allocates, so it is cheap enough for every request.
+ * Values are nanoseconds.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    // enough buckets for any positive long
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB + SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(v));
+        total.increment();
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long sumNanos() {
+        return sum.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return the highest value that falls in the same bucket as the requested rank
+     */
+    public long valueAt(double quantile) {
+        long n = count();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestIn(i), maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    static int indexOf(long v) {
+        if (v < 2 * SUB) {
+            return (int) v;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int shift = msb - SUB_BITS;
+        // top is the leading SUB_BITS+1 bits, always in [SUB, 2*SUB)
+        int top = (int) (v >>> shift);
+        return shift * SUB + top;
+    }
+
+    static long highestIn(int index) {
+        if (index < 2 * SUB) {
+            return index;
+        }
+        int shift = index / SUB - 1;
+        long top = index % SUB + SUB;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,133 @@
+package server.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Tiny metrics registry that renders the Prometheus text format.
+ * <p>
+ * Recording never goes through here: callers register once, keep the returned
+ * {@link LatencyHistogram} (or their own LongAdder) and record into it directly.
+ * Gauges and counters are read through suppliers only when /metrics is scraped.
+ * Histograms are exposed as summaries (quantiles + _sum + _count).
+ */
+public class Metrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private enum Kind { SUMMARY, GAUGE, COUNTER }
+
+    private record Family(String name, String help, Kind kind, double divisor, Map<String, Object> series) {}
+
+    // insertion order so the output is stable and grouped the way it was registered
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /** Histogram of durations in nanoseconds, exported in seconds. */
+    public LatencyHistogram timer(String name, String help, String... labels) {
+        return summary(name, help, 1e9, new LatencyHistogram(), labels);
+    }
+
+    /** Exports a histogram that something else already owns (values in nanoseconds). */
+    public LatencyHistogram timer(String name, String help, LatencyHistogram existing, String... labels) {
+        return summary(name, help, 1e9, existing, labels);
+    }
+
+    /** Histogram of plain values, e.g. how many sessions a broadcast went to. */
+    public LatencyHistogram distribution(String name, String help, LatencyHistogram existing, String... labels) {
+        return summary(name, help, 1, existing, labels);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        add(name, help, Kind.GAUGE, 1, labels, value);
+    }
+
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        add(name, help, Kind.COUNTER, 1, labels, value);
+    }
+
+    private synchronized LatencyHistogram summary(String name, String help, double divisor,
+                                                  LatencyHistogram histogram, String... labels) {
+        Object existing = family(name, help, Kind.SUMMARY, divisor).series().get(labelString(labels));
+        if (existing != null) {
+            return (LatencyHistogram) existing;
+        }
+        add(name, help, Kind.SUMMARY, divisor, labels, histogram);
+        return histogram;
+    }
+
+    private synchronized void add(String name, String help, Kind kind, double divisor, String[] labels, Object source) {
+        family(name, help, kind, divisor).series().put(labelString(labels), source);
+    }
+
+    private Family family(String name, String help, Kind kind, double divisor) {
+        Family f = families.computeIfAbsent(name, n -> new Family(n, help, kind, divisor, new LinkedHashMap<>()));
+        if (f.kind() != kind) {
+            throw new IllegalArgumentException(name + " is already registered as a " + f.kind());
+        }
+        return f;
+    }
+
+    public synchronized String scrape() {
+        var out = new StringBuilder(8192);
+        for (Family f : families.values()) {
+            out.append("# HELP ").append(f.name()).append(' ').append(f.help()).append('\n');
+            out.append("# TYPE ").append(f.name()).append(' ')
+                    .append(f.kind().name().toLowerCase()).append('\n');
+            for (var series : f.series().entrySet()) {
+                String labels = series.getKey();
+                switch (f.kind()) {
+                    case SUMMARY -> writeSummary(out, f, labels, (LatencyHistogram) series.getValue());
+                    case GAUGE -> line(out, f.name(), labels, ((DoubleSupplier) series.getValue()).getAsDouble());
+                    case COUNTER -> line(out, f.name(), labels, ((LongSupplier) series.getValue()).getAsLong());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeSummary(StringBuilder out, Family f, String labels, LatencyHistogram h) {
+        for (double q : QUANTILES) {
+            String withQ = labels.isEmpty()
+                    ? "quantile=\"" + q + "\""
+                    : labels + ",quantile=\"" + q + "\"";
+            line(out, f.name(), withQ, h.valueAt(q) / f.divisor());
+        }
+        line(out, f.name() + "_sum", labels, h.sumNanos() / f.divisor());
+        line(out, f.name() + "_count", labels, h.count());
+    }
+
+    private static void line(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    // labels come in as key, value, key, value...
+    static String labelString(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be key/value pairs");
+        }
+        var sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
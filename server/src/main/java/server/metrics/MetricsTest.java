@@ -0,0 +1,68 @@
+package server.metrics;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    void histogramPositiveWithinPrecision() {
+        var h = new LatencyHistogram();
+        var rnd = new Random(7);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1_000 + rnd.nextInt(50_000_000);
+            h.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+
+        assertEquals(values.length, h.count());
+        assertEquals(values[values.length - 1], h.maxNanos());
+        for (double q : new double[]{0.5, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            // one bucket is 1/32 of its power of two wide
+            assertEquals(exact, h.valueAt(q), exact / 16.0, "quantile " + q);
+        }
+    }
+
+    @Test
+    void histogramNegativeEmptyAndOutOfRange() {
+        var h = new LatencyHistogram();
+        assertEquals(0, h.valueAt(0.99));
+
+        h.record(-5);
+        h.record(Long.MAX_VALUE);
+        assertEquals(2, h.count());
+        assertEquals(0, h.valueAt(0.5));
+        assertEquals(Long.MAX_VALUE, h.valueAt(1.0));
+    }
+
+    @Test
+    void scrapePositivePrometheusText() {
+        var m = new Metrics();
+        var t = m.timer("chess_test_seconds", "test timer", "route", "/game");
+        t.record(2_000_000_000L);
+        m.gauge("chess_test_sessions", "test gauge", () -> 3);
+        m.counter("chess_test_total", "test counter", () -> 42, "kind", "a\"b");
+
+        // same name and labels hands back the same histogram
+        assertSame(t, m.timer("chess_test_seconds", "test timer", "route", "/game"));
+
+        String text = m.scrape();
+        assertTrue(text.contains("# TYPE chess_test_seconds summary"));
+        assertTrue(text.contains("chess_test_seconds_count{route=\"/game\"} 1"));
+        assertTrue(text.contains("chess_test_seconds_sum{route=\"/game\"} 2"));
+        assertTrue(text.contains("chess_test_sessions 3"));
+        assertTrue(text.contains("chess_test_total{kind=\"a\\\"b\"} 42"));
+    }
+
+    @Test
+    void registerNegativeKindMismatch() {
+        var m = new Metrics();
+        m.gauge("chess_test", "g", () -> 1);
+        assertThrows(IllegalArgumentException.class, () -> m.timer("chess_test", "t"));
+        assertThrows(IllegalArgumentException.class, () -> m.counter("chess_other", "c", () -> 1, "odd"));
+    }
+}
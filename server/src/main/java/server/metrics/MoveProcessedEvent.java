@@ -0,0 +1,42 @@
+package server.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one MAKE_MOVE, start to broadcast. Only costs anything while a recording
+ * has chess.MoveProcessed enabled, e.g. {@code jcmd <pid> JFR.start settings=profile}.
+ */
+@Name("chess.MoveProcessed")
+@Label("Move Processed")
+@Category({"Chess", "WebSocket"})
+@Description("A MAKE_MOVE command from validation through persistence and fan-out")
+@StackTrace(false)
+public class MoveProcessedEvent extends Event {
+
+    @Label("Game ID")
+    public int gameID;
+
+    @Label("Ply")
+    public int ply;
+
+    @Label("Validation Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long validationTime;
+
+    @Label("Persist Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long persistTime;
+
+    @Label("Fan-out")
+    @Description("Sessions the resulting broadcast was queued for")
+    public int fanout;
+
+    @Label("Outcome")
+    public String outcome;
+}
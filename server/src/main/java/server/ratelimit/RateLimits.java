@@ -0,0 +1,116 @@
+package server.ratelimit;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The server's rate limits, by name: an HTTP route ("POST /session") or a websocket command
+ * ("MAKE_MOVE") is charged to the caller's auth token, or its address when it has none, and
+ * everything from one address is also charged to the "ip" limit, so rotating junk tokens
+ * doesn't get round it. Names without a limit are only held to "ip".
+ * <p>
+ * Spec: {@code "POST /session=5/20, MAKE_MOVE=10/30, ip=200/400"}, name=perSecond/burst.
+ */
+public final class RateLimits {
+
+    public static final String IP = "ip";
+
+    public static final RateLimits NONE = new RateLimits(Map.of(), Set.of());
+
+    public static final String DEFAULT_SPEC =
+            "POST /user=1/10, POST /session=2/10, POST /game=2/20, PUT /game=2/20, "
+                    + "GET /lobby=1/10, MAKE_MOVE=10/30, CONNECT=5/20, ip=200/400";
+
+    // nobody by default: behind a reverse proxy on the same host every client is loopback
+    public static final String DEFAULT_EXEMPT = "";
+
+    // what local tools, benchmarks and the load generator pass as -Dchess.rate.exempt
+    public static final String LOOPBACK = "127.0.0.1, ::1, 0:0:0:0:0:0:0:1";
+
+    private final Map<String, TokenBuckets> limits;
+    private final Map<String, LongAdder> rejected = new LinkedHashMap<>();
+    private final Set<String> exempt;
+
+    public RateLimits(Map<String, TokenBuckets> limits, Set<String> exempt) {
+        this.limits = Map.copyOf(limits);
+        this.exempt = Set.copyOf(exempt);
+        for (var name : limits.keySet()) {
+            rejected.put(name, new LongAdder());
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if spec doesn't parse
+     */
+    public static RateLimits parse(String spec, String exempt) {
+        var limits = new LinkedHashMap<String, TokenBuckets>();
+        for (var entry : split(spec)) {
+            int eq = entry.lastIndexOf('=');
+            int slash = entry.lastIndexOf('/');
+            if (eq <= 0 || slash < eq) {
+                throw new IllegalArgumentException("bad rate limit: " + entry);
+            }
+            try {
+                limits.put(entry.substring(0, eq).trim(), new TokenBuckets(
+                        Double.parseDouble(entry.substring(eq + 1, slash).trim()),
+                        Integer.parseInt(entry.substring(slash + 1).trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad rate limit: " + entry, e);
+            }
+        }
+        return new RateLimits(limits, Set.copyOf(split(exempt)));
+    }
+
+    private static List<String> split(String list) {
+        if (list == null || list.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(list.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    /**
+     * Charges one request under name.
+     *
+     * @param key     the caller's auth token, or null to charge the address
+     * @param address the caller's IP
+     * @return false if it's over a limit and should be turned away
+     */
+    public boolean allow(String name, String key, String address) {
+        if (limits.isEmpty() || address == null) {
+            return true;
+        }
+        if (address.startsWith("[")) {
+            // IPv6 as it comes off an HTTP request
+            address = address.substring(1, address.length() - 1);
+        }
+        if (exempt.contains(address)) {
+            return true;
+        }
+        var ip = limits.get(IP);
+        if (ip != null && !ip.tryAcquire(address)) {
+            rejected.get(IP).increment();
+            return false;
+        }
+        var limit = limits.get(name);
+        if (limit != null && !limit.tryAcquire(key != null && !key.isEmpty() ? key : address)) {
+            rejected.get(name).increment();
+            return false;
+        }
+        return true;
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(rejected.keySet());
+    }
+
+    // requests turned away under name
+    public long rejected(String name) {
+        var count = rejected.get(name);
+        return count == null ? 0 : count.sum();
+    }
+}
@@ -0,0 +1,117 @@
+package server.ratelimit;
+
+import dataaccess.MemoryDataAccess;
+import org.junit.jupiter.api.*;
+import server.Server;
+import server.ServerConfig;
+import server.websocket.CommandDecoder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitsTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void bucketsPositiveBurstThenRefill() {
+        var buckets = new TokenBuckets(2, 3, nanos::get);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(buckets.tryAcquire("alice"));
+        }
+        assertFalse(buckets.tryAcquire("alice"));
+        // 2 a second: one back after half a second, and never more than the burst
+        nanos.addAndGet(500_000_000L);
+        assertTrue(buckets.tryAcquire("alice"));
+        assertFalse(buckets.tryAcquire("alice"));
+        nanos.addAndGet(60_000_000_000L);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(buckets.tryAcquire("alice"));
+        }
+        assertFalse(buckets.tryAcquire("alice"));
+    }
+
+    @Test
+    void bucketsNegativeKeysDontShareAndIpCatchesRotation() {
+        var buckets = new TokenBuckets(1, 1, nanos::get);
+        assertTrue(buckets.tryAcquire("alice"));
+        assertFalse(buckets.tryAcquire("alice"));
+        assertTrue(buckets.tryAcquire("bob"), "a separate bucket for bob");
+        // a flood of distinct keys is capped, the oldest are forgotten once they've filled back up
+        for (int i = 0; i < 300_000; i++) {
+            nanos.addAndGet(1_000_000L);
+            buckets.tryAcquire("junk-" + i);
+        }
+        assertTrue(buckets.keys() <= 64 * 4096);
+
+        var limits = new RateLimits(Map.of(
+                "MAKE_MOVE", new TokenBuckets(1, 100, nanos::get),
+                RateLimits.IP, new TokenBuckets(1, 5, nanos::get)), Set.of("10.0.0.9"));
+        // a new token every time gets round MAKE_MOVE's limit, but not the address's
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limits.allow("MAKE_MOVE", "token-" + i, "10.0.0.1"));
+        }
+        assertFalse(limits.allow("MAKE_MOVE", "token-5", "10.0.0.1"));
+        assertTrue(limits.allow("MAKE_MOVE", "token-5", "10.0.0.2"));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limits.allow("MAKE_MOVE", "t", "10.0.0.9"), "exempt");
+        }
+        assertEquals(1, limits.rejected(RateLimits.IP));
+        assertEquals(0, limits.rejected("MAKE_MOVE"));
+
+        assertThrows(IllegalArgumentException.class, () -> RateLimits.parse("POST /user=1", ""));
+        assertThrows(IllegalArgumentException.class, () -> RateLimits.parse("POST /user=x/2", ""));
+        assertThrows(IllegalArgumentException.class, () -> RateLimits.parse("POST /user=0/2", ""));
+        assertTrue(RateLimits.parse("", "").names().isEmpty());
+    }
+
+    @Test
+    void bucketsNegativeFloodCantResetAnEmptyBucket() {
+        var buckets = new TokenBuckets(1, 1, nanos::get);
+        assertTrue(buckets.tryAcquire("mallory"));
+        assertFalse(buckets.tryAcquire("mallory"));
+        // enough made-up keys to push mallory out of her stripe if idle keys were simply dropped
+        for (int i = 0; i < 2 * 64 * 4096; i++) {
+            buckets.tryAcquire("junk-" + i);
+        }
+        assertFalse(buckets.tryAcquire("mallory"), "came back with a full bucket");
+        assertTrue(buckets.keys() <= 64 * 4 * 4096);
+    }
+
+    @Test
+    void serverPositiveLoginFloodGets429() throws Exception {
+        var config = new ServerConfig(4, 1, 8, false, null, 60, 32, 256, 10_000,
+                CommandDecoder.DEFAULT_MAX_CHARS, 1, true, false, 50, "n", 0, "", 500,
+                "POST /session=0.1/3", "", 0, 0, 0, 0);
+        var server = new Server(config, new MemoryDataAccess());
+        try {
+            int port = server.run(0);
+            var http = HttpClient.newHttpClient();
+            var login = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/session"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"nobody\",\"password\":\"x\"}"))
+                    .build();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(401, http.send(login, HttpResponse.BodyHandlers.ofString()).statusCode());
+            }
+            var res = http.send(login, HttpResponse.BodyHandlers.ofString());
+            assertEquals(429, res.statusCode());
+            assertEquals("1", res.headers().firstValue("Retry-After").orElse(null));
+            assertTrue(res.body().contains("too many requests"));
+            assertTrue(server.metrics().scrape().contains("chess_rate_limited_total{limit=\"POST /session\"} 1"),
+                    server.metrics().scrape());
+
+            // other routes aren't affected
+            var games = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/game")).GET().build();
+            assertEquals(401, http.send(games, HttpResponse.BodyHandlers.ofString()).statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+}
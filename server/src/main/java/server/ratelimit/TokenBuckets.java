@@ -0,0 +1,121 @@
+package server.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * One token bucket per key (an auth token, an address), all with the same rate and burst.
+ * Keys are hashed onto a fixed set of stripes, each with its own lock and map, so callers only
+ * contend when their keys land on the same stripe. Each stripe keeps its most recently used keys
+ * and forgets the rest, which keeps a flood of made-up tokens from growing the maps forever.
+ * Only a bucket that has filled back up is forgotten, since a forgotten key comes back full:
+ * otherwise a client could reset its own bucket by pushing it out with made-up keys.
+ */
+public final class TokenBuckets {
+
+    private static final int STRIPES = 64;
+    private static final int KEYS_PER_STRIPE = 4096;
+    // past this a stripe forgets its idlest key full or not; memory matters more by then
+    private static final int MAX_KEYS_PER_STRIPE = 4 * KEYS_PER_STRIPE;
+
+    private final double perNano;
+    private final double burst;
+    private final LongSupplier nanoClock;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * @param perSecond tokens added back per second
+     * @param burst     most tokens a bucket holds, i.e. how many requests can come at once
+     */
+    public TokenBuckets(double perSecond, int burst) {
+        this(perSecond, burst, System::nanoTime);
+    }
+
+    // tests move the clock by hand
+    TokenBuckets(double perSecond, int burst, LongSupplier nanoClock) {
+        if (!(perSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive");
+        }
+        this.perNano = perSecond / 1e9;
+        this.burst = burst;
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Takes a token from key's bucket.
+     *
+     * @return false if the bucket is empty and the request should be turned away
+     */
+    public boolean tryAcquire(String key) {
+        int h = key.hashCode();
+        // spread the high bits down, String hashes of similar tokens differ mostly at the bottom
+        var stripe = stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        long now = nanoClock.getAsLong();
+        stripe.lock();
+        try {
+            var bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                // a new key starts full
+                bucket = new Bucket(burst, now);
+                stripe.buckets.put(key, bucket);
+                evictIdlest(stripe, now);
+            } else {
+                bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updated) * perNano);
+                bucket.updated = now;
+            }
+            if (bucket.tokens < 1) {
+                return false;
+            }
+            bucket.tokens -= 1;
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private void evictIdlest(Stripe stripe, long now) {
+        if (stripe.buckets.size() <= KEYS_PER_STRIPE) {
+            return;
+        }
+        // access order, so the first entry is the one idle longest
+        var idlest = stripe.buckets.values().iterator();
+        var bucket = idlest.next();
+        if (bucket.tokens + (now - bucket.updated) * perNano >= burst
+                || stripe.buckets.size() > MAX_KEYS_PER_STRIPE) {
+            idlest.remove();
+        }
+    }
+
+    // keys currently tracked, for tests
+    int keys() {
+        int n = 0;
+        for (var stripe : stripes) {
+            stripe.lock();
+            try {
+                n += stripe.buckets.size();
+            } finally {
+                stripe.unlock();
+            }
+        }
+        return n;
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updated;
+
+        private Bucket(double tokens, long updated) {
+            this.tokens = tokens;
+            this.updated = updated;
+        }
+    }
+
+    private static final class Stripe extends ReentrantLock {
+        private final Map<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+    }
+}
@@ -0,0 +1,216 @@
+package server.websocket;
+
+import io.javalin.websocket.WsContext;
+import server.metrics.LatencyHistogram;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Fans a {@link FrameBatch} out to a set of sessions without blocking the caller.
+ * Each session has its own bounded {@link SessionOutbox}, so one stalled socket
+ * can't hold up the handler thread or the other players.
+ */
+public class Broadcaster {
+
+    /**
+     * @param highWater  queued frames before old board states get dropped
+     * @param maxQueue   queued frames before the session is cut off
+     * @param slowMillis how long a session may stay above the high-water mark
+     */
+    public record Limits(int highWater, int maxQueue, long slowMillis) {}
+
+    private final Limits limits;
+    private final Map<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+    // recipients per broadcast
+    private final LatencyHistogram fanout = new LatencyHistogram();
+
+    public Broadcaster(Limits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * @param senderId session id that caused the event, or null if everyone gets everything
+     * @param features looks up what each session negotiated when it connected
+     */
+    public Delivery send(Collection<WsContext> sessions, String senderId, FrameBatch batch,
+                         Function<WsContext, SessionFeatures> features) {
+        var delivery = new Delivery();
+        if (!batch.isEmpty()) {
+            for (var ctx : sessions) {
+                if (!ctx.session.isOpen()) {
+                    continue;
+                }
+                var frames = batch.framesFor(ctx.sessionId().equals(senderId), features.apply(ctx));
+                if (!frames.isEmpty()) {
+                    delivery.recipients++;
+                    for (var f : frames) {
+                        delivery.bytes += f.size();
+                    }
+                    offer(ctx, frames, delivery);
+                }
+            }
+        }
+        fanout.record(delivery.recipients);
+        delivery.seal();
+        return delivery;
+    }
+
+    // a message for one session, queued behind anything already on its way to it
+    public Delivery sendTo(WsContext ctx, OutboundFrame frame) {
+        var delivery = new Delivery();
+        if (ctx.session.isOpen()) {
+            delivery.recipients++;
+            delivery.bytes += frame.size();
+            offer(ctx, List.of(frame), delivery);
+        }
+        delivery.seal();
+        return delivery;
+    }
+
+    private void offer(WsContext ctx, List<OutboundFrame> frames, Delivery delivery) {
+        outboxes.computeIfAbsent(ctx.sessionId(), id -> new SessionOutbox(ctx, this))
+                .offer(frames, delivery);
+    }
+
+    public void remove(String sessionId) {
+        var outbox = outboxes.remove(sessionId);
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    Limits limits() {
+        return limits;
+    }
+
+    void queued(int frames) {
+        pendingWrites.addAndGet(frames);
+    }
+
+    void written(Delivery delivery, OutboundFrame frame, Throwable err) {
+        pendingWrites.decrementAndGet();
+        if (err == null) {
+            framesSent.increment();
+            bytesSent.add(frame.size());
+        } else {
+            failedWrites.increment();
+        }
+        delivery.finished(err);
+    }
+
+    void dropped(Delivery delivery) {
+        pendingWrites.decrementAndGet();
+        droppedFrames.increment();
+        delivery.finished(null);
+    }
+
+    void slowDisconnect(WsContext ctx) {
+        slowDisconnects.increment();
+        outboxes.remove(ctx.sessionId());
+    }
+
+    // per-session queue depth (queued + in flight), for metrics
+    public Map<String, Integer> queueDepths() {
+        var out = new HashMap<String, Integer>();
+        outboxes.forEach((id, box) -> out.put(id, box.depth()));
+        return out;
+    }
+
+    public int pendingWrites() {
+        return pendingWrites.get();
+    }
+
+    public long framesSent() {
+        return framesSent.sum();
+    }
+
+    public long bytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long failedWrites() {
+        return failedWrites.sum();
+    }
+
+    public long droppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    public long slowDisconnects() {
+        return slowDisconnects.sum();
+    }
+
+    public LatencyHistogram fanout() {
+        return fanout;
+    }
+
+    public int maxQueueDepth() {
+        int max = 0;
+        for (var box : outboxes.values()) {
+            max = Math.max(max, box.depth());
+        }
+        return max;
+    }
+
+    /**
+     * Tracks one broadcast. {@link #completion()} finishes when every frame has been written
+     * or dropped; {@link #failures()} says how many writes failed (closed sockets etc).
+     */
+    public static final class Delivery {
+        // one extra count held until send() has queued everything
+        private final AtomicInteger outstanding = new AtomicInteger(1);
+        private final AtomicInteger failures = new AtomicInteger();
+        private final CompletableFuture<Delivery> completion = new CompletableFuture<>();
+        private int recipients;
+        private long bytes;
+
+        void started() {
+            outstanding.incrementAndGet();
+        }
+
+        void finished(Throwable err) {
+            if (err != null) {
+                failures.incrementAndGet();
+            }
+            if (outstanding.decrementAndGet() == 0) {
+                completion.complete(this);
+            }
+        }
+
+        private void seal() {
+            finished(null);
+        }
+
+        public int recipients() {
+            return recipients;
+        }
+
+        // payload bytes queued, summed over recipients
+        public long bytes() {
+            return bytes;
+        }
+
+        public int failures() {
+            return failures.get();
+        }
+
+        public CompletableFuture<Delivery> completion() {
+            return completion;
+        }
+    }
+}
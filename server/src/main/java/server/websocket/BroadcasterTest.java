@@ -0,0 +1,83 @@
+package server.websocket;
+
+import io.javalin.websocket.WsContext;
+import org.junit.jupiter.api.*;
+import websocket.WireFormat;
+import websocket.messages.NotificationMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BroadcasterTest {
+
+    private final Broadcaster broadcaster = new Broadcaster(new Broadcaster.Limits(64, 1_000, 60_000));
+
+    @Test
+    void broadcastPositiveEverySessionGetsTheSameEncode() throws Exception {
+        var encodes = new AtomicInteger();
+        var batch = new FrameBatch((msg, format) -> {
+            encodes.incrementAndGet();
+            return OutboundFrame.encode(format.gson(), msg);
+        }).toAll(new NotificationMessage("alice moved e2e4")).toOthers(new NotificationMessage("your turn"));
+
+        var sockets = new ArrayList<SessionOutboxTest.StubSocket>();
+        var sessions = new ArrayList<WsContext>();
+        for (int i = 0; i < 6; i++) {
+            var socket = new SessionOutboxTest.StubSocket("s" + i);
+            socket.resume();
+            sockets.add(socket);
+            sessions.add(socket.ctx);
+        }
+        // s0 caused it; the last two asked for the compact format
+        var compact = new SessionFeatures(false, true);
+        var delivery = broadcaster.send(sessions, "s0", batch,
+                ctx -> ctx.sessionId().compareTo("s4") >= 0 ? compact : SessionFeatures.NONE);
+        assertNotNull(delivery.completion().get(5, TimeUnit.SECONDS));
+
+        // each message once per wire format, however many sessions there are
+        assertEquals(2 * 2, encodes.get());
+        // the sender's list and everyone else's share the one frame, buffer and all
+        assertSame(batch.framesFor(true, SessionFeatures.NONE).get(0),
+                batch.framesFor(false, SessionFeatures.NONE).get(0));
+        assertEquals(2 * 2, encodes.get());
+        assertEquals(List.of(sockets.get(0).sent().get(0)), sockets.get(0).sent());
+        var standard = sockets.get(1).sent();
+        assertEquals(2, standard.size());
+        assertEquals(sockets.get(0).sent().get(0), standard.get(0));
+        for (int i = 2; i < 4; i++) {
+            assertEquals(standard, sockets.get(i).sent(), "s" + i);
+        }
+        assertEquals(WireFormat.STANDARD.gson().toJson(new NotificationMessage("your turn")), standard.get(1));
+        assertEquals(sockets.get(4).sent(), sockets.get(5).sent());
+        assertEquals(WireFormat.COMPACT.gson().toJson(new NotificationMessage("your turn")),
+                sockets.get(5).sent().get(1));
+
+        assertEquals(6, delivery.recipients());
+        assertEquals(0, delivery.failures());
+        assertEquals(11, broadcaster.framesSent());
+        assertEquals(0, broadcaster.pendingWrites());
+    }
+
+    @Test
+    void broadcastNegativeFailedSendIsReportedThroughTheDelivery() throws Exception {
+        var ok = new SessionOutboxTest.StubSocket("ok");
+        ok.resume();
+        var broken = new SessionOutboxTest.StubSocket("broken");
+        var delivery = broadcaster.send(List.of(ok.ctx, broken.ctx), null,
+                SessionOutboxTest.batch().toAll(new NotificationMessage("hello")), ctx -> SessionFeatures.NONE);
+
+        // not done while a write is still out
+        assertFalse(delivery.completion().isDone());
+        broken.fail();
+        assertSame(delivery, delivery.completion().get(5, TimeUnit.SECONDS));
+        assertEquals(2, delivery.recipients());
+        assertEquals(1, delivery.failures());
+        assertEquals(1, broadcaster.failedWrites());
+        assertEquals(1, broadcaster.framesSent());
+        assertEquals(1, ok.sent().size());
+    }
+}
@@ -0,0 +1,58 @@
+package server.websocket;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import websocket.WireFormat;
+import websocket.commands.UserGameCommand;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Turns one websocket text frame into a command, parsing it once: a MAKE_MOVE comes back as a
+ * MakeMoveCommand straight away. Frames over the size limit are turned away before any parsing,
+ * and anything that isn't exactly one well-formed command object is rejected.
+ * Thread-safe; the adapter underneath holds no state.
+ */
+public final class CommandDecoder {
+
+    // a real command is a couple of hundred chars; Jetty's own 64 KiB cap still applies above this
+    public static final int DEFAULT_MAX_CHARS = 4096;
+
+    private final int maxChars;
+    // either format's adapter reads both forms
+    private final TypeAdapter<UserGameCommand> adapter =
+            WireFormat.STANDARD.gson().getAdapter(UserGameCommand.class);
+
+    public CommandDecoder(int maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is too big or not a valid command
+     */
+    public UserGameCommand decode(String frame) {
+        if (frame == null || frame.isEmpty()) {
+            throw new IllegalArgumentException("empty frame");
+        }
+        if (frame.length() > maxChars) {
+            throw new IllegalArgumentException("frame too large");
+        }
+        try {
+            var in = new JsonReader(new StringReader(frame));
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new IllegalArgumentException("malformed command");
+            }
+            UserGameCommand cmd = adapter.read(in);
+            if (in.peek() != JsonToken.END_DOCUMENT) {
+                throw new IllegalArgumentException("malformed command");
+            }
+            return cmd;
+        } catch (IOException | JsonParseException | IllegalStateException | NumberFormatException e) {
+            // JsonReader reports syntax errors as IOException and type mismatches as IllegalStateException
+            throw new IllegalArgumentException("malformed command", e);
+        }
+    }
+}
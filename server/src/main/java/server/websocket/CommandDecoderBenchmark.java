@@ -0,0 +1,62 @@
+package server.websocket;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import websocket.WireFormat;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Cost of turning a MAKE_MOVE frame into a command: the old way (reflective Gson into
+ * UserGameCommand, then the same string again into MakeMoveCommand) vs CommandDecoder.
+ * <p>
+ * usage: CommandDecoderBenchmark [iterations=500000]
+ */
+public class CommandDecoderBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        var move = new ChessMove(new ChessPosition(7, 5), new ChessPosition(8, 5), ChessPiece.PieceType.QUEEN);
+        var cmd = new MakeMoveCommand("0f8c7e52-3b1a-4c55-9d0e-2b4a8f6c1d33", 1234, move);
+        String standard = WireFormat.STANDARD.gson().toJson(cmd);
+        String compact = WireFormat.COMPACT.gson().toJson(cmd);
+        System.out.println("standard frame: " + standard);
+        System.out.println("compact frame:  " + compact);
+
+        var reflective = new Gson();
+        var decoder = new CommandDecoder(CommandDecoder.DEFAULT_MAX_CHARS);
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1;
+            run("gson x2", iterations, report, () -> {
+                UserGameCommand base = reflective.fromJson(standard, UserGameCommand.class);
+                return base.getCommandType() == UserGameCommand.CommandType.MAKE_MOVE
+                        ? reflective.fromJson(standard, MakeMoveCommand.class).getMove() : null;
+            });
+            run("decoder", iterations, report, () -> ((MakeMoveCommand) decoder.decode(standard)).getMove());
+            run("decoder compact", iterations, report, () -> ((MakeMoveCommand) decoder.decode(compact)).getMove());
+        }
+    }
+
+    private static Object sink;
+
+    private static void run(String name, int iterations, boolean report, Supplier<Object> op) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        long bytesBefore = threads.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = op.get();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(tid) - bytesBefore;
+        if (report) {
+            System.out.printf("%-16s %8.0f ns/op %8d B/op%n", name,
+                    (double) nanos / iterations, allocated / iterations);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package server.websocket;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.*;
+import websocket.WireFormat;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandDecoderTest {
+
+    private final CommandDecoder decoder = new CommandDecoder(CommandDecoder.DEFAULT_MAX_CHARS);
+
+    @Test
+    void decodePositiveOneParsePerSubtype() {
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var mm = new MakeMoveCommand("tok", 7, move);
+        // what an unmodified client sends, and the compact form
+        for (String frame : new String[]{new Gson().toJson(mm), WireFormat.COMPACT.gson().toJson(mm)}) {
+            var cmd = assertInstanceOf(MakeMoveCommand.class, decoder.decode(frame));
+            assertEquals(mm, cmd);
+            assertEquals(move, cmd.getMove());
+        }
+
+        var connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, "tok", 3);
+        var cmd = decoder.decode(new Gson().toJson(connect));
+        assertEquals(UserGameCommand.class, cmd.getClass());
+        assertEquals(connect, cmd);
+        // unknown keys are ignored, like reflection did
+        assertEquals(connect, decoder.decode(
+                "{\"commandType\":\"CONNECT\",\"authToken\":\"tok\",\"gameID\":3,\"extra\":[1,{}]}"));
+        // and the hand-written writer matches reflection
+        assertEquals(new Gson().toJson(mm), WireFormat.STANDARD.gson().toJson(mm));
+        var promo = new MakeMoveCommand("t", 1,
+                new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1), ChessPiece.PieceType.ROOK));
+        assertEquals(new Gson().toJson(promo), WireFormat.STANDARD.gson().toJson(promo));
+    }
+
+    @Test
+    void decodeNegativeRejected() {
+        String[] bad = {
+                "",
+                "not json",
+                "[1,2]",
+                "{\"commandType\":\"CONNECT\",\"authToken\":\"tok\"",
+                "{\"commandType\":\"DANCE\",\"authToken\":\"tok\",\"gameID\":1}",
+                "{\"authToken\":\"tok\",\"gameID\":1}",
+                "{\"commandType\":\"CONNECT\",\"gameID\":\"seven\"}",
+                "{\"commandType\":\"MAKE_MOVE\",\"authToken\":\"tok\",\"move\":\"e2e4\"}",
+                "{\"commandType\":\"MAKE_MOVE\",\"gameID\":1,\"move\":\"e2e9\"}",
+                "{\"commandType\":\"CONNECT\",\"gameID\":1} {}",
+        };
+        for (String frame : bad) {
+            assertThrows(IllegalArgumentException.class, () -> decoder.decode(frame), frame);
+        }
+
+        var small = new CommandDecoder(64);
+        String big = "{\"commandType\":\"CONNECT\",\"authToken\":\"" + "x".repeat(100) + "\",\"gameID\":1}";
+        var e = assertThrows(IllegalArgumentException.class, () -> small.decode(big));
+        assertEquals("frame too large", e.getMessage());
+    }
+}
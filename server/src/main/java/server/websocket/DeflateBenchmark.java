@@ -0,0 +1,155 @@
+package server.websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import websocket.WireFormat;
+import websocket.messages.LoadGameMessage;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+
+/**
+ * What permessage-deflate costs and saves on the LOAD_GAME broadcasts of one game watched by
+ * many sessions. Each session compresses for itself, the way Jetty's extension does it (a
+ * Deflater per connection, SYNC_FLUSH per message, the 00 00 ff ff tail stripped), so CPU grows
+ * with the audience while the plain path encodes once and shares the bytes.
+ * <p>
+ * "takeover" keeps each session's window between messages, so the next board compresses
+ * against the last one; "no takeover" starts every message cold. "preset dict" is a cold
+ * start primed with the opening position: RFC 7692 has no way to negotiate one, it's only
+ * here to show how much of the takeover win a shared dictionary would get back.
+ * <p>
+ * usage: DeflateBenchmark [observers=100] [plies=60] [rounds=20]
+ */
+public class DeflateBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int observers = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        for (var format : WireFormat.values()) {
+            List<byte[]> boards = boards(format, plies);
+            byte[] dictionary = format.gson().toJson(new LoadGameMessage(new ChessGame()))
+                    .getBytes(StandardCharsets.UTF_8);
+            long plain = 0;
+            for (byte[] b : boards) {
+                plain += b.length;
+            }
+            System.out.printf("%s format, %d boards, %d observers, avg %d B/board%n",
+                    format, boards.size(), observers, plain / boards.size());
+            System.out.printf("  %-24s %10s %8s %14s%n", "", "B/board", "ratio", "us/broadcast");
+            for (int round = 0; round < 2; round++) {
+                boolean report = round == 1;
+                run("plain", boards, observers, rounds, report, plain, () -> null, null);
+                for (int level : new int[] {1, 6}) {
+                    run("deflate-" + level + " no takeover", boards, observers, rounds, report, plain,
+                            () -> new Deflater(level, true), Mode.NO_TAKEOVER);
+                    run("deflate-" + level + " takeover", boards, observers, rounds, report, plain,
+                            () -> new Deflater(level, true), Mode.TAKEOVER);
+                    run("deflate-" + level + " preset dict", boards, observers, rounds, report, plain,
+                            () -> new Deflater(level, true), Mode.dictionary(dictionary));
+                }
+            }
+        }
+    }
+
+    // the positions of one random game, each as the LOAD_GAME text a broadcast would send
+    private static List<byte[]> boards(WireFormat format, int plies) throws Exception {
+        var rnd = new Random(11);
+        var game = new ChessGame();
+        var out = new ArrayList<byte[]>();
+        for (int ply = 0; ply < plies; ply++) {
+            var moves = new ArrayList<ChessMove>();
+            for (int row = 1; row <= 8; row++) {
+                for (int col = 1; col <= 8; col++) {
+                    var pos = new ChessPosition(row, col);
+                    var piece = game.getBoard().getPiece(pos);
+                    if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                        moves.addAll(game.validMoves(pos));
+                    }
+                }
+            }
+            if (moves.isEmpty()) {
+                break;
+            }
+            game.makeMove(moves.get(rnd.nextInt(moves.size())));
+            out.add(format.gson().toJson(new LoadGameMessage(game)).getBytes(StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private record Mode(boolean takeover, byte[] dictionary) {
+        static final Mode NO_TAKEOVER = new Mode(false, null);
+        static final Mode TAKEOVER = new Mode(true, null);
+
+        static Mode dictionary(byte[] dictionary) {
+            return new Mode(false, dictionary);
+        }
+    }
+
+    private static long sink;
+
+    private static void run(String name, List<byte[]> boards, int observers, int rounds, boolean report,
+                            long plainBytes, Supplier<Deflater> factory, Mode mode) {
+        var threads = ManagementFactory.getThreadMXBean();
+        byte[] out = new byte[64 * 1024];
+        long wire = 0;
+        long cpu = 0;
+        long broadcasts = 0;
+        for (int r = 0; r < rounds; r++) {
+            var deflaters = new Deflater[observers];
+            for (int s = 0; s < observers; s++) {
+                deflaters[s] = factory.get();
+            }
+            wire = 0;
+            long start = threads.getCurrentThreadCpuTime();
+            for (byte[] board : boards) {
+                if (mode == null) {
+                    // encoded once, the same buffer goes to every session
+                    sink += board.length;
+                    wire += board.length;
+                } else {
+                    for (int s = 0; s < observers; s++) {
+                        int n = compress(deflaters[s], board, out, mode);
+                        sink += n;
+                        if (s == 0) {
+                            wire += n;
+                        }
+                    }
+                }
+                broadcasts++;
+            }
+            cpu += threads.getCurrentThreadCpuTime() - start;
+            for (var d : deflaters) {
+                if (d != null) {
+                    d.end();
+                }
+            }
+        }
+        if (report) {
+            System.out.printf("  %-24s %10d %7.1f%% %14.1f%n", name, wire / boards.size(),
+                    100.0 * wire / plainBytes, cpu / 1000.0 / broadcasts);
+        }
+    }
+
+    private static int compress(Deflater d, byte[] message, byte[] out, Mode mode) {
+        if (!mode.takeover()) {
+            d.reset();
+            if (mode.dictionary() != null) {
+                d.setDictionary(mode.dictionary());
+            }
+        }
+        d.setInput(message);
+        // a board is a few KB at most, well inside out
+        int n = d.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+        // the empty stored block SYNC_FLUSH ends with; the receiver puts it back
+        return n - 4;
+    }
+}
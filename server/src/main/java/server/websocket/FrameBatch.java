@@ -0,0 +1,115 @@
+package server.websocket;
+
+import websocket.WireFormat;
+import websocket.messages.ServerMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * The messages one event sends to a game, in order. Some go to everyone, some skip the
+ * session that caused the event (e.g. "alice moved" isn't sent back to alice), and some
+ * have a smaller delta form for sessions that support it.
+ * Each message is encoded at most once per wire format, the first time a session needs it.
+ * A batch is filled and sent by a single thread.
+ */
+public final class FrameBatch {
+
+    private final BiFunction<ServerMessage, WireFormat, OutboundFrame> encoder;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<ListKey, List<OutboundFrame>> lists = new HashMap<>();
+
+    public FrameBatch(BiFunction<ServerMessage, WireFormat, OutboundFrame> encoder) {
+        this.encoder = encoder;
+    }
+
+    public FrameBatch toAll(ServerMessage msg) {
+        return add(msg, null, true);
+    }
+
+    public FrameBatch toOthers(ServerMessage msg) {
+        return add(msg, null, false);
+    }
+
+    // delta sessions get the second message instead of the first
+    public FrameBatch toAll(ServerMessage full, ServerMessage delta) {
+        return add(full, delta, true);
+    }
+
+    private FrameBatch add(ServerMessage full, ServerMessage delta, boolean includeSender) {
+        return add(new Item(full, delta, includeSender));
+    }
+
+    // e.g. a batch another node published, rebuilt here for this node's sessions
+    public FrameBatch add(Item item) {
+        entries.add(new Entry(item));
+        lists.clear();
+        return this;
+    }
+
+    // what was added, in order, without the encoded frames
+    public List<Item> items() {
+        var out = new ArrayList<Item>(entries.size());
+        for (var e : entries) {
+            out.add(e.item);
+        }
+        return out;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    List<OutboundFrame> framesFor(boolean isSender, SessionFeatures features) {
+        // only a handful of distinct lists per batch, so build each one once
+        return lists.computeIfAbsent(new ListKey(isSender, features), k -> {
+            var out = new ArrayList<OutboundFrame>(entries.size());
+            for (var e : entries) {
+                if (e.includeSender || !isSender) {
+                    out.add(e.frame(features));
+                }
+            }
+            return out;
+        });
+    }
+
+    private record ListKey(boolean isSender, SessionFeatures features) {}
+
+    /**
+     * One message of the batch.
+     *
+     * @param delta         sent instead of full to delta sessions, may be null
+     * @param includeSender false to skip the session that caused the event
+     */
+    public record Item(ServerMessage full, ServerMessage delta, boolean includeSender) {}
+
+    private final class Entry {
+        private final Item item;
+        private final ServerMessage full;
+        private final ServerMessage delta;
+        private final boolean includeSender;
+        // [delta][format]
+        private final OutboundFrame[][] frames = new OutboundFrame[2][WireFormat.values().length];
+
+        Entry(Item item) {
+            this.item = item;
+            this.full = item.full();
+            this.delta = item.delta();
+            this.includeSender = item.includeSender();
+        }
+
+        OutboundFrame frame(SessionFeatures features) {
+            boolean useDelta = delta != null && features.delta();
+            WireFormat format = features.format();
+            OutboundFrame[] row = frames[useDelta ? 1 : 0];
+            if (row[format.ordinal()] == null) {
+                var frame = encoder.apply(useDelta ? delta : full, format);
+                row[format.ordinal()] = useDelta ? frame.standingFor(frame(features.withDelta(false))) : frame;
+            }
+            return row[format.ordinal()];
+        }
+    }
+}
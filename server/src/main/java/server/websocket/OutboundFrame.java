@@ -0,0 +1,63 @@
+package server.websocket;
+
+import com.google.gson.Gson;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A server message encoded once, as JSON text and its UTF-8 bytes, so a broadcast
+ * hands the exact same bytes to every session instead of re-encoding per socket.
+ * The backing buffer is never written to after construction.
+ * A delta (MOVE) frame also carries the full LOAD_GAME it stands in for, in case the
+ * session's queue has to skip states and the delta no longer applies.
+ */
+public final class OutboundFrame {
+
+    private final ServerMessage.ServerMessageType type;
+    private final String text;
+    private final ByteBuffer utf8;
+    private final OutboundFrame fullState;
+
+    private OutboundFrame(ServerMessage.ServerMessageType type, String text, ByteBuffer utf8,
+                          OutboundFrame fullState) {
+        this.type = type;
+        this.text = text;
+        this.utf8 = utf8;
+        this.fullState = fullState;
+    }
+
+    public static OutboundFrame encode(Gson gson, ServerMessage msg) {
+        String text = gson.toJson(msg);
+        return new OutboundFrame(msg.getServerMessageType(), text,
+                ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    // the same bytes, marked as a delta for full
+    OutboundFrame standingFor(OutboundFrame full) {
+        return new OutboundFrame(type, text, utf8, full);
+    }
+
+    // for a delta, the full state it stands in for; null otherwise
+    OutboundFrame fullState() {
+        return fullState;
+    }
+
+    public ServerMessage.ServerMessageType type() {
+        return type;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    // each send gets its own view so concurrent writes don't share a position
+    public ByteBuffer payload() {
+        return utf8.duplicate();
+    }
+
+    public int size() {
+        return utf8.remaining();
+    }
+}
@@ -0,0 +1,41 @@
+package server.websocket;
+
+import websocket.WireFormat;
+
+import java.util.Locale;
+
+/**
+ * Optional protocol features a client asks for when it opens the socket,
+ * e.g. {@code /ws?features=delta,compact}. Clients that ask for nothing get the original protocol.
+ *
+ * @param delta   send MOVE messages instead of a full LOAD_GAME after every move
+ * @param compact write games and moves in the compact JSON form, see {@link WireFormat}
+ */
+public record SessionFeatures(boolean delta, boolean compact) {
+
+    public static final SessionFeatures NONE = new SessionFeatures(false, false);
+
+    public static SessionFeatures parse(String features) {
+        if (features == null || features.isBlank()) {
+            return NONE;
+        }
+        boolean delta = false;
+        boolean compact = false;
+        for (String f : features.split(",")) {
+            switch (f.trim().toLowerCase(Locale.ROOT)) {
+                case "delta" -> delta = true;
+                case "compact" -> compact = true;
+                default -> { }
+            }
+        }
+        return new SessionFeatures(delta, compact);
+    }
+
+    public SessionFeatures withDelta(boolean delta) {
+        return new SessionFeatures(delta, compact);
+    }
+
+    public WireFormat format() {
+        return compact ? WireFormat.COMPACT : WireFormat.STANDARD;
+    }
+}
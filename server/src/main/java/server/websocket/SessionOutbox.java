@@ -0,0 +1,199 @@
+package server.websocket;
+
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.common.WebSocketSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import websocket.messages.ServerMessage.ServerMessageType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Outbound queue for one socket. Only one batch of writes is in flight at a time; frames that
+ * arrive meanwhile wait here. If the client can't keep up, the queue passes the high-water mark
+ * and queued board states (LOAD_GAME / MOVE) are collapsed to the newest state. A client that
+ * stays behind is disconnected instead of holding memory for the whole game.
+ */
+final class SessionOutbox {
+
+    private record Pending(OutboundFrame frame, Broadcaster.Delivery delivery) {}
+
+    private final WsContext ctx;
+    private final Broadcaster owner;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+
+    // guarded by this
+    private boolean writing;
+    private int inFlight;
+    private long aboveHighWaterSince;
+    private boolean closed;
+
+    SessionOutbox(WsContext ctx, Broadcaster owner) {
+        this.ctx = ctx;
+        this.owner = owner;
+    }
+
+    void offer(List<OutboundFrame> frames, Broadcaster.Delivery delivery) {
+        List<Pending> toWrite = null;
+        boolean tooSlow = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            owner.queued(frames.size());
+            for (var f : frames) {
+                delivery.started();
+                queue.add(new Pending(f, delivery));
+            }
+            var limits = owner.limits();
+            if (queue.size() > limits.highWater()) {
+                dropStaleBoards();
+                long now = System.currentTimeMillis();
+                if (aboveHighWaterSince == 0) {
+                    aboveHighWaterSince = now;
+                }
+                tooSlow = queue.size() > limits.maxQueue()
+                        || now - aboveHighWaterSince > limits.slowMillis();
+            } else {
+                aboveHighWaterSince = 0;
+            }
+
+            if (tooSlow) {
+                closed = true;
+            } else if (!writing) {
+                writing = true;
+                toWrite = drain();
+            }
+        }
+        if (tooSlow) {
+            disconnect();
+        } else if (toWrite != null) {
+            write(toWrite);
+        }
+    }
+
+    synchronized int depth() {
+        return queue.size() + inFlight;
+    }
+
+    // keep only the newest board state; everything older is superseded by it anyway. If that
+    // newest one is a delta it only applies on top of what was dropped, so send the full state
+    // it stands for instead of making the client notice and SYNC.
+    private void dropStaleBoards() {
+        Pending newest = null;
+        int dropped = 0;
+        Iterator<Pending> it = queue.descendingIterator();
+        while (it.hasNext()) {
+            var p = it.next();
+            if (!isBoardState(p.frame().type())) {
+                continue;
+            }
+            if (newest == null) {
+                newest = p;
+                continue;
+            }
+            it.remove();
+            owner.dropped(p.delivery());
+            dropped++;
+        }
+        if (dropped > 0 && newest.frame().fullState() != null) {
+            var full = new Pending(newest.frame().fullState(), newest.delivery());
+            for (int i = queue.size(); i > 0; i--) {
+                var p = queue.poll();
+                queue.add(p == newest ? full : p);
+            }
+        }
+    }
+
+    private static boolean isBoardState(ServerMessageType type) {
+        return type == ServerMessageType.LOAD_GAME || type == ServerMessageType.MOVE;
+    }
+
+    private List<Pending> drain() {
+        var out = new ArrayList<>(queue);
+        queue.clear();
+        inFlight = out.size();
+        return out;
+    }
+
+    private void write(List<Pending> batch) {
+        var left = new AtomicInteger(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            var p = batch.get(i);
+            boolean last = (i == batch.size() - 1);
+            // all but the last frame are batched so Jetty flushes them in one write
+            writeFrame(p.frame(), !last, err -> {
+                owner.written(p.delivery(), p.frame(), err);
+                if (left.decrementAndGet() == 0) {
+                    next();
+                }
+            });
+        }
+    }
+
+    private void next() {
+        List<Pending> toWrite;
+        synchronized (this) {
+            inFlight = 0;
+            if (queue.isEmpty() || closed) {
+                writing = false;
+                return;
+            }
+            toWrite = drain();
+        }
+        write(toWrite);
+    }
+
+    private void writeFrame(OutboundFrame frame, boolean batch, Consumer<Throwable> done) {
+        if (ctx.session instanceof WebSocketSession ws) {
+            ws.getCoreSession().sendFrame(new Frame(OpCode.TEXT, frame.payload()),
+                    Callback.from(() -> done.accept(null), done::accept), batch);
+            return;
+        }
+        // not a Jetty session (shouldn't happen), fall back to the api endpoint
+        ctx.session.getRemote().sendString(frame.text(), new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable err) {
+                done.accept(err);
+            }
+
+            @Override
+            public void writeSuccess() {
+                done.accept(null);
+            }
+        });
+    }
+
+    private void disconnect() {
+        List<Pending> abandoned;
+        synchronized (this) {
+            abandoned = new ArrayList<>(queue);
+            queue.clear();
+        }
+        for (var p : abandoned) {
+            owner.dropped(p.delivery());
+        }
+        owner.slowDisconnect(ctx);
+        // a close frame would just sit behind the stuck writes, so cut the connection
+        ctx.session.disconnect();
+    }
+
+    void close() {
+        List<Pending> abandoned;
+        synchronized (this) {
+            closed = true;
+            abandoned = new ArrayList<>(queue);
+            queue.clear();
+        }
+        for (var p : abandoned) {
+            owner.dropped(p.delivery());
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package server.websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import io.javalin.websocket.WsConnectContext;
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.*;
+import websocket.WireFormat;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionOutboxTest {
+
+    /**
+     * A socket that takes writes but only finishes them when told to, like a client that has
+     * stopped reading. It isn't a Jetty session, so the outbox writes through getRemote().
+     */
+    static final class StubSocket {
+        private final List<String> sent = new ArrayList<>();
+        private final List<WriteCallback> unfinished = new ArrayList<>();
+        private boolean stalled = true;
+        private boolean disconnected;
+        final WsContext ctx;
+
+        StubSocket(String id) {
+            var remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("sendString") && args.length == 2) {
+                            write((String) args[0], (WriteCallback) args[1]);
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+            var session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "getRemote" -> remote;
+                        case "isOpen" -> !isDisconnected();
+                        case "disconnect" -> {
+                            disconnect();
+                            yield null;
+                        }
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        case "toString" -> "stub " + id;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+            this.ctx = new WsConnectContext(id, session);
+        }
+
+        private void write(String text, WriteCallback callback) {
+            boolean now;
+            synchronized (this) {
+                sent.add(text);
+                now = !stalled;
+                if (!now) {
+                    unfinished.add(callback);
+                }
+            }
+            if (now) {
+                callback.writeSuccess();
+            }
+        }
+
+        private synchronized void disconnect() {
+            disconnected = true;
+        }
+
+        synchronized boolean isDisconnected() {
+            return disconnected;
+        }
+
+        synchronized List<String> sent() {
+            return List.copyOf(sent);
+        }
+
+        // the client starts reading again: finish what's waiting and don't stall any more
+        void resume() {
+            List<WriteCallback> done;
+            synchronized (this) {
+                stalled = false;
+                done = List.copyOf(unfinished);
+                unfinished.clear();
+            }
+            done.forEach(WriteCallback::writeSuccess);
+        }
+
+        // what's waiting fails, as it would on a closed socket
+        void fail() {
+            List<WriteCallback> done;
+            synchronized (this) {
+                done = List.copyOf(unfinished);
+                unfinished.clear();
+            }
+            done.forEach(cb -> cb.writeFailed(new IOException("closed")));
+        }
+    }
+
+    static FrameBatch batch() {
+        return new FrameBatch((msg, format) -> OutboundFrame.encode(format.gson(), msg));
+    }
+
+    private static OutboundFrame frame(ServerMessage msg) {
+        return OutboundFrame.encode(WireFormat.STANDARD.gson(), msg);
+    }
+
+    private static ServerMessage.ServerMessageType type(String json) {
+        return WireFormat.STANDARD.gson().fromJson(json, ServerMessage.class).getServerMessageType();
+    }
+
+    @Test
+    void outboxPositiveDeltaSessionGetsTheLatestStateAfterCollapse() throws Exception {
+        var broadcaster = new Broadcaster(new Broadcaster.Limits(4, 100, 60_000));
+        var socket = new StubSocket("s1");
+        var delta = new SessionFeatures(true, false);
+
+        // the first write goes out and sticks; the connect-time board queues behind it
+        broadcaster.sendTo(socket.ctx, frame(new NotificationMessage("hello")));
+        var game = new ChessGame();
+        broadcaster.sendTo(socket.ctx, frame(new LoadGameMessage(game)));
+
+        // then five moves, each a MOVE for this session: the queue passes the high-water mark
+        String[] moves = {"e2e4", "e7e5", "g1f3", "b8c6", "f1b5"};
+        var deliveries = new ArrayList<Broadcaster.Delivery>();
+        for (String m : moves) {
+            var move = new ChessMove(new ChessPosition(m.charAt(1) - '0', m.charAt(0) - 'a' + 1),
+                    new ChessPosition(m.charAt(3) - '0', m.charAt(2) - 'a' + 1), null);
+            game.makeMove(move);
+            var b = batch().toAll(new LoadGameMessage(game),
+                    new MoveMessage(move, game.getPly(), game.positionHash()));
+            deliveries.add(broadcaster.send(List.of(socket.ctx), null, b, ctx -> delta));
+        }
+        assertTrue(broadcaster.droppedFrames() > 0);
+        socket.resume();
+
+        // the connect-time board and the first three moves collapsed into the fourth move, which
+        // on its own would need the boards that were dropped, so it went out as the board itself
+        var sent = socket.sent();
+        assertEquals(List.of(ServerMessage.ServerMessageType.NOTIFICATION, ServerMessage.ServerMessageType.LOAD_GAME,
+                ServerMessage.ServerMessageType.MOVE), sent.stream().map(SessionOutboxTest::type).toList());
+        var gson = WireFormat.STANDARD.gson();
+        var local = assertInstanceOf(LoadGameMessage.class, gson.fromJson(sent.get(1), ServerMessage.class))
+                .getGame();
+        assertEquals(4, local.getPly());
+        // and the move queued after the collapse applies on top of it
+        var fifth = assertInstanceOf(MoveMessage.class, gson.fromJson(sent.get(2), ServerMessage.class));
+        assertTrue(fifth.applyTo(local));
+        assertEquals(game.positionHash(), local.positionHash());
+        for (var d : deliveries) {
+            assertNotNull(d.completion().get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, broadcaster.pendingWrites());
+        assertFalse(socket.isDisconnected());
+    }
+
+    @Test
+    void outboxNegativeNothingDroppedKeepsTheDelta() throws Exception {
+        var broadcaster = new Broadcaster(new Broadcaster.Limits(4, 100, 60_000));
+        var socket = new StubSocket("s1");
+        socket.resume();
+        var game = new ChessGame();
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        game.makeMove(move);
+        broadcaster.send(List.of(socket.ctx), null, batch().toAll(new LoadGameMessage(game),
+                new MoveMessage(move, 1, game.positionHash())), ctx -> new SessionFeatures(true, false));
+        assertEquals(List.of(ServerMessage.ServerMessageType.MOVE), socket.sent().stream().map(
+                SessionOutboxTest::type).toList());
+        assertEquals(0, broadcaster.droppedFrames());
+    }
+
+    @Test
+    void outboxNegativeHardCapDisconnects() throws Exception {
+        var broadcaster = new Broadcaster(new Broadcaster.Limits(2, 5, 60_000));
+        var socket = new StubSocket("s1");
+        var deliveries = new ArrayList<Broadcaster.Delivery>();
+        // notifications can't be collapsed, so the queue only grows
+        for (int i = 0; i < 6; i++) {
+            deliveries.add(broadcaster.sendTo(socket.ctx, frame(new NotificationMessage("n" + i))));
+            assertFalse(socket.isDisconnected(), "cut off after " + i);
+        }
+        deliveries.add(broadcaster.sendTo(socket.ctx, frame(new NotificationMessage("one too many"))));
+        assertTrue(socket.isDisconnected());
+        assertEquals(1, broadcaster.slowDisconnects());
+        assertEquals(6, broadcaster.droppedFrames());
+
+        // the write that was in flight fails with the socket; every delivery still completes
+        socket.fail();
+        for (var d : deliveries) {
+            assertNotNull(d.completion().get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, deliveries.get(0).failures());
+        assertEquals(0, broadcaster.pendingWrites());
+        assertTrue(broadcaster.queueDepths().isEmpty());
+    }
+
+    @Test
+    void outboxNegativeSlowForTooLongDisconnects() throws Exception {
+        var broadcaster = new Broadcaster(new Broadcaster.Limits(2, 1_000, 100));
+        var socket = new StubSocket("s1");
+        for (int i = 0; i < 4; i++) {
+            broadcaster.sendTo(socket.ctx, frame(new NotificationMessage("n" + i)));
+        }
+        // above the high-water mark, but not for long yet
+        assertFalse(socket.isDisconnected());
+        Thread.sleep(50);
+        broadcaster.sendTo(socket.ctx, frame(new NotificationMessage("still early")));
+        assertFalse(socket.isDisconnected());
+
+        // catching up resets the clock
+        socket.resume();
+        assertEquals(0, broadcaster.queueDepths().get("s1"));
+        var stuck = new StubSocket("s2");
+        for (int i = 0; i < 4; i++) {
+            broadcaster.sendTo(stuck.ctx, frame(new NotificationMessage("n" + i)));
+        }
+        Thread.sleep(150);
+        assertFalse(stuck.isDisconnected());
+        broadcaster.sendTo(stuck.ctx, frame(new NotificationMessage("too late")));
+        assertTrue(stuck.isDisconnected());
+        assertFalse(socket.isDisconnected());
+        assertEquals(1, broadcaster.slowDisconnects());
+    }
+}
@@ -1,7 +1,5 @@
 package server.websocket;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.InvalidMoveException;
@@ -11,20 +9,37 @@ import io.javalin.websocket.WsCloseContext;
 import io.javalin.websocket.WsConnectContext;
 import io.javalin.websocket.WsContext;
 import io.javalin.websocket.WsMessageContext;
-import model.AuthData;
+import model.GameClock;
 import model.GameData;
+import model.GameStatus;
 import service.GameService;
+import server.bus.GameEvent;
+import server.bus.GameEventBus;
+import server.bus.InProcessGameEventBus;
+import server.bus.NodeMessage;
+import server.clock.GameTimers;
+import server.clock.TimingWheel;
+import server.cluster.Cluster;
+import server.metrics.BroadcastSentEvent;
+import server.metrics.LatencyHistogram;
+import server.metrics.MoveProcessedEvent;
+import server.ratelimit.RateLimits;
 import service.UserService;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
 import websocket.messages.NotificationMessage;
 import websocket.messages.ServerMessage;
 
+import java.net.InetSocketAddress;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class WebSocketHandler {
 
@@ -32,25 +47,88 @@ public class WebSocketHandler {
     private final UserService userService;
     private final GameService gameService;
 
-    private final Gson gson = new GsonBuilder().create();
+    private final CommandDecoder decoder;
+    private final LongAdder rejectedFrames = new LongAdder();
 
     private final Map<String, Integer> sessionToGame = new ConcurrentHashMap<>();
     private final Map<String, String> sessionToUser = new ConcurrentHashMap<>();
     private final Map<Integer, Set<WsContext>> gameToSessions = new ConcurrentHashMap<>();
-    private final Set<Integer> finishedGames = ConcurrentHashMap.newKeySet();
+    private final Map<String, SessionFeatures> sessionFeatures = new ConcurrentHashMap<>();
+    // every open session, so a reply from another node can find its way back
+    private final Map<String, WsContext> sessions = new ConcurrentHashMap<>();
+
+    private final Broadcaster broadcaster;
+    private final GameEventBus bus;
+    private final Cluster cluster;
+    private final String nodeId;
+    private final LongAdder forwardedMoves = new LongAdder();
+    private final GameTimers timers;
+    private final LongAdder flagFalls = new LongAdder();
+    private final RateLimits rateLimits;
+
+    // filled once up front so onMessage only does an array-backed lookup
+    private final Map<UserGameCommand.CommandType, LatencyHistogram> commandTimes =
+            new EnumMap<>(UserGameCommand.CommandType.class);
+
+    // one node, default limits; wheel belongs to the caller, who closes it (its ticker is a thread)
+    public WebSocketHandler(DataAccess dao, UserService userService, GameService gameService, TimingWheel wheel) {
+        this(dao, userService, gameService, new Broadcaster.Limits(32, 256, 10_000),
+                new CommandDecoder(CommandDecoder.DEFAULT_MAX_CHARS), new InProcessGameEventBus(),
+                Cluster.single("local"), wheel, RateLimits.NONE);
+    }
 
-    public WebSocketHandler(DataAccess dao, UserService userService, GameService gameService) {
+    /**
+     * @param bus        shares broadcasts with the other nodes
+     * @param cluster    says which node owns a game; moves for games owned elsewhere are forwarded
+     * @param wheel      runs the chess clocks of the games this node owns
+     * @param rateLimits per command type, charged to the command's auth token
+     */
+    public WebSocketHandler(DataAccess dao, UserService userService, GameService gameService,
+                            Broadcaster.Limits limits, CommandDecoder decoder, GameEventBus bus, Cluster cluster,
+                            TimingWheel wheel, RateLimits rateLimits) {
         this.dao = dao;
+        this.decoder = decoder;
         this.userService = userService;
         this.gameService = gameService;
+        this.broadcaster = new Broadcaster(limits);
+        this.bus = bus;
+        this.cluster = cluster;
+        this.nodeId = cluster.nodeId();
+        this.rateLimits = rateLimits;
+        this.timers = new GameTimers(wheel, new GameTimers.Listener() {
+            @Override
+            public void lowTime(int gameID, ChessGame.TeamColor side, int ply) {
+                broadcastToGame(gameID, new NotificationMessage(colorName(side) + " has "
+                        + GameTimers.LOW_TIME_MILLIS / 1000 + " seconds left"));
+            }
+
+            @Override
+            public void flagFall(int gameID, ChessGame.TeamColor side, int ply) {
+                // off the wheel's thread: this writes to the database
+                Thread.startVirtualThread(() -> onFlagFall(gameID, ply));
+            }
+        });
+        bus.subscribe(this::onBusEvent);
+        bus.onNodeMessage(this::onNodeMessage);
+        // games handed to another node: our cached copy would only go stale
+        cluster.onChange(ring -> gameService.dropOwned(cluster::owns));
+        for (var type : UserGameCommand.CommandType.values()) {
+            commandTimes.put(type, new LatencyHistogram());
+        }
     }
 
-    public void onConnect(WsConnectContext ctx) {}
+    public void onConnect(WsConnectContext ctx) {
+        sessionFeatures.put(ctx.sessionId(), SessionFeatures.parse(ctx.queryParam("features")));
+        sessions.put(ctx.sessionId(), ctx);
+    }
 
     public void onClose(WsCloseContext ctx) {
         String sessionId = ctx.sessionId();
         Integer gameID = sessionToGame.remove(sessionId);
         sessionToUser.remove(sessionId);
+        sessionFeatures.remove(sessionId);
+        sessions.remove(sessionId);
+        broadcaster.remove(sessionId);
 
         if (gameID != null) {
             Set<WsContext> sessions = gameToSessions.get(gameID);
@@ -58,51 +136,160 @@ public class WebSocketHandler {
                 sessions.remove(ctx);
                 if (sessions.isEmpty()) {
                     gameToSessions.remove(gameID);
-                    finishedGames.remove(gameID);
                 }
             }
         }
     }
 
+    // outbound queue stats, for metrics
+    public Broadcaster broadcaster() {
+        return broadcaster;
+    }
+
+    public LatencyHistogram commandTimes(UserGameCommand.CommandType type) {
+        return commandTimes.get(type);
+    }
+
+    public int activeSessions() {
+        return sessionFeatures.size();
+    }
+
+    public int activeGames() {
+        return gameToSessions.size();
+    }
+
+    public long rejectedFrames() {
+        return rejectedFrames.sum();
+    }
+
+    // moves that came in here for a game another node owns
+    public long forwardedMoves() {
+        return forwardedMoves.sum();
+    }
+
+    // games lost on time, whether a timer or a late move found it
+    public long flagFalls() {
+        return flagFalls.sum();
+    }
+
+    public int timedGames() {
+        return timers.games();
+    }
+
     public void onMessage(WsMessageContext ctx) {
-        String raw = ctx.message();
-        UserGameCommand cmd = gson.fromJson(raw, UserGameCommand.class);
-        switch (cmd.getCommandType()) {
-            case CONNECT -> handleConnect(ctx, cmd);
-            case MAKE_MOVE -> handleMakeMove(ctx, cmd, raw);
-            case LEAVE -> handleLeave(ctx, cmd);
-            case RESIGN -> handleResign(ctx, cmd);
+        long start = System.nanoTime();
+        UserGameCommand cmd;
+        try {
+            // parsed once, straight into the right subclass
+            cmd = decoder.decode(ctx.message());
+        } catch (IllegalArgumentException e) {
+            rejectedFrames.increment();
+            send(ctx, new ErrorMessage("Error: " + e.getMessage()));
+            return;
+        }
+        if (!rateLimits.allow(cmd.getCommandType().name(), cmd.getAuthToken(), remoteAddress(ctx))) {
+            send(ctx, new ErrorMessage("Error: too many requests"));
+            return;
+        }
+        try {
+            switch (cmd.getCommandType()) {
+                case CONNECT -> handleConnect(ctx, cmd);
+                case MAKE_MOVE -> handleMakeMove(ctx, (MakeMoveCommand) cmd);
+                case LEAVE -> handleLeave(ctx, cmd);
+                case RESIGN -> handleResign(ctx, cmd);
+                case SYNC -> handleSync(ctx, cmd);
+            }
+        } finally {
+            commandTimes.get(cmd.getCommandType()).recordSince(start);
         }
     }
 
+    private static String remoteAddress(WsContext ctx) {
+        return ctx.session.getRemoteAddress() instanceof InetSocketAddress a && a.getAddress() != null
+                ? a.getAddress().getHostAddress()
+                : null;
+    }
+
+    // goes through the session's outbox so it stays in order with broadcasts
     private void send(WsContext ctx, ServerMessage msg) {
-        ctx.send(gson.toJson(msg));
+        broadcaster.sendTo(ctx, OutboundFrame.encode(featuresOf(ctx).format().gson(), msg));
     }
 
-    private void broadcastToGame(int gameID, ServerMessage msg) {
+    private FrameBatch newBatch() {
+        return new FrameBatch((msg, format) -> OutboundFrame.encode(format.gson(), msg));
+    }
+
+    private SessionFeatures featuresOf(WsContext ctx) {
+        return sessionFeatures.getOrDefault(ctx.sessionId(), SessionFeatures.NONE);
+    }
+
+    // every message is serialized once here, then the same bytes go to each session
+    // local sessions get the batch here; other nodes get it through the bus
+    private Broadcaster.Delivery broadcast(int gameID, String senderId, FrameBatch batch) {
+        bus.publish(new GameEvent(nodeId, gameID, senderId, batch.items()));
         Set<WsContext> sessions = gameToSessions.get(gameID);
         if (sessions == null) {
-            return;
+            return null;
         }
-        String json = gson.toJson(msg);
-        for (WsContext c : sessions) {
-            c.send(json);
+        var event = new BroadcastSentEvent();
+        event.begin();
+        var delivery = broadcaster.send(sessions, senderId, batch, this::featuresOf);
+        if (event.shouldCommit()) {
+            event.gameID = gameID;
+            event.recipients = delivery.recipients();
+            event.bytes = delivery.bytes();
+            event.commit();
         }
+        return delivery;
     }
 
-    private void broadcastToGameExcept(int gameID, WsContext except, ServerMessage msg) {
-        Set<WsContext> sessions = gameToSessions.get(gameID);
+    // another node's broadcast; the sender is usually on that node, or here if it was a forwarded move
+    private void onBusEvent(GameEvent e) {
+        if (nodeId.equals(e.origin())) {
+            return;
+        }
+        Set<WsContext> sessions = gameToSessions.get(e.gameID());
         if (sessions == null) {
             return;
         }
-        String json = gson.toJson(msg);
-        for (WsContext c : sessions) {
-            if (!c.sessionId().equals(except.sessionId())) {
-                c.send(json);
+        var batch = newBatch();
+        for (var item : e.items()) {
+            batch.add(item);
+        }
+        broadcaster.send(sessions, e.sender(), batch, this::featuresOf);
+    }
+
+    private void onNodeMessage(NodeMessage m) {
+        if (!m.isFor(nodeId) || nodeId.equals(m.from())) {
+            return;
+        }
+        switch (m.kind()) {
+            case MOVE -> {
+                if (m.command() instanceof MakeMoveCommand move) {
+                    // off the bus thread: the move does a database write
+                    Thread.startVirtualThread(() -> handleMakeMove(m.session(),
+                            reply -> bus.send(NodeMessage.reply(nodeId, m.from(), m.session(), reply)), move));
+                }
+            }
+            case REPLY -> {
+                WsContext ctx = sessions.get(m.session());
+                if (ctx != null && m.reply() != null) {
+                    send(ctx, m.reply());
+                }
+            }
+            default -> {
             }
         }
     }
 
+    private void broadcastToGame(int gameID, ServerMessage msg) {
+        broadcast(gameID, null, newBatch().toAll(msg));
+    }
+
+    private void broadcastToGameExcept(int gameID, WsContext except, ServerMessage msg) {
+        broadcast(gameID, except.sessionId(), newBatch().toOthers(msg));
+    }
+
     private void handleConnect(WsMessageContext ctx, UserGameCommand cmd) {
         String token = cmd.getAuthToken();
         Integer gameID = cmd.getGameID();
@@ -111,8 +298,8 @@ public class WebSocketHandler {
             return;
         }
         try {
-            AuthData auth = dao.getAuth(token);
-            if (auth == null) {
+            String user = userService.authenticate(token);
+            if (user == null) {
                 send(ctx, new ErrorMessage("Error: bad auth"));
                 return;
             }
@@ -121,7 +308,6 @@ public class WebSocketHandler {
                 send(ctx, new ErrorMessage("Error: bad game id"));
                 return;
             }
-            String user = auth.username();
             String sid = ctx.sessionId();
 
             sessionToUser.put(sid, user);
@@ -142,82 +328,130 @@ public class WebSocketHandler {
         }
     }
 
-    private void handleMakeMove(WsMessageContext ctx, UserGameCommand base, String rawJson) {
+    private void handleMakeMove(WsMessageContext ctx, MakeMoveCommand base) {
+        Integer gameID = base.getGameID();
+        if (gameID != null && !cluster.owns(gameID)
+                && bus.send(NodeMessage.move(nodeId, cluster.owner(gameID), ctx.sessionId(), base))) {
+            // the owner applies it from its in-memory copy and broadcasts the result,
+            // which comes back here over the bus like any other node's broadcast
+            forwardedMoves.increment();
+            return;
+        }
+        // ours, or the owner can't be reached: writes are versioned, so applying it here is
+        // safe even if the owner is only slow, rather than losing the move without a word
+        handleMakeMove(ctx.sessionId(), reply -> send(ctx, reply), base);
+    }
+
+    /**
+     * @param sender session that sent the move, on this node or (forwarded) another one
+     * @param reply  how errors get back to that session
+     */
+    private void handleMakeMove(String sender, Consumer<ServerMessage> reply, MakeMoveCommand base) {
+        // JFR event; begin/commit are no-ops unless a recording asks for chess.MoveProcessed
+        var event = new MoveProcessedEvent();
+        event.begin();
+        event.outcome = "rejected";
+        try {
+            makeMove(sender, reply, base, event);
+        } finally {
+            if (event.shouldCommit()) {
+                event.gameID = base.getGameID() == null ? 0 : base.getGameID();
+                event.commit();
+            }
+        }
+    }
+
+    private void makeMove(String sender, Consumer<ServerMessage> reply, MakeMoveCommand base,
+                          MoveProcessedEvent event) {
+        long start = System.nanoTime();
         String token = base.getAuthToken();
         Integer gameID = base.getGameID();
         if (token == null || gameID == null) {
-            send(ctx, new ErrorMessage("Error"));
+            reply.accept(new ErrorMessage("Error"));
             return;
         }
-        if (finishedGames.contains(gameID)) {
-            send(ctx, new ErrorMessage("Error"));
+        if (gameService.isFinished(gameID)) {
+            reply.accept(new ErrorMessage("Error"));
             return;
         }
         try {
-            AuthData auth = dao.getAuth(token);
-            if (auth == null) {
-                send(ctx, new ErrorMessage("Error"));
-                return;
-            }
-            GameData gameData = dao.getGame(gameID);
-            if (gameData == null) {
-                send(ctx, new ErrorMessage("Error"));
-                return;
-            }
-            String user = auth.username();
-
-            ChessGame.TeamColor moverColor =
-                    user.equals(gameData.whiteUsername()) ? ChessGame.TeamColor.WHITE :
-                            user.equals(gameData.blackUsername()) ? ChessGame.TeamColor.BLACK : null;
-
-            if (moverColor == null) {
-                send(ctx, new ErrorMessage("Error"));
-                return;
-            }
-
-            ChessGame game = gameData.game();
-
-            if (game.getTeamTurn() != moverColor) {
-                send(ctx, new ErrorMessage("Error"));
+            String user = userService.authenticate(token);
+            if (user == null) {
+                reply.accept(new ErrorMessage("Error"));
                 return;
             }
-
-            MakeMoveCommand mm = gson.fromJson(rawJson, MakeMoveCommand.class);
-            ChessMove move = mm.getMove();
-
-            try {
-                game.makeMove(move);
-            } catch (InvalidMoveException e) {
-                send(ctx, new ErrorMessage("Error"));
+            ChessMove move = base.getMove();
+
+            // runs again against a fresh read if another update to this game wins the race,
+            // so two moves for the same turn can't both be applied
+            long[] validated = new long[1];
+            boolean[] outOfTime = new boolean[1];
+            // every move for a game comes through its owner, so this usually skips the read
+            GameData updated = gameService.updateOwnedGame(gameID, gameData -> {
+                ChessGame.TeamColor moverColor =
+                        user.equals(gameData.whiteUsername()) ? ChessGame.TeamColor.WHITE :
+                                user.equals(gameData.blackUsername()) ? ChessGame.TeamColor.BLACK : null;
+                ChessGame game = gameData.game();
+                if (gameData.status().isFinished()) {
+                    throw new IllegalArgumentException("game is over");
+                }
+                if (moverColor == null || game.getTeamTurn() != moverColor) {
+                    throw new SecurityException("not your turn");
+                }
+                long now = System.currentTimeMillis();
+                GameClock clock = gameData.clock();
+                outOfTime[0] = clock != null && clock.remaining(moverColor, moverColor, now) <= 0;
+                if (outOfTime[0]) {
+                    // too late: the move doesn't count, the flag does
+                    return gameData.withStatus(timedOut(moverColor));
+                }
+                try {
+                    game.makeMove(move);
+                } catch (InvalidMoveException e) {
+                    throw new IllegalArgumentException("illegal move");
+                }
+                validated[0] = System.nanoTime();
+                // a move that ends the game is stored together with the result
+                var next = gameData.withGame(game).withStatus(statusAfter(game, gameData.status()));
+                return clock == null ? next : next.withClock(clock.afterMove(moverColor, now));
+            });
+            if (outOfTime[0]) {
+                flagFalls.increment();
+                timers.cancel(gameID);
+                reply.accept(new ErrorMessage("Error: out of time"));
+                broadcastToGame(gameID, new NotificationMessage(user + " ran out of time"));
                 return;
             }
-
-            GameData updated = new GameData(
-                    gameData.gameID(),
-                    gameData.whiteUsername(),
-                    gameData.blackUsername(),
-                    gameData.gameName(),
-                    game
-            );
-            dao.updateGame(updated);
-
-            broadcastToGame(gameID, new LoadGameMessage(game));
-            broadcastToGameExcept(gameID, ctx, new NotificationMessage(user + " moved"));
-
-            ChessGame.TeamColor turn = game.getTeamTurn();
-
-            if (game.isInCheckmate(turn)) {
-                finishedGames.add(gameID);
-                broadcastToGame(gameID, new NotificationMessage("checkmate"));
-            } else if (game.isInStalemate(turn)) {
-                finishedGames.add(gameID);
-                broadcastToGame(gameID, new NotificationMessage("stalemate"));
-            } else if (game.isInCheck(turn)) {
-                broadcastToGame(gameID, new NotificationMessage("check"));
+            event.validationTime = validated[0] - start;
+            event.persistTime = System.nanoTime() - validated[0];
+
+            ChessGame game = updated.game();
+            event.ply = game.getPly();
+            armClock(updated);
+
+            // board + notifications go out together as one batch per session;
+            // delta clients get just the move instead of the whole board
+            var batch = newBatch()
+                    .toAll(new LoadGameMessage(game), new MoveMessage(move, game.getPly(), game.positionHash()))
+                    .toOthers(new NotificationMessage(user + " moved"));
+
+            var status = updated.status();
+            if (status.reason() == GameStatus.Reason.CHECKMATE) {
+                batch.toAll(new NotificationMessage("checkmate"));
+            } else if (status.reason() == GameStatus.Reason.STALEMATE) {
+                batch.toAll(new NotificationMessage("stalemate"));
+            } else if (game.isInCheck(game.getTeamTurn())) {
+                batch.toAll(new NotificationMessage("check"));
             }
+            var delivery = broadcast(gameID, sender, batch);
+            event.fanout = delivery == null ? 0 : delivery.recipients();
+            event.outcome = "ok";
 
+        } catch (IllegalArgumentException | SecurityException e) {
+            reply.accept(new ErrorMessage("Error"));
         } catch (Exception e) {
-            send(ctx, new ErrorMessage("Error"));
+            event.outcome = "error";
+            reply.accept(new ErrorMessage("Error"));
         }
     }
 
@@ -225,30 +459,28 @@ public class WebSocketHandler {
         String token = cmd.getAuthToken();
         Integer gameID = cmd.getGameID();
         try {
-            AuthData auth = dao.getAuth(token);
-            if (auth == null) {
-                return;
-            }
-
-            GameData game = dao.getGame(gameID);
-            if (game == null) {
+            String user = userService.authenticate(token);
+            if (user == null) {
                 return;
             }
 
-            String user = auth.username();
             String sid = ctx.sessionId();
 
-            String white = game.whiteUsername();
-            String black = game.blackUsername();
-
-            if (user.equals(white)) {
-                white = null;
-            }
-            if (user.equals(black)) {
-                black = null;
-            }
-
-            dao.updateGame(new GameData(game.gameID(), white, black, game.gameName(), game.game()));
+            // frees the seat if they had one; observers leave without writing anything
+            gameService.updateGame(gameID, game -> {
+                String white = game.whiteUsername();
+                String black = game.blackUsername();
+                if (!user.equals(white) && !user.equals(black)) {
+                    return null;
+                }
+                if (user.equals(white)) {
+                    white = null;
+                }
+                if (user.equals(black)) {
+                    black = null;
+                }
+                return game.withSeats(white, black);
+            });
 
             broadcastToGameExcept(gameID, ctx, new NotificationMessage(user + " left"));
 
@@ -264,34 +496,119 @@ public class WebSocketHandler {
         Integer gameID = cmd.getGameID();
 
         try {
-            AuthData auth = dao.getAuth(token);
-            if (auth == null) {
+            String user = userService.authenticate(token);
+            if (user == null) {
                 send(ctx, new ErrorMessage("Error"));
                 return;
             }
-            GameData game = dao.getGame(gameID);
-            if (game == null) {
+            if (gameID == null || gameService.isFinished(gameID)) {
+                send(ctx, new ErrorMessage("Error"));
                 return;
             }
+            // stored through the same versioned update as moves, so a resign and a mating move
+            // can't both end the game
+            gameService.updateGame(gameID, game -> {
+                boolean white = user.equals(game.whiteUsername());
+                if (!white && !user.equals(game.blackUsername())) {
+                    throw new SecurityException("not a player");
+                }
+                if (game.status().isFinished()) {
+                    throw new IllegalArgumentException("game is over");
+                }
+                return game.withStatus(GameStatus.finished(
+                        white ? GameStatus.Result.BLACK_WON : GameStatus.Result.WHITE_WON,
+                        GameStatus.Reason.RESIGNATION));
+            });
+            timers.cancel(gameID);
+            broadcastToGame(gameID, new NotificationMessage(user + " resigned"));
 
-            String user = auth.username();
+        } catch (Exception e) {
+            send(ctx, new ErrorMessage("Error"));
+        }
+    }
 
-            boolean isPlayer = user.equals(game.whiteUsername()) || user.equals(game.blackUsername());
-            if (!isPlayer) {
-                send(ctx, new ErrorMessage("Error"));
-                return;
-            }
+    // the side to move's clock is running now; a finished game has nothing left to time
+    private void armClock(GameData game) {
+        if (game.clock() == null) {
+            return;
+        }
+        if (game.status().isFinished()) {
+            timers.cancel(game.gameID());
+            return;
+        }
+        ChessGame.TeamColor toMove = game.game().getTeamTurn();
+        timers.afterMove(game.gameID(), game.game().getPly(), toMove,
+                game.clock().remaining(toMove, toMove, System.currentTimeMillis()));
+    }
 
-            if (finishedGames.contains(gameID)) {
-                send(ctx, new ErrorMessage("Error"));
-                return;
+    // a timer says the side to move has run out; the stored clock gets the final word
+    private void onFlagFall(int gameID, int ply) {
+        try {
+            String[] loser = new String[1];
+            GameData written = gameService.updateOwnedGame(gameID, g -> {
+                if (g.status().isFinished() || g.clock() == null || g.game().getPly() != ply) {
+                    return null;
+                }
+                ChessGame.TeamColor toMove = g.game().getTeamTurn();
+                if (g.clock().remaining(toMove, toMove, System.currentTimeMillis()) > 0) {
+                    return null;
+                }
+                loser[0] = toMove == ChessGame.TeamColor.WHITE ? g.whiteUsername() : g.blackUsername();
+                return g.withStatus(timedOut(toMove));
+            });
+            if (written != null) {
+                flagFalls.increment();
+                broadcastToGame(gameID, new NotificationMessage(
+                        (loser[0] == null ? colorName(written.game().getTeamTurn()) : loser[0]) + " ran out of time"));
             }
+        } catch (Exception e) {
+            // nothing to tell anyone; the next move checks the clock again
+        }
+    }
 
-            finishedGames.add(gameID);
-            broadcastToGame(gameID, new NotificationMessage(user + " resigned"));
+    private static GameStatus timedOut(ChessGame.TeamColor loser) {
+        return GameStatus.finished(loser == ChessGame.TeamColor.WHITE
+                ? GameStatus.Result.BLACK_WON : GameStatus.Result.WHITE_WON, GameStatus.Reason.TIMEOUT);
+    }
+
+    private static String colorName(ChessGame.TeamColor side) {
+        return side == ChessGame.TeamColor.WHITE ? "white" : "black";
+    }
 
+    // FINISHED if the side to move has no legal move, otherwise unchanged
+    private static GameStatus statusAfter(ChessGame game, GameStatus current) {
+        ChessGame.TeamColor turn = game.getTeamTurn();
+        if (game.isInCheckmate(turn)) {
+            return GameStatus.finished(turn == ChessGame.TeamColor.WHITE
+                    ? GameStatus.Result.BLACK_WON : GameStatus.Result.WHITE_WON, GameStatus.Reason.CHECKMATE);
+        }
+        if (game.isInStalemate(turn)) {
+            return GameStatus.finished(GameStatus.Result.DRAW, GameStatus.Reason.STALEMATE);
+        }
+        return current;
+    }
+
+    // full reload for one session, e.g. a delta client whose position hash no longer matches
+    private void handleSync(WsMessageContext ctx, UserGameCommand cmd) {
+        String token = cmd.getAuthToken();
+        Integer gameID = cmd.getGameID();
+        if (token == null || gameID == null || !gameID.equals(sessionToGame.get(ctx.sessionId()))) {
+            send(ctx, new ErrorMessage("Error: not connected to that game"));
+            return;
+        }
+        try {
+            if (userService.authenticate(token) == null) {
+                send(ctx, new ErrorMessage("Error: bad auth"));
+                return;
+            }
+            GameData game = dao.getGame(gameID);
+            if (game == null) {
+                send(ctx, new ErrorMessage("Error: bad game id"));
+                return;
+            }
+            send(ctx, new LoadGameMessage(game.game()));
         } catch (Exception e) {
-            send(ctx, new ErrorMessage("Error"));
+            send(ctx, new ErrorMessage("Error: sync failed"));
         }
     }
 }
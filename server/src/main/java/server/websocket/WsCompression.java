@@ -0,0 +1,97 @@
+package server.websocket;
+
+import io.javalin.config.JavalinConfig;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+import org.eclipse.jetty.websocket.core.server.WebSocketServerComponents;
+import org.eclipse.jetty.websocket.server.JettyWebSocketServerContainer;
+
+/**
+ * permessage-deflate (RFC 7692) on /ws. Jetty negotiates it with any client that offers it;
+ * this only picks the level, whether the server keeps its window between messages, or turns
+ * it off. Compression is per session, so a broadcast's shared {@link OutboundFrame} bytes get
+ * deflated once per compressing recipient; see {@link DeflateBenchmark} for what that costs.
+ */
+public final class WsCompression {
+
+    public static final String EXTENSION = "permessage-deflate";
+
+    private final int level;
+    private final boolean contextTakeover;
+    private volatile ServletContextHandler context;
+
+    /**
+     * @param level           1-9, or 0 to not offer the extension at all
+     * @param contextTakeover false to answer every offer with server_no_context_takeover
+     */
+    public WsCompression(int level, boolean contextTakeover) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("deflate level " + level);
+        }
+        this.level = level;
+        this.contextTakeover = contextTakeover;
+    }
+
+    public void configure(JavalinConfig cfg) {
+        if (level > 0) {
+            // the websocket components look for a pool on the server before making a default one;
+            // nowrap because the extension sends raw deflate blocks
+            cfg.jetty.modifyServer(server -> server.addBean(
+                    new DeflaterPool(CompressionPool.DEFAULT_CAPACITY, level, true)));
+        }
+        cfg.jetty.modifyServletContextHandler(handler -> {
+            context = handler;
+            // the components exist once the context has started, and connectors start after it
+            handler.addEventListener(new LifeCycle.Listener() {
+                @Override
+                public void lifeCycleStarted(LifeCycle event) {
+                    WebSocketComponents components =
+                            WebSocketServerComponents.getWebSocketComponents(handler.getServletContext());
+                    var registry = components.getExtensionRegistry();
+                    if (level == 0) {
+                        registry.unregister(EXTENSION);
+                    } else if (!contextTakeover) {
+                        registry.register(EXTENSION, NoContextTakeover.class);
+                    }
+                }
+            });
+        });
+    }
+
+    // open sessions that negotiated compression
+    public int sessions() {
+        var handler = context;
+        if (handler == null || !handler.isStarted()) {
+            return 0;
+        }
+        var container = JettyWebSocketServerContainer.getContainer(handler.getServletContext());
+        if (container == null) {
+            return 0;
+        }
+        int n = 0;
+        for (var session : container.getOpenSessions()) {
+            for (var ext : session.getUpgradeResponse().getExtensions()) {
+                if (EXTENSION.equals(ext.getName())) {
+                    n++;
+                    break;
+                }
+            }
+        }
+        return n;
+    }
+
+    // Jetty's extension, but the server's side always starts each message with an empty window
+    public static class NoContextTakeover extends PerMessageDeflateExtension {
+        @Override
+        public void init(ExtensionConfig config, WebSocketComponents components) {
+            var negotiated = new ExtensionConfig(config);
+            negotiated.setParameter("server_no_context_takeover");
+            super.init(negotiated, components);
+        }
+    }
+}
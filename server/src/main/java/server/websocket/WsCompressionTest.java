@@ -0,0 +1,170 @@
+package server.websocket;
+
+import chess.ChessGame;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+import org.junit.jupiter.api.*;
+import server.Server;
+import server.ServerConfig;
+import websocket.WireFormat;
+import websocket.commands.UserGameCommand;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Raw sockets, since the JDK's websocket client can't offer extensions.
+ */
+public class WsCompressionTest {
+
+    private final MemoryDataAccess dao = new MemoryDataAccess();
+    private Server server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private int start(int level, boolean takeover) throws Exception {
+        server = new Server(ServerConfig.load().withWsDeflate(level, takeover), dao);
+        return server.run(0);
+    }
+
+    // sends the upgrade offering permessage-deflate, returns the response headers
+    private static String handshake(Socket socket, int port) throws IOException {
+        String key = Base64.getEncoder().encodeToString("0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().write(("GET /ws HTTP/1.1\r\n"
+                + "Host: localhost:" + port + "\r\n"
+                + "Upgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\nSec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Extensions: permessage-deflate; client_max_window_bits\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        var in = socket.getInputStream();
+        var head = new ByteArrayOutputStream();
+        while (!head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            assertNotEquals(-1, b, "connection closed during handshake");
+            head.write(b);
+        }
+        return head.toString(StandardCharsets.US_ASCII);
+    }
+
+    // a masked, uncompressed text frame, as a client may always send
+    private static void sendText(OutputStream out, String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        byte[] mask = {1, 2, 3, 4};
+        var frame = new ByteArrayOutputStream();
+        frame.write(0x81);
+        if (payload.length < 126) {
+            frame.write(0x80 | payload.length);
+        } else {
+            frame.write(0x80 | 126);
+            frame.write(payload.length >>> 8);
+            frame.write(payload.length & 0xff);
+        }
+        frame.write(mask);
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ mask[i % 4]);
+        }
+        out.write(frame.toByteArray());
+    }
+
+    private record Frame(boolean compressed, byte[] payload) {}
+
+    private static Frame readFrame(DataInputStream in) throws IOException {
+        int b0 = in.readUnsignedByte();
+        assertTrue((b0 & 0x80) != 0, "fragmented frame");
+        long len = in.readUnsignedByte() & 0x7f;
+        if (len == 126) {
+            len = in.readUnsignedShort();
+        } else if (len == 127) {
+            len = in.readLong();
+        }
+        byte[] payload = new byte[(int) len];
+        in.readFully(payload);
+        return new Frame((b0 & 0x40) != 0, payload);
+    }
+
+    private static String inflate(Inflater inflater, byte[] payload) throws Exception {
+        byte[] withTail = new byte[payload.length + 4];
+        System.arraycopy(payload, 0, withTail, 0, payload.length);
+        withTail[payload.length + 2] = (byte) 0xff;
+        withTail[payload.length + 3] = (byte) 0xff;
+        inflater.setInput(withTail);
+        var out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = inflater.inflate(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void deflatePositiveBoardsArriveCompressed() throws Exception {
+        int port = start(1, true);
+        dao.createUser(new UserData("alice", "x", "a@test"));
+        dao.createAuth(new AuthData("alice-token", "alice"));
+        int gameID = dao.createGame(new GameData(0, "alice", null, "g", new ChessGame()));
+        try (var socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5_000);
+            String head = handshake(socket, port);
+            assertTrue(head.startsWith("HTTP/1.1 101"), head);
+            String extensions = head.lines()
+                    .filter(l -> l.toLowerCase().startsWith("sec-websocket-extensions:"))
+                    .findFirst().orElseThrow();
+            assertTrue(extensions.contains(WsCompression.EXTENSION), extensions);
+            assertFalse(extensions.contains("server_no_context_takeover"), extensions);
+
+            sendText(socket.getOutputStream(), WireFormat.STANDARD.gson().toJson(
+                    new UserGameCommand(UserGameCommand.CommandType.CONNECT, "alice-token", gameID)));
+            var frame = readFrame(new DataInputStream(socket.getInputStream()));
+            assertTrue(frame.compressed(), "RSV1 not set");
+            String json = inflate(new Inflater(true), frame.payload());
+            assertTrue(json.contains("LOAD_GAME"), json);
+            assertTrue(frame.payload().length < json.length() / 3,
+                    frame.payload().length + " bytes for " + json.length());
+            assertEquals(1, deflateSessions());
+        }
+    }
+
+    @Test
+    void deflateNegativeOffOrNoTakeoverWhenConfigured() throws Exception {
+        int port = start(0, true);
+        try (var socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5_000);
+            String head = handshake(socket, port);
+            assertTrue(head.startsWith("HTTP/1.1 101"), head);
+            assertFalse(head.toLowerCase().contains("sec-websocket-extensions"), head);
+            assertEquals(0, deflateSessions());
+        }
+        server.stop();
+
+        port = start(6, false);
+        try (var socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5_000);
+            String head = handshake(socket, port);
+            assertTrue(head.contains("server_no_context_takeover"), head);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new WsCompression(10, true));
+    }
+
+    private long deflateSessions() {
+        return server.metrics().scrape().lines()
+                .filter(l -> l.startsWith("chess_ws_deflate_sessions "))
+                .mapToLong(l -> (long) Double.parseDouble(l.substring(l.indexOf(' ') + 1)))
+                .findFirst().orElseThrow();
+    }
+}
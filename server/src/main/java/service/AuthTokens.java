@@ -0,0 +1,208 @@
+package service;
+
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.AuthData;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Issues and checks auth tokens. Two modes:
+ * <ul>
+ *   <li>stored: random UUIDs kept in the auth table (the original behaviour)</li>
+ *   <li>signed: HMAC-SHA256 tokens carrying username, issue time and expiry, checked in memory.
+ *       Logout puts the token in a small revocation set until it would have expired anyway.</li>
+ * </ul>
+ * With several nodes, signed-mode logouts and clears are passed on to the others (see
+ * {@link #sendRevocationsTo}). That's best effort like the rest of the bus: a node that was down
+ * or just started doesn't know about earlier logouts, and those tokens work there until they expire.
+ */
+public class AuthTokens {
+
+    private static final String SIGNED_PREFIX = "s1";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODE = Base64.getUrlDecoder();
+
+    private final DataAccess dao;
+    private final byte[] secret;
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+
+    // token -> the time it expires, so we can forget it after that
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    // tokens issued at or before this are dead (set by clear); later ones are issued after it
+    private volatile long revokedAt = 0;
+
+    private final ThreadLocal<Mac> macs;
+    private volatile Consumer<Revocation> peers;
+
+    /**
+     * A logout or a clear, as passed between nodes.
+     *
+     * @param token     the logged-out token, or null for a clear
+     * @param clearedAt for a clear, the time tokens issued up to were revoked
+     */
+    public record Revocation(String token, long clearedAt) {}
+
+    private AuthTokens(DataAccess dao, byte[] secret, long ttlMillis) {
+        this.dao = dao;
+        this.secret = secret;
+        this.ttlMillis = ttlMillis;
+        this.macs = secret == null ? null : ThreadLocal.withInitial(this::newMac);
+    }
+
+    public static AuthTokens stored(DataAccess dao) {
+        return new AuthTokens(dao, null, 0);
+    }
+
+    public static AuthTokens signed(DataAccess dao, byte[] secret, long ttlMillis) {
+        if (secret == null || secret.length < 32 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("signed tokens need a 32+ byte secret and a positive ttl");
+        }
+        return new AuthTokens(dao, secret.clone(), ttlMillis);
+    }
+
+    public boolean isSigned() {
+        return secret != null;
+    }
+
+    public String issue(String username) throws DataAccessException {
+        if (!isSigned()) {
+            String token = UUID.randomUUID().toString();
+            dao.createAuth(new AuthData(token, username));
+            return token;
+        }
+        // a token issued in the same millisecond as a clear, but after it, still has to work
+        long now = Math.max(System.currentTimeMillis(), revokedAt + 1);
+        byte[] nonce = new byte[8];
+        random.nextBytes(nonce);
+        String body = SIGNED_PREFIX + "." + now + "." + (now + ttlMillis) + "."
+                + B64.encodeToString(nonce) + "." + B64.encodeToString(username.getBytes(StandardCharsets.UTF_8));
+        return body + "." + B64.encodeToString(sign(body));
+    }
+
+    /**
+     * @return the username the token belongs to, or null if it is missing, forged, expired or logged out
+     */
+    public String authenticate(String token) throws DataAccessException {
+        if (token == null) {
+            return null;
+        }
+        if (!isSigned()) {
+            var auth = dao.getAuth(token);
+            return auth == null ? null : auth.username();
+        }
+        if (revoked.containsKey(token)) {
+            return null;
+        }
+        var claims = parse(token);
+        long now = System.currentTimeMillis();
+        if (claims == null || claims.expiresAt() <= now || claims.issuedAt() <= revokedAt) {
+            return null;
+        }
+        return claims.username();
+    }
+
+    public void revoke(String token) throws DataAccessException {
+        if (!isSigned()) {
+            dao.deleteAuth(token);
+            return;
+        }
+        if (remember(token)) {
+            tell(new Revocation(token, 0));
+        }
+    }
+
+    // everything issued so far stops working, used when the database is cleared
+    public void revokeAll() {
+        long now = System.currentTimeMillis();
+        revokedAt = now;
+        revoked.clear();
+        tell(new Revocation(null, now));
+    }
+
+    // other nodes get told about every logout and clear from now on (signed tokens only)
+    public void sendRevocationsTo(Consumer<Revocation> peers) {
+        this.peers = peers;
+    }
+
+    // a logout or clear that happened on another node
+    public void apply(Revocation r) {
+        if (!isSigned()) {
+            return;
+        }
+        if (r.token() != null) {
+            remember(r.token());
+        } else if (r.clearedAt() > revokedAt) {
+            revokedAt = r.clearedAt();
+        }
+    }
+
+    private boolean remember(String token) {
+        var claims = parse(token);
+        if (claims == null) {
+            return false;
+        }
+        revoked.put(token, claims.expiresAt());
+        purgeExpired();
+        return true;
+    }
+
+    private void tell(Revocation r) {
+        var p = peers;
+        if (p != null) {
+            p.accept(r);
+        }
+    }
+
+    private void purgeExpired() {
+        // cheap enough, the set only holds tokens that were logged out and not yet expired
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(exp -> exp <= now);
+    }
+
+    private Claims parse(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 6 || !SIGNED_PREFIX.equals(parts[0])) {
+            return null;
+        }
+        try {
+            String body = token.substring(0, token.lastIndexOf('.'));
+            byte[] given = B64_DECODE.decode(parts[5]);
+            if (!MessageDigest.isEqual(given, sign(body))) {
+                return null;
+            }
+            String username = new String(B64_DECODE.decode(parts[4]), StandardCharsets.UTF_8);
+            return new Claims(username, Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            // bad base64 or bad number
+            return null;
+        }
+    }
+
+    private byte[] sign(String body) {
+        return macs.get().doFinal(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            var mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private record Claims(String username, long issuedAt, long expiresAt) {}
+}
@@ -4,12 +4,20 @@ import dataaccess.DataAccessException;
 
 public class ClearService {
     private final DataAccess dao;
+    private final AuthTokens tokens;
 
     public ClearService(DataAccess dao) {
+        this(dao, AuthTokens.stored(dao));
+    }
+
+    public ClearService(DataAccess dao, AuthTokens tokens) {
         this.dao = dao;
+        this.tokens = tokens;
     }
 
     public void clear() throws DataAccessException {
         dao.clear();
+        // signed tokens live outside the db, so kill them here too
+        tokens.revokeAll();
     }
 }
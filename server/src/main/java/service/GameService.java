@@ -1,33 +1,109 @@
 package service;
 
 import chess.ChessGame;
+import dataaccess.ConcurrentUpdateException;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.GameQuery;
+import model.GameClock;
 import model.GameData;
+import model.GameStatus;
+import model.GameSummaryData;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 public class GameService {
+    // biggest page a client can ask for in one GET /game
+    public static final int MAX_PAGE_SIZE = 500;
+    // tries for one optimistic update before giving up with ConcurrentUpdateException
+    static final int MAX_UPDATE_ATTEMPTS = 8;
+    // owned games kept in memory at most; past this they're read like any other
+    static final int MAX_OWNED_GAMES = 10_000;
+
     private final DataAccess dao;
+    private final AuthTokens tokens;
+    // games seen FINISHED in storage. Finished is final, so a hit never goes stale (until a clear)
+    // and lets moves on dead games be turned away without a read
+    private final Set<Integer> finished = ConcurrentHashMap.newKeySet();
+    // last row this node wrote for each active game it owns (see server.cluster.Cluster), so the
+    // next move starts from it instead of a read. Only a shortcut: the write is still versioned
+    private final Map<Integer, GameData> owned = new ConcurrentHashMap<>();
+    private final LobbyIndex lobby;
 
     public GameService(DataAccess dao) {
+        this(dao, AuthTokens.stored(dao));
+    }
+
+    public GameService(DataAccess dao, AuthTokens tokens) {
         this.dao = dao;
+        this.tokens = tokens;
+        this.lobby = new LobbyIndex(dao);
+    }
+
+    public LobbyIndex lobby() {
+        return lobby;
+    }
+
+    /**
+     * The lobby now, with every change after it going to listener (see LobbyIndex.subscribe).
+     */
+    public LobbyIndex.Snapshot watchLobby(String token, Consumer<LobbyIndex.Update> listener)
+            throws DataAccessException {
+        requireAuth(token);
+        return lobby.subscribe(listener);
     }
 
     private String requireAuth(String token) throws DataAccessException {
-        var auth = dao.getAuth(token);
-        if (auth == null) {
+        var username = tokens.authenticate(token);
+        if (username == null) {
             throw new SecurityException("unauthorized");
         }
-        return auth.username();
+        return username;
     }
 
     public ListGamesResult list(String token) throws DataAccessException {
+        return list(token, GameQuery.all());
+    }
+
+    public ListGamesResult list(String token, GameQuery query) throws DataAccessException {
         requireAuth(token);
-        var summaries = dao.listGames().stream()
-                .map(g -> new GameSummary(g.gameID(), g.whiteUsername(), g.blackUsername(), g.gameName()))
+        query = normalize(query);
+
+        // ask for one extra row so we know whether there is another page
+        int limit = query.limit();
+        var fetch = (limit == 0) ? query
+                : new GameQuery(query.afterId(), limit + 1, query.openOnly(), query.player(), query.status());
+        var rows = dao.listGameSummaries(fetch);
+
+        Integer nextCursor = null;
+        if (limit > 0 && rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            nextCursor = rows.get(limit - 1).gameID();
+        }
+        var summaries = rows.stream()
+                .map(g -> summary(g).listing())
                 .toList();
-        return new ListGamesResult(summaries);
+        return new ListGamesResult(summaries, nextCursor);
+    }
+
+    /**
+     * The query list() really runs: checked, and the page size capped. Two queries that come out
+     * the same here get the same answer.
+     */
+    public static GameQuery normalize(GameQuery query) {
+        if (query == null || query.afterId() < 0 || query.limit() < 0) {
+            throw new IllegalArgumentException("bad request");
+        }
+        int limit = Math.min(query.limit(), MAX_PAGE_SIZE);
+        return limit == query.limit() ? query
+                : new GameQuery(query.afterId(), limit, query.openOnly(), query.player(), query.status());
     }
 
     public CreateGameResult create(String token, server.Server.CreateGameRequest r) throws DataAccessException {
@@ -35,7 +111,9 @@ public class GameService {
         if (r == null || r.gameName() == null || r.gameName().isBlank()) {
             throw new IllegalArgumentException("bad request");
         }
-        int id = dao.createGame(new GameData(0, null, null, r.gameName(), new ChessGame()));
+        GameClock clock = GameClock.parse(r.timeControl());
+        int id = dao.createGame(new GameData(0, null, null, r.gameName(), new ChessGame(), 0, null, clock));
+        lobby.changed(new GameSummary(id, null, null, r.gameName(), GameStatus.Phase.OPEN, 0));
         return new CreateGameResult(id);
     }
 
@@ -46,43 +124,189 @@ public class GameService {
             throw new IllegalArgumentException("bad request");
         }
 
-        var game = dao.getGame(r.gameID());
-        if (game == null) {
-            throw new IllegalArgumentException("bad request");
-        }
-
         String color = r.playerColor().toUpperCase();
-        String white = game.whiteUsername();
-        String black = game.blackUsername();
-
         if ("OBSERVER".equals(color)) {
+            // summary lookup so observing doesn't load the board either
+            if (dao.getGameSummary(r.gameID()) == null) {
+                throw new IllegalArgumentException("bad request");
+            }
             return new EmptyResult();
         }
-
-        // Player join: WHITE or BLACK
-        if ("WHITE".equals(color)) {
-            if (white != null) {
-                throw new SecurityException("already taken");
-            }
-            white = username;
-        } else if ("BLACK".equals(color)) {
-            if (black != null) {
-                throw new SecurityException("already taken");
-            }
-            black = username;
-        } else {
+        if (!"WHITE".equals(color) && !"BLACK".equals(color)) {
             // Any other color string is a bad request (this is what the bad-color test checks)
             throw new IllegalArgumentException("bad request");
         }
 
-        dao.updateGame(new GameData(game.gameID(), white, black, game.gameName(), game.game()));
+        // single conditional UPDATE: no board read or write, and racing joins can't both win
+        var claim = dao.claimSeat(r.gameID(), "WHITE".equals(color), username);
+        switch (claim) {
+            case CLAIMED -> { }
+            case TAKEN -> throw new SecurityException("already taken");
+            case NO_SUCH_GAME -> throw new IllegalArgumentException("bad request");
+        }
+        // the seats changed under any copy we kept for moves
+        owned.remove(r.gameID());
+        if (lobby.watched()) {
+            // the lobby wants the whole row, not just our seat
+            var found = dao.getGameSummary(r.gameID());
+            if (found != null) {
+                lobby.changed(summary(found));
+            }
+        } else {
+            lobby.bump();
+        }
         return new EmptyResult();
     }
 
-    public record GameSummary(int gameID, String whiteUsername, String blackUsername, String gameName) {
+    /**
+     * Optimistic read-modify-write. Reads the game, lets change build the new row from it and
+     * writes it back only if nobody else updated the game in between; on a conflict it re-reads
+     * and runs change again. change rejects by throwing, or returns null if there's nothing to write.
+     *
+     * @return what was written (with its new version), or null if change returned null
+     */
+    public GameData updateGame(int gameID, GameChange change) throws DataAccessException {
+        return update(gameID, change, false);
+    }
+
+    /**
+     * updateGame for a game this node owns: starts from the row it wrote last time if it still
+     * has it, so a move is one write instead of a read and a write. If someone else changed the
+     * game in between, the write conflicts and it falls back to a fresh read like updateGame.
+     */
+    public GameData updateOwnedGame(int gameID, GameChange change) throws DataAccessException {
+        return update(gameID, change, true);
+    }
+
+    // games that moved to another node: whatever we have for them goes stale from now on
+    public void dropOwned(IntPredicate stillOurs) {
+        owned.keySet().removeIf(id -> !stillOurs.test(id));
+    }
+
+    private GameData update(int gameID, GameChange change, boolean cache) throws DataAccessException {
+        // taken out while in use: change edits the game in place, and a rejected move or a
+        // failed write must not leave that edit behind for the next one. An uncached update
+        // (e.g. a leave) changes the row under it, so it goes too
+        GameData cached = owned.remove(gameID);
+        if (!cache) {
+            cached = null;
+        }
+        for (int attempt = 1; ; attempt++) {
+            GameData current = cached != null ? cached : dao.getGame(gameID);
+            if (current == null) {
+                throw new IllegalArgumentException("bad request");
+            }
+            remember(current);
+            GameData next;
+            try {
+                next = change.apply(current);
+            } catch (RuntimeException e) {
+                if (current != cached) {
+                    throw e;
+                }
+                next = null;
+            }
+            if (next == null && current == cached) {
+                // the copy may be behind a seat change made on another node, which only the write
+                // would notice; a rejection or a no-op is checked against the stored row first
+                cached = null;
+                continue;
+            }
+            cached = null;
+            if (next == null) {
+                return null;
+            }
+            try {
+                dao.updateGame(next.withVersion(current.version()));
+                remember(next);
+                GameData written = next.withVersion(current.version() + 1);
+                var row = summary(written);
+                if (!row.sameAs(summary(current))) {
+                    // seats taken or freed, or the phase moved on: lobby watchers and GET /game's tag
+                    lobby.changed(row);
+                }
+                if (cache && !written.status().isFinished() && owned.size() < MAX_OWNED_GAMES) {
+                    // our own copy: the caller's is about to be serialized to every session
+                    owned.put(gameID, written.withGame(written.game().copy()));
+                }
+                return written;
+            } catch (ConcurrentUpdateException e) {
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * O(1), no I/O. True only if this game is known to be over; false just means "not known",
+     * so anything that changes the game still has to check the status it reads.
+     */
+    public boolean isFinished(int gameID) {
+        return finished.contains(gameID);
+    }
+
+    private void remember(GameData game) {
+        if (game.status().isFinished()) {
+            finished.add(game.gameID());
+        }
+    }
+
+    // after DELETE /db game ids start over, so what we knew about them is wrong
+    public void forgetStatuses() {
+        finished.clear();
+        owned.clear();
+        lobby.clear();
+    }
+
+    private static GameSummary summary(GameSummaryData g) {
+        return new GameSummary(g.gameID(), g.whiteUsername(), g.blackUsername(), g.gameName(),
+                g.status().phase(), g.version());
+    }
+
+    private static GameSummary summary(GameData g) {
+        return new GameSummary(g.gameID(), g.whiteUsername(), g.blackUsername(), g.gameName(),
+                g.status().phase(), g.version());
+    }
+
+    @FunctionalInterface
+    public interface GameChange {
+        GameData apply(GameData current) throws DataAccessException;
+    }
+
+    // short random pause so the losers of a race don't collide again straight away
+    private static void backoff(int attempt) throws DataAccessException {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1, 2 << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("interrupted", e);
+        }
+    }
+
+    // version is the stored row's, so the lobby can tell which of two views of a game is newer
+    public record GameSummary(int gameID, String whiteUsername, String blackUsername, String gameName,
+                              GameStatus.Phase status, int version) {
+        // same lobby row, whatever the version
+        boolean sameAs(GameSummary o) {
+            return gameID == o.gameID && Objects.equals(whiteUsername, o.whiteUsername)
+                    && Objects.equals(blackUsername, o.blackUsername) && status == o.status;
+        }
+
+        public GameListing listing() {
+            return new GameListing(gameID, whiteUsername, blackUsername, gameName, status);
+        }
+    }
+
+    // a row as clients see it. No version: every move bumps that without changing the row, and
+    // GET /game's ETag only follows the changes a row shows
+    public record GameListing(int gameID, String whiteUsername, String blackUsername, String gameName,
+                              GameStatus.Phase status) {
     }
 
-    public record ListGamesResult(List<GameSummary> games) {
+    // nextCursor is null on the last page (and gson leaves it out)
+    public record ListGamesResult(List<GameListing> games, Integer nextCursor) {
     }
 
     public record CreateGameResult(int gameID) {
@@ -1,9 +1,21 @@
 package service;
+import chess.ChessGame;
+import dataaccess.ConcurrentUpdateException;
 import dataaccess.DataAccess;
+import dataaccess.GameQuery;
 import dataaccess.MemoryDataAccess;
 import org.junit.jupiter.api.*;
+import model.GameData;
+import model.GameStatus;
+import model.GameSummaryData;
 import server.Server;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class GameServiceTest {
@@ -38,6 +50,45 @@ public class GameServiceTest {
         assertThrows(SecurityException.class, () -> games.list("badtoken"));
     }
 
+    @Test
+    void listPositivePaged() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            games.create(authAlice, new Server.CreateGameRequest("g" + i));
+        }
+        var first = games.list(authAlice, new GameQuery(0, 2, false, null));
+        assertEquals(2, first.games().size());
+        assertNotNull(first.nextCursor());
+
+        var second = games.list(authAlice, new GameQuery(first.nextCursor(), 2, false, null));
+        assertEquals("g3", second.games().get(0).gameName());
+
+        var last = games.list(authAlice, new GameQuery(second.nextCursor(), 2, false, null));
+        assertEquals(1, last.games().size());
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void listPositiveFiltered() throws Exception {
+        var full = games.create(authAlice, new Server.CreateGameRequest("full"));
+        games.create(authAlice, new Server.CreateGameRequest("empty"));
+        games.join(authAlice, new Server.JoinGameRequest("WHITE", full.gameID()));
+        games.join(authBob, new Server.JoinGameRequest("BLACK", full.gameID()));
+
+        var open = games.list(authAlice, new GameQuery(0, 0, true, null));
+        assertEquals(1, open.games().size());
+        assertEquals("empty", open.games().get(0).gameName());
+
+        var bobs = games.list(authAlice, new GameQuery(0, 0, false, "bob"));
+        assertEquals(1, bobs.games().size());
+        assertEquals("full", bobs.games().get(0).gameName());
+    }
+
+    @Test
+    void listNegativeBadCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> games.list(authAlice, new GameQuery(-1, 10, false, null)));
+    }
+
     // create
     @Test
     void createPositive() throws Exception {
@@ -51,6 +102,29 @@ public class GameServiceTest {
                 () -> games.create(authAlice, new Server.CreateGameRequest("")));
     }
 
+    @Test
+    void createPositiveTimeControl() throws Exception {
+        int blitz = games.create(authAlice, new Server.CreateGameRequest("blitz", "5+3")).gameID();
+        var clock = dao.getGame(blitz).clock();
+        assertEquals(300_000, clock.baseMillis());
+        assertEquals(3_000, clock.incrementMillis());
+        assertEquals(300_000, clock.whiteMillis());
+        assertFalse(clock.running());
+        assertEquals("5+3", clock.spec());
+
+        assertEquals(600_000, dao.getGame(games.create(authAlice,
+                new Server.CreateGameRequest("rapid", " 10 ")).gameID()).clock().blackMillis());
+        assertNull(dao.getGame(games.create(authAlice, new Server.CreateGameRequest("casual")).gameID()).clock());
+    }
+
+    @Test
+    void createNegativeBadTimeControl() {
+        for (String bad : new String[]{"five", "5+", "+3", "0+5", "-1+0", "5+3+1", "181+0", "5+181"}) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> games.create(authAlice, new Server.CreateGameRequest("g", bad)), bad);
+        }
+    }
+
     // join
     @Test
     void joinPositive() throws Exception {
@@ -89,4 +163,246 @@ public class GameServiceTest {
         assertThrows(SecurityException.class,
                 () -> games.join("badtoken", new Server.JoinGameRequest("WHITE", g.gameID())));
     }
+
+    @Test
+    void joinPositiveLooksUpTheGameNotAPage() throws Exception {
+        var listings = new AtomicInteger();
+        var counting = new MemoryDataAccess() {
+            @Override
+            public List<GameSummaryData> listGameSummaries(GameQuery query) {
+                listings.incrementAndGet();
+                return super.listGameSummaries(query);
+            }
+        };
+        var service = new GameService(counting);
+        var token = new UserService(counting).register(new Server.RegisterRequest("carol", "pw", "c@c")).authToken();
+        int id = service.create(token, new Server.CreateGameRequest("g")).gameID();
+        var updates = new ArrayList<LobbyIndex.Update>();
+        service.watchLobby(token, updates::add);
+        int loads = listings.get();
+
+        service.join(token, new Server.JoinGameRequest("OBSERVER", id));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.join(token, new Server.JoinGameRequest("OBSERVER", id + 1)));
+        service.join(token, new Server.JoinGameRequest("WHITE", id));
+        assertEquals("carol", updates.get(updates.size() - 1).game().whiteUsername());
+        assertEquals(loads, listings.get(), "join ran a listing query");
+    }
+
+    @Test
+    void joinPositiveRaceHasOneWinner() throws Exception {
+        int id = games.create(authAlice, new Server.CreateGameRequest("race")).gameID();
+        int players = 4;
+        var tokens = new String[players];
+        for (int i = 0; i < players; i++) {
+            tokens[i] = users.register(new Server.RegisterRequest("p" + i, "pw", "p@p")).authToken();
+        }
+
+        var go = new CountDownLatch(1);
+        var wins = new AtomicInteger();
+        var taken = new AtomicInteger();
+        try (var pool = Executors.newFixedThreadPool(players)) {
+            for (int i = 0; i < players; i++) {
+                String token = tokens[i];
+                pool.submit(() -> {
+                    go.await();
+                    try {
+                        games.join(token, new Server.JoinGameRequest("WHITE", id));
+                        wins.incrementAndGet();
+                    } catch (SecurityException e) {
+                        taken.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            go.countDown();
+        }
+        assertEquals(1, wins.get());
+        assertEquals(players - 1, taken.get());
+        assertNotNull(dao.getGame(id).whiteUsername());
+    }
+
+    @Test
+    void updateGamePositiveRetriesAfterConflict() throws Exception {
+        int id = games.create(authAlice, new Server.CreateGameRequest("retry")).gameID();
+        var calls = new AtomicInteger();
+
+        var written = games.updateGame(id, g -> {
+            if (calls.incrementAndGet() == 1) {
+                // someone else sneaks in between our read and our write
+                var other = dao.getGame(id);
+                dao.updateGame(new GameData(id, "bob", null, other.gameName(), other.game(), other.version()));
+            }
+            return new GameData(id, g.whiteUsername(), "alice", g.gameName(), g.game(), g.version());
+        });
+
+        assertEquals(2, calls.get());
+        assertEquals(2, written.version());
+        var stored = dao.getGame(id);
+        assertEquals("bob", stored.whiteUsername());
+        assertEquals("alice", stored.blackUsername());
+    }
+
+    @Test
+    void updateGameNegativeStaleVersion() throws Exception {
+        int id = games.create(authAlice, new Server.CreateGameRequest("stale")).gameID();
+        var read = dao.getGame(id);
+        dao.updateGame(new GameData(id, "bob", null, read.gameName(), read.game(), read.version()));
+
+        var stale = new GameData(id, "alice", null, read.gameName(), read.game(), read.version());
+        assertThrows(ConcurrentUpdateException.class, () -> dao.updateGame(stale));
+        assertEquals("bob", dao.getGame(id).whiteUsername());
+    }
+
+    @Test
+    void statusPositiveFollowsSeatsAndFilters() throws Exception {
+        int open = games.create(authAlice, new Server.CreateGameRequest("open")).gameID();
+        int active = games.create(authAlice, new Server.CreateGameRequest("active")).gameID();
+        int done = games.create(authAlice, new Server.CreateGameRequest("done")).gameID();
+        for (int id : new int[]{active, done}) {
+            games.join(authAlice, new Server.JoinGameRequest("WHITE", id));
+            games.join(authBob, new Server.JoinGameRequest("BLACK", id));
+        }
+        games.updateGame(done, g -> g.withStatus(
+                GameStatus.finished(GameStatus.Result.WHITE_WON, GameStatus.Reason.RESIGNATION)));
+
+        assertEquals(GameStatus.OPEN, dao.getGame(open).status());
+        assertEquals(GameStatus.ACTIVE, dao.getGame(active).status());
+        for (var phase : GameStatus.Phase.values()) {
+            var page = games.list(authAlice, new GameQuery(0, 0, false, null, phase));
+            assertEquals(1, page.games().size(), phase.name());
+            assertEquals(phase, page.games().get(0).status());
+        }
+
+        // freeing a seat reopens a game in progress, but a finished game stays finished
+        games.updateGame(active, g -> g.withSeats(null, g.blackUsername()));
+        games.updateGame(done, g -> g.withSeats(null, g.blackUsername()));
+        assertEquals(GameStatus.OPEN, dao.getGame(active).status());
+        var finished = dao.getGame(done).status();
+        assertTrue(finished.isFinished());
+        assertEquals(GameStatus.Result.WHITE_WON, finished.result());
+        assertEquals(GameStatus.Reason.RESIGNATION, finished.reason());
+    }
+
+    @Test
+    void statusNegativeFinishedSurvivesRestart() throws Exception {
+        int id = games.create(authAlice, new Server.CreateGameRequest("over")).gameID();
+        assertFalse(games.isFinished(id));
+        games.updateGame(id, g -> g.withStatus(
+                GameStatus.finished(GameStatus.Result.DRAW, GameStatus.Reason.STALEMATE)));
+        assertTrue(games.isFinished(id));
+
+        // a fresh service (restart, or another node) doesn't know yet, but learns it from the first read
+        var other = new GameService(dao);
+        assertFalse(other.isFinished(id));
+        assertThrows(IllegalArgumentException.class, () -> other.updateGame(id, g -> {
+            if (g.status().isFinished()) {
+                throw new IllegalArgumentException("game is over");
+            }
+            return g;
+        }));
+        assertTrue(other.isFinished(id));
+
+        other.forgetStatuses();
+        assertFalse(other.isFinished(id));
+    }
+
+    // a DAO that counts game reads
+    private static final class CountingDataAccess extends MemoryDataAccess {
+        final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public GameData getGame(int gameID) {
+            reads.incrementAndGet();
+            return super.getGame(gameID);
+        }
+    }
+
+    @Test
+    void updateOwnedPositiveSkipsTheRead() throws Exception {
+        var counting = new CountingDataAccess();
+        var owner = new GameService(counting);
+        int id = counting.createGame(new GameData(0, "alice", "bob", "g", new ChessGame()));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, owner.updateOwnedGame(id, g -> g).version());
+        }
+        // only the first update read; the others started from what the one before wrote
+        assertEquals(1, counting.reads.get());
+        assertEquals(3, counting.getGame(id).version());
+    }
+
+    @Test
+    void updateOwnedNegativeStaleOrDroppedCopyIsReadAgain() throws Exception {
+        var counting = new CountingDataAccess();
+        var owner = new GameService(counting);
+        int id = counting.createGame(new GameData(0, "alice", "bob", "g", new ChessGame()));
+        owner.updateOwnedGame(id, g -> g);
+
+        // another node writes behind the owner's back: the owner's write conflicts and it re-reads
+        new GameService(counting).updateGame(id, g -> g.withSeats("carol", g.blackUsername()));
+        var written = owner.updateOwnedGame(id, g -> g);
+        assertEquals("carol", written.whiteUsername());
+        assertEquals(3, written.version());
+
+        // a rejected change may have edited the copy, so it's thrown away
+        assertThrows(IllegalArgumentException.class, () -> owner.updateOwnedGame(id, g -> {
+            throw new IllegalArgumentException("illegal move");
+        }));
+        int reads = counting.reads.get();
+        owner.updateOwnedGame(id, g -> g);
+        assertEquals(reads + 1, counting.reads.get());
+
+        // and so is everything that moved to another node
+        owner.dropOwned(gameID -> false);
+        owner.updateOwnedGame(id, g -> g);
+        assertEquals(reads + 2, counting.reads.get());
+    }
+
+    // what handleMove's change checks: the mover has to hold the seat whose turn it is
+    private static GameService.GameChange moveBy(String user) {
+        return g -> {
+            String toMove = g.game().getTeamTurn() == ChessGame.TeamColor.WHITE
+                    ? g.whiteUsername() : g.blackUsername();
+            if (!user.equals(toMove)) {
+                throw new SecurityException("not your turn");
+            }
+            g.game().setTeamTurn(g.game().getTeamTurn() == ChessGame.TeamColor.WHITE
+                    ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+            return g;
+        };
+    }
+
+    @Test
+    void seatChangePositiveNewPlayerCanMove() throws Exception {
+        String authCarol = users.register(new Server.RegisterRequest("carol", "pw", "c@c")).authToken();
+        int id = dao.createGame(new GameData(0, "alice", "bob", "g", new ChessGame()));
+        games.updateOwnedGame(id, moveBy("alice"));
+
+        // bob leaves, carol sits down, both on this node
+        games.updateGame(id, g -> g.withSeats(g.whiteUsername(), null));
+        games.join(authCarol, new Server.JoinGameRequest("BLACK", id));
+        assertEquals("carol", games.updateOwnedGame(id, moveBy("carol")).blackUsername());
+
+        // the seat changes on another node, where this one's copy can't hear about it
+        games.updateOwnedGame(id, moveBy("alice"));
+        new GameService(dao).updateGame(id, g -> g.withSeats(g.whiteUsername(), "dave"));
+        var written = games.updateOwnedGame(id, moveBy("dave"));
+        assertEquals("dave", written.blackUsername());
+        assertEquals(ChessGame.TeamColor.WHITE, dao.getGame(id).game().getTeamTurn());
+    }
+
+    @Test
+    void seatChangeNegativeOldPlayerStillTurnedAway() throws Exception {
+        int id = dao.createGame(new GameData(0, "alice", "bob", "g", new ChessGame()));
+        games.updateOwnedGame(id, moveBy("alice"));
+        new GameService(dao).updateGame(id, g -> g.withSeats(g.whiteUsername(), "carol"));
+
+        // bob's move looked fine against the copy but not against the stored row
+        assertThrows(SecurityException.class, () -> games.updateOwnedGame(id, moveBy("bob")));
+        var stored = dao.getGame(id);
+        assertEquals("carol", stored.blackUsername());
+        assertEquals(ChessGame.TeamColor.BLACK, stored.game().getTeamTurn());
+        assertEquals(2, stored.version());
+    }
 }
@@ -0,0 +1,194 @@
+package service;
+
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.GameQuery;
+import model.GameStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Every game's lobby row, in memory, so a client can get the lobby once and then just the
+ * changes instead of polling GET /game (a read of the whole table each time).
+ * <p>
+ * Loaded from storage the first time someone watches; from then on the services tell it
+ * about every change. Every row carries the stored game's version and only a newer one
+ * replaces it, so applying a change late or twice does no harm, which is what lets other
+ * nodes' changes (and a load racing a change) come in in whatever order they arrive.
+ */
+public class LobbyIndex {
+
+    public enum Change { CREATED, SEAT_TAKEN, SEAT_FREED, FINISHED, CLEARED }
+
+    // game is null for CLEARED
+    public record Update(Change change, long seq, GameService.GameSummary game) {
+    }
+
+    public record Snapshot(long seq, List<GameService.GameSummary> games) {
+    }
+
+    private final DataAccess dao;
+    private final Object loadLock = new Object();
+    private volatile boolean loaded;
+
+    // guarded by this
+    private final Map<Integer, GameService.GameSummary> games = new TreeMap<>();
+    private final List<Consumer<Update>> listeners = new ArrayList<>();
+    private long seq;
+    // set (under this) just before the load reads storage; volatile so watched() can peek
+    private volatile boolean tracking;
+    // goes up with every change, watched or not, so GET /game can tell a client nothing changed
+    private final AtomicLong version = new AtomicLong();
+
+    // where this node's own changes are passed on to, for other nodes' indexes; null = nowhere
+    private volatile Consumer<GameService.GameSummary> peers;
+
+    public LobbyIndex(DataAccess dao) {
+        this.dao = dao;
+    }
+
+    public void sendChangesTo(Consumer<GameService.GameSummary> peers) {
+        this.peers = peers;
+    }
+
+    // false until someone watches or there are other nodes, so there's no point building rows
+    public boolean watched() {
+        return tracking || peers != null;
+    }
+
+    /**
+     * A game was created or changed here. g must be the whole row as stored.
+     */
+    public void changed(GameService.GameSummary g) {
+        var p = peers;
+        if (p != null) {
+            p.accept(g);
+        }
+        apply(g);
+    }
+
+    /**
+     * A change from anywhere, this node or another.
+     */
+    public synchronized void apply(GameService.GameSummary g) {
+        version.incrementAndGet();
+        if (!tracking) {
+            // nobody's watching yet; the load will read it from storage
+            return;
+        }
+        var old = games.get(g.gameID());
+        if (old != null && old.version() >= g.version()) {
+            // seen it, or something newer
+            return;
+        }
+        games.put(g.gameID(), g);
+        Change change;
+        if (old == null) {
+            change = Change.CREATED;
+        } else if (g.status() == GameStatus.Phase.FINISHED && old.status() != GameStatus.Phase.FINISHED) {
+            change = Change.FINISHED;
+        } else if (seats(g) < seats(old)) {
+            change = Change.SEAT_FREED;
+        } else {
+            change = Change.SEAT_TAKEN;
+        }
+        publish(new Update(change, ++seq, g));
+    }
+
+    private static int seats(GameService.GameSummary g) {
+        return (g.whiteUsername() != null ? 1 : 0) + (g.blackUsername() != null ? 1 : 0);
+    }
+
+    /**
+     * Everything as of now, and from then on every change goes to listener, in order and with
+     * nothing missed in between. listener is called with the index locked, so it must only
+     * hand the update off (to a queue), never block.
+     */
+    public Snapshot subscribe(Consumer<Update> listener) throws DataAccessException {
+        load();
+        synchronized (this) {
+            listeners.add(listener);
+            return new Snapshot(seq, List.copyOf(games.values()));
+        }
+    }
+
+    public synchronized void unsubscribe(Consumer<Update> listener) {
+        listeners.remove(listener);
+    }
+
+    private void load() throws DataAccessException {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (loaded) {
+                return;
+            }
+            // start tracking before the read, so a change racing it isn't lost; versions make
+            // it fine for the read to return an older row than the change
+            synchronized (this) {
+                tracking = true;
+            }
+            try {
+                for (var row : dao.listGameSummaries(GameQuery.all())) {
+                    apply(new GameService.GameSummary(row.gameID(), row.whiteUsername(), row.blackUsername(),
+                            row.gameName(), row.status().phase(), row.version()));
+                }
+            } catch (DataAccessException | RuntimeException e) {
+                synchronized (this) {
+                    tracking = false;
+                    games.clear();
+                }
+                throw e;
+            }
+            loaded = true;
+        }
+    }
+
+    // something changed that nobody built a row for, because nobody was watching
+    public void bump() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Changes on this node and those passed on from others. Only compare it with itself: it
+     * starts again from 0 when the server does.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    // after DELETE /db
+    public synchronized void clear() {
+        version.incrementAndGet();
+        if (!tracking) {
+            return;
+        }
+        games.clear();
+        publish(new Update(Change.CLEARED, ++seq, null));
+    }
+
+    private void publish(Update u) {
+        for (var l : listeners) {
+            l.accept(u);
+        }
+    }
+
+    public synchronized int size() {
+        return games.size();
+    }
+
+    public synchronized int subscribers() {
+        return listeners.size();
+    }
+
+    // changes so far
+    public synchronized long seq() {
+        return seq;
+    }
+}
@@ -0,0 +1,116 @@
+package service;
+
+import dataaccess.DataAccess;
+import dataaccess.MemoryDataAccess;
+import model.GameStatus;
+import org.junit.jupiter.api.*;
+import server.Server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LobbyIndexTest {
+
+    private DataAccess dao;
+    private GameService games;
+    private String authAlice;
+    private String authBob;
+    private final List<LobbyIndex.Update> updates = new ArrayList<>();
+
+    @BeforeEach
+    void setup() throws Exception {
+        dao = new MemoryDataAccess();
+        var users = new UserService(dao);
+        games = new GameService(dao);
+        authAlice = users.register(new Server.RegisterRequest("alice", "pw", "a@a")).authToken();
+        authBob = users.register(new Server.RegisterRequest("bob", "pw", "b@b")).authToken();
+    }
+
+    private List<LobbyIndex.Change> changes() {
+        return updates.stream().map(LobbyIndex.Update::change).toList();
+    }
+
+    @Test
+    void lobbyPositiveSnapshotThenChanges() throws Exception {
+        int first = games.create(authAlice, new Server.CreateGameRequest("before")).gameID();
+        var snapshot = games.watchLobby(authAlice, updates::add);
+        assertEquals(1, snapshot.games().size());
+        assertEquals("before", snapshot.games().get(0).gameName());
+
+        int second = games.create(authAlice, new Server.CreateGameRequest("after")).gameID();
+        games.join(authAlice, new Server.JoinGameRequest("WHITE", second));
+        games.join(authBob, new Server.JoinGameRequest("BLACK", second));
+        games.join(authBob, new Server.JoinGameRequest("OBSERVER", first));
+        games.updateGame(second, g -> g.withStatus(GameStatus.finished(GameStatus.Result.DRAW,
+                GameStatus.Reason.STALEMATE)));
+
+        assertEquals(List.of(LobbyIndex.Change.CREATED, LobbyIndex.Change.SEAT_TAKEN,
+                LobbyIndex.Change.SEAT_TAKEN, LobbyIndex.Change.FINISHED), changes());
+        var seated = updates.get(2).game();
+        assertEquals("alice", seated.whiteUsername());
+        assertEquals("bob", seated.blackUsername());
+        assertEquals(GameStatus.Phase.ACTIVE, seated.status());
+        assertEquals(GameStatus.Phase.FINISHED, updates.get(3).game().status());
+        // numbered in order, carrying on from the snapshot
+        for (int i = 0; i < updates.size(); i++) {
+            assertEquals(snapshot.seq() + i + 1, updates.get(i).seq());
+        }
+
+        games.forgetStatuses();
+        assertEquals(LobbyIndex.Change.CLEARED, updates.get(4).change());
+        assertEquals(0, games.lobby().size());
+    }
+
+    @Test
+    void lobbyNegativeStaleOrRepeatedChangesDoNothing() throws Exception {
+        assertThrows(SecurityException.class, () -> games.watchLobby("badtoken", updates::add));
+        // nobody watching: nothing kept, and the lobby costs a join nothing
+        int id = games.create(authAlice, new Server.CreateGameRequest("g")).gameID();
+        assertFalse(games.lobby().watched());
+        assertEquals(0, games.lobby().size());
+
+        games.watchLobby(authAlice, updates::add);
+        var lobby = games.lobby();
+        var full = new GameService.GameSummary(id, "alice", "bob", "g", GameStatus.Phase.FINISHED, 5);
+        lobby.apply(full);
+        // the same change again, and an older view of the game arriving late (another node's, say)
+        lobby.apply(full);
+        lobby.apply(new GameService.GameSummary(id, "alice", null, "g", GameStatus.Phase.OPEN, 3));
+        assertEquals(List.of(LobbyIndex.Change.FINISHED), changes());
+        Consumer<LobbyIndex.Update> late = u -> fail("unsubscribed");
+        assertEquals(full, lobby.subscribe(late).games().get(0));
+        lobby.unsubscribe(late);
+        games.create(authAlice, new Server.CreateGameRequest("h"));
+        assertEquals(2, updates.size());
+    }
+
+    @Test
+    void lobbyPositiveLeaveFreesTheSeat() throws Exception {
+        int id = games.create(authAlice, new Server.CreateGameRequest("g")).gameID();
+        games.join(authAlice, new Server.JoinGameRequest("WHITE", id));
+        games.join(authBob, new Server.JoinGameRequest("BLACK", id));
+        games.watchLobby(authAlice, updates::add);
+        assertEquals(GameStatus.Phase.ACTIVE, games.lobby().subscribe(u -> { }).games().get(0).status());
+
+        // what the websocket LEAVE does
+        games.updateGame(id, g -> g.withSeats(g.whiteUsername(), null));
+        assertEquals(List.of(LobbyIndex.Change.SEAT_FREED), changes());
+        var row = updates.get(0).game();
+        assertNull(row.blackUsername());
+        assertEquals(GameStatus.Phase.OPEN, row.status());
+        assertEquals(dao.getGame(id).version(), row.version());
+
+        // someone else sits down; a late copy of the ACTIVE row with bob in it loses to it
+        String authCarol = new UserService(dao).register(
+                new Server.RegisterRequest("carol", "pw", "c@c")).authToken();
+        games.join(authCarol, new Server.JoinGameRequest("BLACK", id));
+        games.lobby().apply(new GameService.GameSummary(id, "alice", "bob", "g", GameStatus.Phase.ACTIVE, 2));
+        assertEquals(List.of(LobbyIndex.Change.SEAT_FREED, LobbyIndex.Change.SEAT_TAKEN), changes());
+        var now = games.lobby().subscribe(u -> { }).games().get(0);
+        assertEquals("carol", now.blackUsername());
+        assertEquals(GameStatus.Phase.ACTIVE, now.status());
+    }
+}
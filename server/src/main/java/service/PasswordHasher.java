@@ -0,0 +1,146 @@
+package service;
+
+import org.mindrot.jbcrypt.BCrypt;
+import server.metrics.LatencyHistogram;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs bcrypt on its own small pool instead of the request threads.
+ * bcrypt is pure CPU, so the pool is sized to the cores and the queue is bounded;
+ * when both are full we fail fast with {@link ServiceUnavailableException} rather than pile up.
+ */
+public class PasswordHasher {
+
+    private static PasswordHasher shared;
+
+    private final int cost;
+    private final ThreadPoolExecutor pool;
+
+    private final LongAdder rejected = new LongAdder();
+    // time on the bcrypt thread only, queue wait not included
+    private final LatencyHistogram hashTimes = new LatencyHistogram();
+    private final LatencyHistogram checkTimes = new LatencyHistogram();
+
+    public PasswordHasher(int cost, int threads, int queueSize) {
+        if (cost < 4 || cost > 31 || threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("bad hasher settings");
+        }
+        this.cost = cost;
+        var count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    var t = new Thread(r, "bcrypt-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // default hasher for services built without one (mostly the unit tests)
+    static synchronized PasswordHasher shared() {
+        if (shared == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            shared = new PasswordHasher(12, cores, cores * 8);
+        }
+        return shared;
+    }
+
+    public String hash(String password) {
+        return run(hashTimes, () -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+    }
+
+    public boolean check(String password, String hash) {
+        return run(checkTimes, () -> BCrypt.checkpw(password, hash));
+    }
+
+    // true when the stored hash was made with a different cost than we use now
+    public boolean needsRehash(String hash) {
+        return costOf(hash) != cost;
+    }
+
+    static int costOf(String hash) {
+        // format is $2a$12$<salt+hash>
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private <T> T run(LatencyHistogram times, Callable<T> work) {
+        Callable<T> task = () -> {
+            long start = System.nanoTime();
+            try {
+                return work.call();
+            } finally {
+                times.recordSince(start);
+            }
+        };
+
+        try {
+            return pool.submit(task).get();
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceUnavailableException("password hashing is saturated");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("interrupted while hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // stats for monitoring
+    public int cost() {
+        return cost;
+    }
+
+    public int queueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int activeCount() {
+        return pool.getActiveCount();
+    }
+
+    public long completedCount() {
+        return hashTimes.count() + checkTimes.count();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public double averageMillis() {
+        long n = completedCount();
+        return n == 0 ? 0 : (hashTimes.sumNanos() + checkTimes.sumNanos()) / (n * 1_000_000.0);
+    }
+
+    public double maxMillis() {
+        return Math.max(hashTimes.maxNanos(), checkTimes.maxNanos()) / 1_000_000.0;
+    }
+
+    public LatencyHistogram hashTimes() {
+        return hashTimes;
+    }
+
+    public LatencyHistogram checkTimes() {
+        return checkTimes;
+    }
+}
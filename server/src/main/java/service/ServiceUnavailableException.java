@@ -0,0 +1,11 @@
+package service;
+
+/**
+ * Thrown when the server is too busy to take the request right now.
+ * The HTTP layer turns this into a 503 so clients back off and retry.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
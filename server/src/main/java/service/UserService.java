@@ -2,17 +2,25 @@ package service;
 
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
-import model.AuthData;
 import model.UserData;
-import org.mindrot.jbcrypt.BCrypt;
-
-import java.util.UUID;
 
 public class UserService {
     private final DataAccess dao;
+    private final PasswordHasher hasher;
+    private final AuthTokens tokens;
 
     public UserService(DataAccess dao) {
+        this(dao, PasswordHasher.shared());
+    }
+
+    public UserService(DataAccess dao, PasswordHasher hasher) {
+        this(dao, hasher, AuthTokens.stored(dao));
+    }
+
+    public UserService(DataAccess dao, PasswordHasher hasher, AuthTokens tokens) {
         this.dao = dao;
+        this.hasher = hasher;
+        this.tokens = tokens;
     }
 
     public AuthResult register(server.Server.RegisterRequest r) throws DataAccessException {
@@ -23,15 +31,13 @@ public class UserService {
             throw new SecurityException("already taken");
         }
 
-        // hash password
-        String hash = BCrypt.hashpw(r.password(), BCrypt.gensalt(12));
+        // hash password (on the bcrypt pool, not this request thread)
+        String hash = hasher.hash(r.password());
 
         dao.createUser(new UserData(r.username(), hash, r.email()));
 
         // Issue auth token
-        String token = UUID.randomUUID().toString();
-        dao.createAuth(new AuthData(token, r.username()));
-        return new AuthResult(r.username(), token);
+        return new AuthResult(r.username(), tokens.issue(r.username()));
     }
 
     public AuthResult login(server.Server.LoginRequest r) throws DataAccessException {
@@ -40,24 +46,31 @@ public class UserService {
         }
         var user = dao.getUser(r.username());
 
-        if (user == null || user.passwordHash() == null || !BCrypt.checkpw(r.password(), user.passwordHash())) {
+        if (user == null || user.passwordHash() == null || !hasher.check(r.password(), user.passwordHash())) {
             throw new SecurityException("unauthorized");
         }
 
-        String token = UUID.randomUUID().toString();
-        dao.createAuth(new AuthData(token, r.username()));
-        return new AuthResult(r.username(), token);
+        // cost was changed since this hash was made, upgrade it while we have the plain password
+        if (hasher.needsRehash(user.passwordHash())) {
+            dao.updatePasswordHash(user.username(), hasher.hash(r.password()));
+        }
+
+        return new AuthResult(r.username(), tokens.issue(r.username()));
     }
 
     public EmptyResult logout(server.Server.LogoutRequest r) throws DataAccessException {
-        var auth = dao.getAuth(r.authToken());
-        if (auth == null) {
+        if (tokens.authenticate(r.authToken()) == null) {
             throw new SecurityException("unauthorized");
         }
-        dao.deleteAuth(r.authToken());
+        tokens.revoke(r.authToken());
         return new EmptyResult();
     }
 
+    // username for a token, or null if it is not (or no longer) valid
+    public String authenticate(String token) throws DataAccessException {
+        return tokens.authenticate(token);
+    }
+
     private boolean blank(String s) { return s == null || s.isBlank(); }
 
     public record AuthResult(String username, String authToken) {}
@@ -4,6 +4,13 @@ import dataaccess.MemoryDataAccess;
 import org.junit.jupiter.api.*;
 import server.Server;
 
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class UserServiceTest {
@@ -60,4 +67,138 @@ public class UserServiceTest {
         assertThrows(SecurityException.class,
                 () -> users.logout(new Server.LogoutRequest("no-such-token")));
     }
+
+    @Test
+    void loginPositiveRehashesOnCostChange() throws Exception {
+        var cheap = new UserService(dao, new PasswordHasher(4, 1, 4));
+        cheap.register(new Server.RegisterRequest("dave", "pw", "d@d"));
+        assertEquals(4, PasswordHasher.costOf(dao.getUser("dave").passwordHash()));
+
+        var upgraded = new UserService(dao, new PasswordHasher(5, 1, 4));
+        upgraded.login(new Server.LoginRequest("dave", "pw"));
+        assertEquals(5, PasswordHasher.costOf(dao.getUser("dave").passwordHash()));
+
+        // the new hash still works
+        assertDoesNotThrow(() -> upgraded.login(new Server.LoginRequest("dave", "pw")));
+    }
+
+    @Test
+    void hashNegativeSaturated() throws Exception {
+        // one worker and one queue slot, so a burst of eight must shed some of them
+        var tiny = new PasswordHasher(10, 1, 1);
+        var callers = Executors.newFixedThreadPool(8);
+        var results = new ArrayList<Future<String>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit((Callable<String>) () -> tiny.hash("pw")));
+        }
+        int busy = 0;
+        for (var f : results) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                assertInstanceOf(ServiceUnavailableException.class, e.getCause());
+                busy++;
+            }
+        }
+        callers.shutdown();
+        tiny.shutdown();
+        assertTrue(busy > 0);
+        assertEquals(busy, tiny.rejectedCount());
+    }
+
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes();
+
+    @Test
+    void signedTokensPositive() throws Exception {
+        var tokens = AuthTokens.signed(dao, SECRET, 60_000);
+        var signed = new UserService(dao, new PasswordHasher(4, 1, 4), tokens);
+        var reg = signed.register(new Server.RegisterRequest("fay", "pw", "f@f"));
+
+        // nothing goes in the auth table, the token speaks for itself
+        assertNull(dao.getAuth(reg.authToken()));
+        assertEquals("fay", signed.authenticate(reg.authToken()));
+        assertTrue(new GameService(dao, tokens).list(reg.authToken()).games().isEmpty());
+
+        signed.logout(new Server.LogoutRequest(reg.authToken()));
+        assertNull(signed.authenticate(reg.authToken()));
+        assertThrows(SecurityException.class,
+                () -> signed.logout(new Server.LogoutRequest(reg.authToken())));
+    }
+
+    @Test
+    void signedTokensNegativeTamperedOrExpired() throws Exception {
+        var tokens = AuthTokens.signed(dao, SECRET, 60_000);
+        String token = tokens.issue("gus");
+        assertEquals("gus", tokens.authenticate(token));
+
+        // swap the username part for someone else's
+        String[] parts = token.split("\\.");
+        parts[4] = Base64.getUrlEncoder().withoutPadding().encodeToString("admin".getBytes());
+        assertNull(tokens.authenticate(String.join(".", parts)));
+
+        // same token checked with a different key
+        var otherKey = AuthTokens.signed(dao, "fedcba9876543210fedcba9876543210".getBytes(), 60_000);
+        assertNull(otherKey.authenticate(token));
+
+        var shortLived = AuthTokens.signed(dao, SECRET, 1);
+        String expiring = shortLived.issue("gus");
+        Thread.sleep(5);
+        assertNull(shortLived.authenticate(expiring));
+
+        tokens.revokeAll();
+        assertNull(tokens.authenticate(token));
+    }
+
+    @Test
+    void signedTokensPositiveWorkRightAfterClear() throws Exception {
+        var tokens = AuthTokens.signed(dao, SECRET, 60_000);
+        var signed = new UserService(dao, new PasswordHasher(4, 1, 4), tokens);
+        var clear = new ClearService(dao, tokens);
+        // clear then register straight away, many times, so some land in the same millisecond
+        for (int i = 0; i < 200; i++) {
+            String old = tokens.issue("old");
+            clear.clear();
+            assertNull(tokens.authenticate(old), "issued before clear " + i);
+            var reg = signed.register(new Server.RegisterRequest("hal", "pw", "h@h"));
+            assertEquals("hal", signed.authenticate(reg.authToken()), "registered after clear " + i);
+        }
+    }
+
+    @Test
+    void signedTokensPositiveLogoutAndClearReachOtherNodes() throws Exception {
+        // two nodes sharing a key, wired to each other the way the bus does it
+        var a = AuthTokens.signed(dao, SECRET, 60_000);
+        var b = AuthTokens.signed(dao, SECRET, 60_000);
+        a.sendRevocationsTo(b::apply);
+        b.sendRevocationsTo(a::apply);
+
+        String token = a.issue("ida");
+        String other = a.issue("ida");
+        assertEquals("ida", b.authenticate(token));
+        a.revoke(token);
+        assertNull(b.authenticate(token));
+        assertEquals("ida", b.authenticate(other));
+
+        b.revokeAll();
+        assertNull(a.authenticate(other));
+        // a token a hands out right after b's clear works on both
+        String fresh = a.issue("ida");
+        assertEquals("ida", a.authenticate(fresh));
+        assertEquals("ida", b.authenticate(fresh));
+    }
+
+    @Test
+    void signedTokensNegativeForgedRevocationIgnored() throws Exception {
+        var tokens = AuthTokens.signed(dao, SECRET, 60_000);
+        String token = tokens.issue("jo");
+        // junk and stale clears from another node don't take anything away
+        tokens.apply(new AuthTokens.Revocation("not-a-token", 0));
+        tokens.apply(new AuthTokens.Revocation(null, 1));
+        assertEquals("jo", tokens.authenticate(token));
+        // stored tokens live in the shared database, so there's nothing to pass on
+        var stored = AuthTokens.stored(dao);
+        String uuid = stored.issue("jo");
+        stored.apply(new AuthTokens.Revocation(uuid, 0));
+        assertEquals("jo", stored.authenticate(uuid));
+    }
 }
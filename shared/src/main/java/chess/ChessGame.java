@@ -1,11 +1,14 @@
 package chess;
 import java.util.*;
 public class ChessGame {
-    private ChessBoard board;
-    private TeamColor turn;
-    private ChessPosition enPassantTarget;
-    private boolean whiteKingMoved, whiteQRookMoved, whiteKRookMoved;
-    private boolean blackKingMoved, blackQRookMoved, blackKRookMoved;
+    // package-private so ChessGameCodec and ChessJson can read and restore them directly
+    ChessBoard board;
+    TeamColor turn;
+    ChessPosition enPassantTarget;
+    boolean whiteKingMoved, whiteQRookMoved, whiteKRookMoved;
+    boolean blackKingMoved, blackQRookMoved, blackKRookMoved;
+    // half-moves played so far
+    int ply;
     public ChessGame() {
         board = new ChessBoard();
         board.resetBoard();
@@ -14,6 +17,11 @@ public class ChessGame {
         whiteKingMoved = whiteQRookMoved = whiteKRookMoved = false;
         blackKingMoved = blackQRookMoved = blackKRookMoved = false;
     }
+    // for ChessGameCodec and ChessJson: starts from a given board instead of building the opening position
+    ChessGame(ChessBoard board) {
+        this.board = board;
+        this.turn = TeamColor.WHITE;
+    }
     public TeamColor getTeamTurn() {
         if (turn == null) {
             turn = TeamColor.WHITE;
@@ -97,6 +105,39 @@ public class ChessGame {
 
         applyMove(board, move);
         toggleTurn();
+        ply++;
+    }
+    // number of half-moves made since the start (or since setBoard)
+    public int getPly() {
+        return ply;
+    }
+    // zobrist hash of the position (pieces, side to move, castling rights, en passant file)
+    public long positionHash() {
+        long h = 0;
+        for (int r = 1; r <= 8; r++) {
+            for (int c = 1; c <= 8; c++) {
+                ChessPiece p = board.getPiece(new ChessPosition(r, c));
+                if (p != null) {
+                    h ^= Zobrist.piece(p, r, c);
+                }
+            }
+        }
+        if (getTeamTurn() == TeamColor.BLACK) {
+            h ^= Zobrist.blackToMove();
+        }
+        boolean[] rights = {
+                !whiteKingMoved && !whiteKRookMoved, !whiteKingMoved && !whiteQRookMoved,
+                !blackKingMoved && !blackKRookMoved, !blackKingMoved && !blackQRookMoved
+        };
+        for (int i = 0; i < rights.length; i++) {
+            if (rights[i]) {
+                h ^= Zobrist.castling(i);
+            }
+        }
+        if (enPassantTarget != null) {
+            h ^= Zobrist.enPassantFile(enPassantTarget.getColumn());
+        }
+        return h;
     }
     // True if checked
     public boolean isInCheck(TeamColor teamColor) {
@@ -125,6 +166,21 @@ public class ChessGame {
         }
         return !hasAnyLegalMove(teamColor);
     }
+    // independent copy, so a store can hand out games without sharing its own state
+    public ChessGame copy() {
+        ChessGame g = new ChessGame();
+        g.board = copyBoard(board);
+        g.turn = turn;
+        g.enPassantTarget = enPassantTarget;
+        g.whiteKingMoved = whiteKingMoved;
+        g.whiteQRookMoved = whiteQRookMoved;
+        g.whiteKRookMoved = whiteKRookMoved;
+        g.blackKingMoved = blackKingMoved;
+        g.blackQRookMoved = blackQRookMoved;
+        g.blackKRookMoved = blackKRookMoved;
+        g.ply = ply;
+        return g;
+    }
     // actual board
     public ChessBoard getBoard() {
         return board;
@@ -133,6 +189,7 @@ public class ChessGame {
     public void setBoard(ChessBoard board) {
         this.board = (board != null) ? board : new ChessBoard();
         enPassantTarget = null;
+        ply = 0;
         whiteKingMoved = whiteQRookMoved = whiteKRookMoved = false;
         blackKingMoved = blackQRookMoved = blackKRookMoved = false;
     }
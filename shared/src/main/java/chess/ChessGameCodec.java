@@ -0,0 +1,199 @@
+package chess;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Compact binary form of a {@link ChessGame}, used for storage instead of the Gson dump.
+ * <p>
+ * Layout (version 1):
+ * <pre>
+ *   byte    format version (1)
+ *   byte    flags: bit0 black to move, bits1-6 king/rook moved flags
+ *           (white K, Q rook, K rook, black K, Q rook, K rook), bit7 en passant square present
+ *   byte    en passant square as (row-1)*8 + (col-1), only if bit7 is set
+ *   varint  ply
+ *   8 bytes occupancy bitmap, bit i set = square i has a piece (a1 = 0, h8 = 63)
+ *   nibbles one per occupied square in bitmap order: bit3 black, bits0-2 piece type
+ * </pre>
+ * The opening position is 27 bytes. ChessGame keeps no move history, so there's none to store.
+ */
+public final class ChessGameCodec {
+
+    public static final int VERSION = 1;
+
+    // fixed codes rather than ordinal() so reordering the enum can't change stored games
+    private static final ChessPiece.PieceType[] TYPES = {
+            ChessPiece.PieceType.KING, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.PAWN
+    };
+
+    // pieces are immutable, so decode shares one instance per code instead of allocating
+    private static final ChessPiece[] PIECES = new ChessPiece[16];
+
+    static {
+        for (int i = 0; i < TYPES.length; i++) {
+            PIECES[i] = new ChessPiece(ChessGame.TeamColor.WHITE, TYPES[i]);
+            PIECES[i | 8] = new ChessPiece(ChessGame.TeamColor.BLACK, TYPES[i]);
+        }
+    }
+
+    private ChessGameCodec() {}
+
+    public static byte[] encode(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        long occupied = 0;
+        int count = 0;
+        byte[] nibbles = new byte[64];
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece p = board.getPiece(new ChessPosition(sq / 8 + 1, sq % 8 + 1));
+            if (p != null) {
+                occupied |= 1L << sq;
+                int code = typeCode(p.getPieceType());
+                if (p.getTeamColor() == ChessGame.TeamColor.BLACK) {
+                    code |= 8;
+                }
+                nibbles[count++] = (byte) code;
+            }
+        }
+
+        var out = new ByteArrayOutputStream(16 + (count + 1) / 2);
+        out.write(VERSION);
+        int flags = 0;
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            flags |= 1;
+        }
+        boolean[] moved = {game.whiteKingMoved, game.whiteQRookMoved, game.whiteKRookMoved,
+                game.blackKingMoved, game.blackQRookMoved, game.blackKRookMoved};
+        for (int i = 0; i < moved.length; i++) {
+            if (moved[i]) {
+                flags |= 1 << (i + 1);
+            }
+        }
+        ChessPosition ep = game.enPassantTarget;
+        if (ep != null) {
+            flags |= 0x80;
+        }
+        out.write(flags);
+        if (ep != null) {
+            out.write((ep.getRow() - 1) * 8 + (ep.getColumn() - 1));
+        }
+        writeVarint(out, game.getPly());
+        for (int i = 0; i < 8; i++) {
+            out.write((int) (occupied >>> (8 * i)));
+        }
+        for (int i = 0; i < count; i += 2) {
+            int hi = nibbles[i];
+            int lo = i + 1 < count ? nibbles[i + 1] : 0;
+            out.write(hi << 4 | lo);
+        }
+        return out.toByteArray();
+    }
+
+    public static ChessGame decode(byte[] data) {
+        var in = new Reader(data);
+        int version = in.next();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unknown game format version " + version);
+        }
+        int flags = in.next();
+        ChessPosition ep = null;
+        if ((flags & 0x80) != 0) {
+            int sq = in.next();
+            if (sq > 63) {
+                throw new IllegalArgumentException("bad en passant square " + sq);
+            }
+            ep = new ChessPosition(sq / 8 + 1, sq % 8 + 1);
+        }
+        int ply = in.varint();
+        long occupied = 0;
+        for (int i = 0; i < 8; i++) {
+            occupied |= (long) in.next() << (8 * i);
+        }
+
+        var board = new ChessBoard();
+        int n = 0;
+        int current = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if ((occupied & (1L << sq)) == 0) {
+                continue;
+            }
+            int code;
+            if ((n & 1) == 0) {
+                current = in.next();
+                code = current >>> 4;
+            } else {
+                code = current & 0xF;
+            }
+            n++;
+            if (PIECES[code] == null) {
+                throw new IllegalArgumentException("bad piece code " + code);
+            }
+            board.addPiece(new ChessPosition(sq / 8 + 1, sq % 8 + 1), PIECES[code]);
+        }
+        if (in.remaining() != 0) {
+            throw new IllegalArgumentException("trailing bytes in encoded game");
+        }
+
+        var game = new ChessGame(board);
+        game.turn = (flags & 1) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        game.whiteKingMoved = (flags & 2) != 0;
+        game.whiteQRookMoved = (flags & 4) != 0;
+        game.whiteKRookMoved = (flags & 8) != 0;
+        game.blackKingMoved = (flags & 16) != 0;
+        game.blackQRookMoved = (flags & 32) != 0;
+        game.blackKRookMoved = (flags & 64) != 0;
+        game.enPassantTarget = ep;
+        game.ply = ply;
+        return game;
+    }
+
+    private static int typeCode(ChessPiece.PieceType type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i] == type) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown piece type " + type);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int next() {
+            if (pos >= data.length) {
+                throw new IllegalArgumentException("encoded game is truncated");
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = next();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("bad varint");
+        }
+
+        int remaining() {
+            return data.length - pos;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package chess;
+
+import com.google.gson.Gson;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Encode/decode cost of ChessGameCodec vs the Gson JSON the database used to store.
+ * Uses a position 40 plies into a random game.
+ * <p>
+ * usage: ChessGameCodecBenchmark [iterations=200000]
+ */
+public class ChessGameCodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        var gson = new Gson();
+        ChessGame game = ChessGameCodecTest.randomGame(7, 40);
+
+        String json = gson.toJson(game);
+        byte[] bin = ChessGameCodec.encode(game);
+        System.out.printf("size: gson %d bytes, binary %d bytes%n", json.getBytes().length, bin.length);
+
+        // warm up both paths before measuring
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1;
+            run("gson encode", iterations, report, () -> gson.toJson(game));
+            run("gson decode", iterations, report, () -> gson.fromJson(json, ChessGame.class));
+            run("binary encode", iterations, report, () -> ChessGameCodec.encode(game));
+            run("binary decode", iterations, report, () -> ChessGameCodec.decode(bin));
+        }
+    }
+
+    private static Object sink;
+
+    private static void run(String name, int iterations, boolean report, java.util.function.Supplier<Object> op) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        long bytesBefore = threads.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = op.get();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(tid) - bytesBefore;
+        if (report) {
+            System.out.printf("%-14s %8.0f ns/op %8d B/op%n", name,
+                    (double) nanos / iterations, allocated / iterations);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package chess;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessGameCodecTest {
+
+    // plays random legal moves, the same way every time
+    static ChessGame randomGame(long seed, int plies) throws InvalidMoveException {
+        var game = new ChessGame();
+        var rnd = new Random(seed);
+        for (int i = 0; i < plies; i++) {
+            var moves = new ArrayList<ChessMove>();
+            for (int r = 1; r <= 8; r++) {
+                for (int c = 1; c <= 8; c++) {
+                    var pos = new ChessPosition(r, c);
+                    var p = game.getBoard().getPiece(pos);
+                    if (p != null && p.getTeamColor() == game.getTeamTurn()) {
+                        moves.addAll(game.validMoves(pos));
+                    }
+                }
+            }
+            if (moves.isEmpty()) {
+                break;
+            }
+            game.makeMove(moves.get(rnd.nextInt(moves.size())));
+        }
+        return game;
+    }
+
+    @Test
+    void roundTripPositive() throws Exception {
+        var start = new ChessGame();
+        byte[] bytes = ChessGameCodec.encode(start);
+        assertEquals(27, bytes.length);
+        assertEquals(start, ChessGameCodec.decode(bytes));
+
+        for (long seed = 1; seed <= 50; seed++) {
+            var game = randomGame(seed, 10 + (int) seed * 3);
+            var back = ChessGameCodec.decode(ChessGameCodec.encode(game));
+            assertEquals(game, back);
+            assertEquals(game.getPly(), back.getPly());
+            // covers castling rights and en passant, which equals() ignores
+            assertEquals(game.positionHash(), back.positionHash());
+            assertEquals(new Gson().toJson(game), new Gson().toJson(back));
+        }
+    }
+
+    @Test
+    void decodeNegativeCorrupt() {
+        byte[] good = ChessGameCodec.encode(new ChessGame());
+
+        byte[] badVersion = good.clone();
+        badVersion[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(badVersion));
+
+        byte[] truncated = java.util.Arrays.copyOf(good, good.length - 3);
+        assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(truncated));
+
+        byte[] trailing = java.util.Arrays.copyOf(good, good.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(trailing));
+    }
+}
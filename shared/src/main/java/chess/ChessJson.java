@@ -0,0 +1,507 @@
+package chess;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Hand-written Gson adapters for the chess model, so encoding a game never goes through reflection.
+ * <p>
+ * Two forms:
+ * <ul>
+ *   <li>standard: byte for byte what a plain {@code new Gson()} writes, i.e. the original protocol</li>
+ *   <li>compact: still JSON, but a position is {@code "e4"}, a move {@code "e7e8q"}, a piece
+ *   {@code "N"}/{@code "n"}, the board a 64-char string from a1 to h8 ({@code '.'} = empty) and
+ *   the game {@code {"board":..,"turn":"WHITE","moved":5,"ep":"e3","ply":12}}</li>
+ * </ul>
+ * "moved" has the same bits as {@link ChessGameCodec}'s flags shifted down by one (bit0 white king
+ * ... bit5 black king-side rook) and is left out when 0, as is "ep" when there's no en passant square.
+ * Readers accept either form, so the same Gson parses whatever a client sends.
+ */
+public final class ChessJson {
+
+    private static final String PIECE_CHARS = "KQBNRP";
+    private static final ChessPiece.PieceType[] TYPES = {
+            ChessPiece.PieceType.KING, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.PAWN
+    };
+    // pieces are immutable, so reads share one instance per piece, indexed by char - 'A'
+    private static final ChessPiece[] PIECES = new ChessPiece['z' - 'A' + 1];
+
+    static {
+        for (int i = 0; i < TYPES.length; i++) {
+            char c = PIECE_CHARS.charAt(i);
+            PIECES[c - 'A'] = new ChessPiece(ChessGame.TeamColor.WHITE, TYPES[i]);
+            PIECES[Character.toLowerCase(c) - 'A'] = new ChessPiece(ChessGame.TeamColor.BLACK, TYPES[i]);
+        }
+    }
+
+    private static final Adapters STANDARD = new Adapters(false);
+    private static final Adapters COMPACT = new Adapters(true);
+
+    private ChessJson() {}
+
+    public static GsonBuilder register(GsonBuilder builder, boolean compact) {
+        Adapters a = compact ? COMPACT : STANDARD;
+        return builder
+                .registerTypeAdapter(ChessPosition.class, a.position)
+                .registerTypeAdapter(ChessMove.class, a.move)
+                .registerTypeAdapter(ChessPiece.class, a.piece)
+                .registerTypeAdapter(ChessBoard.class, a.board)
+                .registerTypeAdapter(ChessGame.class, a.game);
+    }
+
+    public static TypeAdapter<ChessGame> gameAdapter(boolean compact) {
+        return (compact ? COMPACT : STANDARD).game;
+    }
+
+    public static TypeAdapter<ChessMove> moveAdapter(boolean compact) {
+        return (compact ? COMPACT : STANDARD).move;
+    }
+
+    private static final class Adapters {
+        final PositionAdapter position;
+        final MoveAdapter move;
+        final PieceAdapter piece;
+        final BoardAdapter board;
+        final GameAdapter game;
+
+        Adapters(boolean compact) {
+            position = new PositionAdapter(compact);
+            move = new MoveAdapter(compact, position);
+            piece = new PieceAdapter(compact);
+            board = new BoardAdapter(compact, piece);
+            game = new GameAdapter(compact, board, position);
+        }
+    }
+
+    static boolean onBoard(ChessPosition p) {
+        return p != null && p.getRow() >= 1 && p.getRow() <= 8 && p.getColumn() >= 1 && p.getColumn() <= 8;
+    }
+
+    static String square(ChessPosition p) {
+        return new String(new char[]{(char) ('a' + p.getColumn() - 1), (char) ('0' + p.getRow())});
+    }
+
+    static ChessPosition parseSquare(String s, int at) {
+        int col = s.charAt(at) - 'a' + 1;
+        int row = s.charAt(at + 1) - '0';
+        if (col < 1 || col > 8 || row < 1 || row > 8) {
+            throw new JsonParseException("bad square: " + s);
+        }
+        return new ChessPosition(row, col);
+    }
+
+    static char pieceChar(ChessPiece p) {
+        char c = PIECE_CHARS.charAt(typeIndex(p.getPieceType()));
+        return p.getTeamColor() == ChessGame.TeamColor.BLACK ? Character.toLowerCase(c) : c;
+    }
+
+    static ChessPiece pieceOf(char c) {
+        int i = c - 'A';
+        if (i < 0 || i >= PIECES.length || PIECES[i] == null) {
+            throw new JsonParseException("bad piece: " + c);
+        }
+        return PIECES[i];
+    }
+
+    private static int typeIndex(ChessPiece.PieceType type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i] == type) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown piece type " + type);
+    }
+
+    private static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> type) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = in.nextString();
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            // plain Gson reads an unknown constant as null too
+            return null;
+        }
+    }
+
+    private static void writeEnum(JsonWriter out, Enum<?> value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.name());
+        }
+    }
+
+    private static final class PositionAdapter extends TypeAdapter<ChessPosition> {
+        private final boolean compact;
+
+        PositionAdapter(boolean compact) {
+            this.compact = compact;
+        }
+
+        @Override
+        public void write(JsonWriter out, ChessPosition p) throws IOException {
+            if (p == null) {
+                out.nullValue();
+            } else if (compact && onBoard(p)) {
+                out.value(square(p));
+            } else {
+                // off-board positions can't be written as a square, so they keep the long form
+                out.beginObject();
+                out.name("row").value(p.getRow());
+                out.name("column").value(p.getColumn());
+                out.endObject();
+            }
+        }
+
+        @Override
+        public ChessPosition read(JsonReader in) throws IOException {
+            switch (in.peek()) {
+                case NULL -> {
+                    in.nextNull();
+                    return null;
+                }
+                case STRING -> {
+                    String s = in.nextString();
+                    if (s.length() != 2) {
+                        throw new JsonParseException("bad square: " + s);
+                    }
+                    return parseSquare(s, 0);
+                }
+                default -> {
+                    int row = 0;
+                    int col = 0;
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "row" -> row = in.nextInt();
+                            case "column" -> col = in.nextInt();
+                            default -> in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    return new ChessPosition(row, col);
+                }
+            }
+        }
+    }
+
+    private static final class MoveAdapter extends TypeAdapter<ChessMove> {
+        private final boolean compact;
+        private final PositionAdapter position;
+
+        MoveAdapter(boolean compact, PositionAdapter position) {
+            this.compact = compact;
+            this.position = position;
+        }
+
+        @Override
+        public void write(JsonWriter out, ChessMove m) throws IOException {
+            if (m == null) {
+                out.nullValue();
+                return;
+            }
+            if (compact && onBoard(m.getStartPosition()) && onBoard(m.getEndPosition())) {
+                String s = square(m.getStartPosition()) + square(m.getEndPosition());
+                if (m.getPromotionPiece() != null) {
+                    s += Character.toLowerCase(PIECE_CHARS.charAt(typeIndex(m.getPromotionPiece())));
+                }
+                out.value(s);
+                return;
+            }
+            out.beginObject();
+            out.name("startPosition");
+            position.write(out, m.getStartPosition());
+            out.name("endPosition");
+            position.write(out, m.getEndPosition());
+            out.name("promotionPiece");
+            writeEnum(out, m.getPromotionPiece());
+            out.endObject();
+        }
+
+        @Override
+        public ChessMove read(JsonReader in) throws IOException {
+            switch (in.peek()) {
+                case NULL -> {
+                    in.nextNull();
+                    return null;
+                }
+                case STRING -> {
+                    String s = in.nextString();
+                    if (s.length() != 4 && s.length() != 5) {
+                        throw new JsonParseException("bad move: " + s);
+                    }
+                    ChessPiece.PieceType promo = null;
+                    if (s.length() == 5) {
+                        promo = pieceOf(Character.toUpperCase(s.charAt(4))).getPieceType();
+                    }
+                    return new ChessMove(parseSquare(s, 0), parseSquare(s, 2), promo);
+                }
+                default -> {
+                    ChessPosition start = null;
+                    ChessPosition end = null;
+                    ChessPiece.PieceType promo = null;
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "startPosition" -> start = position.read(in);
+                            case "endPosition" -> end = position.read(in);
+                            case "promotionPiece" -> promo = readEnum(in, ChessPiece.PieceType.class);
+                            default -> in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    return new ChessMove(start, end, promo);
+                }
+            }
+        }
+    }
+
+    private static final class PieceAdapter extends TypeAdapter<ChessPiece> {
+        private final boolean compact;
+
+        PieceAdapter(boolean compact) {
+            this.compact = compact;
+        }
+
+        @Override
+        public void write(JsonWriter out, ChessPiece p) throws IOException {
+            if (p == null) {
+                out.nullValue();
+            } else if (compact) {
+                out.value(String.valueOf(pieceChar(p)));
+            } else {
+                out.beginObject();
+                out.name("pieceColor");
+                writeEnum(out, p.getTeamColor());
+                out.name("type");
+                writeEnum(out, p.getPieceType());
+                out.endObject();
+            }
+        }
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            switch (in.peek()) {
+                case NULL -> {
+                    in.nextNull();
+                    return null;
+                }
+                case STRING -> {
+                    String s = in.nextString();
+                    if (s.length() != 1) {
+                        throw new JsonParseException("bad piece: " + s);
+                    }
+                    return pieceOf(s.charAt(0));
+                }
+                default -> {
+                    ChessGame.TeamColor color = null;
+                    ChessPiece.PieceType type = null;
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "pieceColor" -> color = readEnum(in, ChessGame.TeamColor.class);
+                            case "type" -> type = readEnum(in, ChessPiece.PieceType.class);
+                            default -> in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    return new ChessPiece(color, type);
+                }
+            }
+        }
+    }
+
+    private static final class BoardAdapter extends TypeAdapter<ChessBoard> {
+        private final boolean compact;
+        private final PieceAdapter piece;
+
+        BoardAdapter(boolean compact, PieceAdapter piece) {
+            this.compact = compact;
+            this.piece = piece;
+        }
+
+        @Override
+        public void write(JsonWriter out, ChessBoard board) throws IOException {
+            if (board == null) {
+                out.nullValue();
+                return;
+            }
+            if (compact) {
+                char[] squares = new char[64];
+                for (int sq = 0; sq < 64; sq++) {
+                    ChessPiece p = board.getPiece(new ChessPosition(sq / 8 + 1, sq % 8 + 1));
+                    squares[sq] = (p == null) ? '.' : pieceChar(p);
+                }
+                out.value(new String(squares));
+                return;
+            }
+            // same shape as the reflective dump of ChessBoard's ChessPiece[8][8]
+            out.beginObject();
+            out.name("board");
+            out.beginArray();
+            for (int r = 1; r <= 8; r++) {
+                out.beginArray();
+                for (int c = 1; c <= 8; c++) {
+                    piece.write(out, board.getPiece(new ChessPosition(r, c)));
+                }
+                out.endArray();
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public ChessBoard read(JsonReader in) throws IOException {
+            switch (in.peek()) {
+                case NULL -> {
+                    in.nextNull();
+                    return null;
+                }
+                case STRING -> {
+                    String s = in.nextString();
+                    if (s.length() != 64) {
+                        throw new JsonParseException("board needs 64 squares, got " + s.length());
+                    }
+                    var board = new ChessBoard();
+                    for (int sq = 0; sq < 64; sq++) {
+                        char c = s.charAt(sq);
+                        if (c != '.') {
+                            board.addPiece(new ChessPosition(sq / 8 + 1, sq % 8 + 1), pieceOf(c));
+                        }
+                    }
+                    return board;
+                }
+                default -> {
+                    var board = new ChessBoard();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (!in.nextName().equals("board") || in.peek() == JsonToken.NULL) {
+                            in.skipValue();
+                            continue;
+                        }
+                        in.beginArray();
+                        for (int r = 1; in.hasNext(); r++) {
+                            in.beginArray();
+                            for (int c = 1; in.hasNext(); c++) {
+                                ChessPiece p = piece.read(in);
+                                if (p != null) {
+                                    board.addPiece(new ChessPosition(r, c), p);
+                                }
+                            }
+                            in.endArray();
+                        }
+                        in.endArray();
+                    }
+                    in.endObject();
+                    return board;
+                }
+            }
+        }
+    }
+
+    private static final class GameAdapter extends TypeAdapter<ChessGame> {
+        private final boolean compact;
+        private final BoardAdapter board;
+        private final PositionAdapter position;
+
+        GameAdapter(boolean compact, BoardAdapter board, PositionAdapter position) {
+            this.compact = compact;
+            this.board = board;
+            this.position = position;
+        }
+
+        @Override
+        public void write(JsonWriter out, ChessGame g) throws IOException {
+            if (g == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("board");
+            board.write(out, g.board);
+            out.name("turn");
+            writeEnum(out, g.turn);
+            if (compact) {
+                int moved = movedBits(g);
+                if (moved != 0) {
+                    out.name("moved").value(moved);
+                }
+                if (g.enPassantTarget != null) {
+                    out.name("ep");
+                    position.write(out, g.enPassantTarget);
+                }
+            } else {
+                // field order matches the declarations in ChessGame, which is what reflection used
+                out.name("enPassantTarget");
+                position.write(out, g.enPassantTarget);
+                out.name("whiteKingMoved").value(g.whiteKingMoved);
+                out.name("whiteQRookMoved").value(g.whiteQRookMoved);
+                out.name("whiteKRookMoved").value(g.whiteKRookMoved);
+                out.name("blackKingMoved").value(g.blackKingMoved);
+                out.name("blackQRookMoved").value(g.blackQRookMoved);
+                out.name("blackKRookMoved").value(g.blackKRookMoved);
+            }
+            out.name("ply").value(g.ply);
+            out.endObject();
+        }
+
+        @Override
+        public ChessGame read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            var g = new ChessGame(null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "board" -> g.board = board.read(in);
+                    case "turn" -> g.turn = readEnum(in, ChessGame.TeamColor.class);
+                    case "ep", "enPassantTarget" -> g.enPassantTarget = position.read(in);
+                    case "moved" -> setMovedBits(g, in.nextInt());
+                    case "whiteKingMoved" -> g.whiteKingMoved = in.nextBoolean();
+                    case "whiteQRookMoved" -> g.whiteQRookMoved = in.nextBoolean();
+                    case "whiteKRookMoved" -> g.whiteKRookMoved = in.nextBoolean();
+                    case "blackKingMoved" -> g.blackKingMoved = in.nextBoolean();
+                    case "blackQRookMoved" -> g.blackQRookMoved = in.nextBoolean();
+                    case "blackKRookMoved" -> g.blackKRookMoved = in.nextBoolean();
+                    case "ply" -> g.ply = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return g;
+        }
+
+        private static int movedBits(ChessGame g) {
+            boolean[] moved = {g.whiteKingMoved, g.whiteQRookMoved, g.whiteKRookMoved,
+                    g.blackKingMoved, g.blackQRookMoved, g.blackKRookMoved};
+            int bits = 0;
+            for (int i = 0; i < moved.length; i++) {
+                if (moved[i]) {
+                    bits |= 1 << i;
+                }
+            }
+            return bits;
+        }
+
+        private static void setMovedBits(ChessGame g, int bits) {
+            g.whiteKingMoved = (bits & 1) != 0;
+            g.whiteQRookMoved = (bits & 2) != 0;
+            g.whiteKRookMoved = (bits & 4) != 0;
+            g.blackKingMoved = (bits & 8) != 0;
+            g.blackQRookMoved = (bits & 16) != 0;
+            g.blackKRookMoved = (bits & 32) != 0;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package chess;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.*;
+import websocket.WireFormat;
+import websocket.messages.*;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessJsonTest {
+
+    private static final Gson REFLECTIVE = new Gson();
+
+    @Test
+    void standardPositiveMatchesReflection() throws Exception {
+        var gson = WireFormat.STANDARD.gson();
+        var promo = new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN);
+        ServerMessage[] msgs = {
+                new LoadGameMessage(new ChessGame()),
+                new MoveMessage(promo, 12, -42L),
+                new MoveMessage(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null), 1, 7L),
+                new NotificationMessage("alice moved"),
+                new NotificationMessage(null),
+                new ErrorMessage("Error: not your turn"),
+        };
+        for (var msg : msgs) {
+            assertEquals(REFLECTIVE.toJson(msg), gson.toJson(msg));
+        }
+        for (long seed = 1; seed <= 30; seed++) {
+            var game = ChessGameCodecTest.randomGame(seed, 5 + (int) seed * 4);
+            assertEquals(REFLECTIVE.toJson(game), gson.toJson(game));
+            assertEquals(REFLECTIVE.toJson(new LoadGameMessage(game)), gson.toJson(new LoadGameMessage(game)));
+        }
+    }
+
+    @Test
+    void compactPositiveRoundTrip() throws Exception {
+        var compact = WireFormat.COMPACT.gson();
+        var start = new ChessGame();
+        String json = compact.toJson(start);
+        assertEquals("{\"board\":\"RNBQKBNRPPPPPPPP................................pppppppprnbqkbnr\","
+                + "\"turn\":\"WHITE\",\"ply\":0}", json);
+
+        for (long seed = 1; seed <= 30; seed++) {
+            var game = ChessGameCodecTest.randomGame(seed, 5 + (int) seed * 4);
+            String small = compact.toJson(new LoadGameMessage(game));
+            String full = REFLECTIVE.toJson(new LoadGameMessage(game));
+            assertTrue(small.length() * 5 < full.length(), small);
+
+            // either form reads back to the same game, castling rights and en passant included
+            for (String text : new String[]{small, full}) {
+                var back = compact.fromJson(text, ServerMessage.class);
+                var loaded = assertInstanceOf(LoadGameMessage.class, back).getGame();
+                assertEquals(game, loaded);
+                assertEquals(game.getPly(), loaded.getPly());
+                assertEquals(game.positionHash(), loaded.positionHash());
+            }
+        }
+
+        var promo = new MoveMessage(
+                new ChessMove(new ChessPosition(2, 3), new ChessPosition(1, 2), ChessPiece.PieceType.KNIGHT), 40, 99L);
+        String text = compact.toJson(promo);
+        assertEquals("{\"move\":\"c2b1n\",\"ply\":40,\"positionHash\":\"0000000000000063\","
+                + "\"serverMessageType\":\"MOVE\"}", text);
+        var back = compact.fromJson(text, MoveMessage.class);
+        assertEquals(promo.getMove(), back.getMove());
+        assertEquals(99L, back.getPositionHash());
+
+        // a full 64-bit hash survives a reader that keeps numbers as doubles
+        long hash = 0x9e3779b97f4a7c15L;
+        for (var gson : new Gson[]{compact, WireFormat.STANDARD.gson()}) {
+            String wide = gson.toJson(new MoveMessage(promo.getMove(), 41, hash));
+            assertTrue(wide.contains("\"positionHash\":\"9e3779b97f4a7c15\""), wide);
+            var tree = REFLECTIVE.fromJson(wide, Map.class);
+            assertEquals("9e3779b97f4a7c15", tree.get("positionHash"));
+            assertEquals(hash, gson.fromJson(wide, MoveMessage.class).getPositionHash());
+        }
+        // and a standard client's move, as sent in MAKE_MOVE, still parses
+        assertEquals(promo.getMove(), compact.fromJson(REFLECTIVE.toJson(promo.getMove()), ChessMove.class));
+    }
+
+    @Test
+    void compactNegativeCorrupt() {
+        var compact = WireFormat.COMPACT.gson();
+        assertThrows(JsonParseException.class, () -> compact.fromJson("{\"board\":\"RNBQ\"}", ChessGame.class));
+        assertThrows(JsonParseException.class, () -> compact.fromJson("\"e2e9\"", ChessMove.class));
+        assertThrows(JsonParseException.class, () -> compact.fromJson("\"x\"", ChessPiece.class));
+        assertThrows(JsonParseException.class, () -> compact.fromJson("\"e7e8z\"", ChessMove.class));
+
+        assertThrows(JsonParseException.class, () -> compact.fromJson(
+                "{\"move\":\"c2b1n\",\"ply\":1,\"positionHash\":\"zz\",\"serverMessageType\":\"MOVE\"}",
+                ServerMessage.class));
+
+        // off-board positions can't be squares, so they fall back to the long form
+        var odd = new ChessPosition(0, 9);
+        String json = compact.toJson(odd);
+        assertEquals("{\"row\":0,\"column\":9}", json);
+        assertEquals(odd, compact.fromJson(json, ChessPosition.class));
+    }
+}
@@ -0,0 +1,55 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for hashing a position. The seed is fixed so the client and server
+ * (both built from this module) always agree on the hash of the same position.
+ */
+final class Zobrist {
+    private static final long SEED = 0x240C4E55L;
+
+    // [color][type][square]
+    private static final long[][][] PIECES = new long[2][6][64];
+    private static final long BLACK_TO_MOVE;
+    private static final long[] CASTLING = new long[4];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+
+    static {
+        var rng = new SplittableRandom(SEED);
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < 6; type++) {
+                for (int sq = 0; sq < 64; sq++) {
+                    PIECES[color][type][sq] = rng.nextLong();
+                }
+            }
+        }
+        BLACK_TO_MOVE = rng.nextLong();
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = rng.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = rng.nextLong();
+        }
+    }
+
+    private Zobrist() {}
+
+    static long piece(ChessPiece p, int row, int col) {
+        int color = p.getTeamColor() == ChessGame.TeamColor.WHITE ? 0 : 1;
+        return PIECES[color][p.getPieceType().ordinal()][(row - 1) * 8 + (col - 1)];
+    }
+
+    static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+
+    // 0 = white king side, 1 = white queen side, 2 = black king side, 3 = black queen side
+    static long castling(int right) {
+        return CASTLING[right];
+    }
+
+    static long enPassantFile(int col) {
+        return EN_PASSANT_FILE[col - 1];
+    }
+}
@@ -0,0 +1,77 @@
+package model;
+
+import chess.ChessGame;
+
+/**
+ * A timed game's clocks: base time plus an increment added after each move (Fischer).
+ * Only the side to move has a running clock, from {@code turnStartedAt} on; times are epoch
+ * millis, so any node can tell how much a player has left without asking another.
+ *
+ * @param turnStartedAt when the side to move started thinking; 0 until White's first move,
+ *                      so nobody's time runs while the players are still sitting down
+ */
+public record GameClock(long baseMillis, long incrementMillis, long whiteMillis, long blackMillis,
+                        long turnStartedAt) {
+
+    static final long MAX_BASE_MILLIS = 180 * 60_000L;
+    static final long MAX_INCREMENT_MILLIS = 180 * 1000L;
+
+    public static GameClock of(long baseMillis, long incrementMillis) {
+        if (baseMillis <= 0 || baseMillis > MAX_BASE_MILLIS
+                || incrementMillis < 0 || incrementMillis > MAX_INCREMENT_MILLIS) {
+            throw new IllegalArgumentException("bad time control");
+        }
+        return new GameClock(baseMillis, incrementMillis, baseMillis, baseMillis, 0);
+    }
+
+    /**
+     * "5+3" is five minutes each plus three seconds a move; "10" is ten minutes, no increment.
+     * null or blank means an untimed game and returns null.
+     */
+    public static GameClock parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return null;
+        }
+        String[] parts = spec.trim().split("\\+", -1);
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("bad time control");
+        }
+        try {
+            long minutes = Long.parseLong(parts[0].trim());
+            long seconds = parts.length == 2 ? Long.parseLong(parts[1].trim()) : 0;
+            if (minutes > MAX_BASE_MILLIS / 60_000L || seconds > MAX_INCREMENT_MILLIS / 1000L) {
+                throw new IllegalArgumentException("bad time control");
+            }
+            return of(minutes * 60_000L, seconds * 1000L);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad time control");
+        }
+    }
+
+    public String spec() {
+        return baseMillis / 60_000L + "+" + incrementMillis / 1000L;
+    }
+
+    public boolean running() {
+        return turnStartedAt > 0;
+    }
+
+    /**
+     * Time side has left at now; negative once its flag has fallen.
+     */
+    public long remaining(ChessGame.TeamColor side, ChessGame.TeamColor toMove, long now) {
+        long left = side == ChessGame.TeamColor.WHITE ? whiteMillis : blackMillis;
+        if (running() && side == toMove) {
+            left -= Math.max(0, now - turnStartedAt);
+        }
+        return left;
+    }
+
+    // mover's thinking time comes off, the increment goes on, and the other clock starts
+    public GameClock afterMove(ChessGame.TeamColor mover, long now) {
+        long left = remaining(mover, mover, now) + incrementMillis;
+        return mover == ChessGame.TeamColor.WHITE
+                ? new GameClock(baseMillis, incrementMillis, left, blackMillis, now)
+                : new GameClock(baseMillis, incrementMillis, whiteMillis, left, now);
+    }
+}
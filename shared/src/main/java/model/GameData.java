@@ -2,11 +2,61 @@ package model;
 
 import chess.ChessGame;
 
+/**
+ * @param version bumped by every successful update; updates only apply if it still matches
+ *                what was read (optimistic concurrency)
+ * @param status  OPEN / ACTIVE / FINISHED; the shorter constructors work it out from the seats
+ * @param clock   null for an untimed game
+ */
 public record GameData(
         int gameID,
         String whiteUsername,
         String blackUsername,
         String gameName,
-        ChessGame game
+        ChessGame game,
+        int version,
+        GameStatus status,
+        GameClock clock
 ) {
+    public GameData {
+        if (status == null) {
+            status = GameStatus.forSeats(whiteUsername, blackUsername);
+        }
+    }
+
+    public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, 0);
+    }
+
+    public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game,
+                    int version) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, version, null);
+    }
+
+    public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game,
+                    int version, GameStatus status) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, version, status, null);
+    }
+
+    public GameData withVersion(int newVersion) {
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, game, newVersion, status, clock);
+    }
+
+    public GameData withGame(ChessGame newGame) {
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, newGame, version, status, clock);
+    }
+
+    public GameData withStatus(GameStatus newStatus) {
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, game, version, newStatus, clock);
+    }
+
+    // frees or fills seats; an unfinished game goes OPEN/ACTIVE to match
+    public GameData withSeats(String white, String black) {
+        return new GameData(gameID, white, black, gameName, game, version, status.afterSeats(white, black),
+                clock);
+    }
+
+    public GameData withClock(GameClock newClock) {
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, game, version, status, newClock);
+    }
 }
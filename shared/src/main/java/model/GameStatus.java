@@ -0,0 +1,47 @@
+package model;
+
+/**
+ * Where a game is in its life, stored with the game row.
+ * OPEN and ACTIVE just follow the seats (one free / both taken). FINISHED is final and
+ * says who won and why; nothing moves a game out of it.
+ *
+ * @param result null unless finished
+ * @param reason null unless finished
+ */
+public record GameStatus(Phase phase, Result result, Reason reason) {
+
+    public enum Phase { OPEN, ACTIVE, FINISHED }
+
+    public enum Result { WHITE_WON, BLACK_WON, DRAW }
+
+    public enum Reason { CHECKMATE, STALEMATE, RESIGNATION, TIMEOUT }
+
+    public static final GameStatus OPEN = new GameStatus(Phase.OPEN, null, null);
+    public static final GameStatus ACTIVE = new GameStatus(Phase.ACTIVE, null, null);
+
+    public static GameStatus finished(Result result, Reason reason) {
+        return new GameStatus(Phase.FINISHED, result, reason);
+    }
+
+    public static GameStatus forSeats(String whiteUsername, String blackUsername) {
+        return (whiteUsername == null || blackUsername == null) ? OPEN : ACTIVE;
+    }
+
+    // for rows read back from storage, where result and reason are null unless finished
+    public static GameStatus of(Phase phase, Result result, Reason reason) {
+        return switch (phase == null ? Phase.OPEN : phase) {
+            case OPEN -> OPEN;
+            case ACTIVE -> ACTIVE;
+            case FINISHED -> finished(result, reason);
+        };
+    }
+
+    public boolean isFinished() {
+        return phase == Phase.FINISHED;
+    }
+
+    // status once the seats are as given; a finished game stays finished
+    public GameStatus afterSeats(String whiteUsername, String blackUsername) {
+        return isFinished() ? this : forSeats(whiteUsername, blackUsername);
+    }
+}
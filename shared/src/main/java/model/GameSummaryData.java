@@ -0,0 +1,19 @@
+package model;
+
+/**
+ * The lobby view of a game row: everything except the board itself.
+ *
+ * @param version the row's version, so two views of one game can be put in order
+ */
+public record GameSummaryData(
+        int gameID,
+        String whiteUsername,
+        String blackUsername,
+        String gameName,
+        GameStatus status,
+        int version
+) {
+    public GameSummaryData(int gameID, String whiteUsername, String blackUsername, String gameName) {
+        this(gameID, whiteUsername, blackUsername, gameName, GameStatus.forSeats(whiteUsername, blackUsername), 0);
+    }
+}
@@ -0,0 +1,33 @@
+package websocket;
+
+import chess.ChessJson;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import websocket.commands.UserGameCommand;
+import websocket.commands.UserGameCommandAdapter;
+import websocket.messages.ServerMessage;
+import websocket.messages.ServerMessageAdapter;
+
+/**
+ * How the chess model, commands and server messages are written as JSON. Each form has one
+ * shared Gson (Gson is thread-safe and caches its adapters, so there's no reason to build more).
+ * STANDARD is the original protocol and is what a client gets unless it connects with
+ * {@code ?features=compact}. Both read either form.
+ */
+public enum WireFormat {
+    STANDARD(false),
+    COMPACT(true);
+
+    private final Gson gson;
+
+    WireFormat(boolean compact) {
+        var builder = ChessJson.register(new GsonBuilder(), compact)
+                .registerTypeHierarchyAdapter(UserGameCommand.class, new UserGameCommandAdapter(compact))
+                .registerTypeHierarchyAdapter(ServerMessage.class, new ServerMessageAdapter(compact));
+        this.gson = builder.create();
+    }
+
+    public Gson gson() {
+        return gson;
+    }
+}
@@ -56,6 +56,8 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        // ask for a full LOAD_GAME again (delta clients send this when their hash stops matching)
+        SYNC
     }
 }
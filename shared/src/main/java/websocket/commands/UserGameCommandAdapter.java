@@ -0,0 +1,101 @@
+package websocket.commands;
+
+import chess.ChessJson;
+import chess.ChessMove;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Streams {@link UserGameCommand} and {@link MakeMoveCommand} by hand, in one pass: reading picks
+ * the subclass from commandType, so a move is never parsed twice. Writes the same keys in the
+ * same order reflection did (subclass fields first).
+ * A frame with no known commandType, or a MAKE_MOVE without a gameID, is rejected.
+ */
+public class UserGameCommandAdapter extends TypeAdapter<UserGameCommand> {
+
+    private final TypeAdapter<ChessMove> move;
+
+    public UserGameCommandAdapter(boolean compact) {
+        this.move = ChessJson.moveAdapter(compact);
+    }
+
+    @Override
+    public void write(JsonWriter out, UserGameCommand cmd) throws IOException {
+        if (cmd == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (cmd instanceof MakeMoveCommand mm) {
+            out.name("move");
+            move.write(out, mm.getMove());
+        }
+        out.name("commandType");
+        if (cmd.getCommandType() == null) {
+            out.nullValue();
+        } else {
+            out.value(cmd.getCommandType().name());
+        }
+        out.name("authToken").value(cmd.getAuthToken());
+        out.name("gameID").value(cmd.getGameID());
+        out.endObject();
+    }
+
+    @Override
+    public UserGameCommand read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        UserGameCommand.CommandType type = null;
+        String token = null;
+        Integer gameID = null;
+        ChessMove m = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "commandType" -> type = readType(in);
+                case "authToken" -> token = nullOr(in) ? null : in.nextString();
+                case "gameID" -> gameID = nullOr(in) ? null : in.nextInt();
+                case "move" -> m = move.read(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (type == null) {
+            throw new JsonParseException("missing or unknown commandType");
+        }
+        if (type == UserGameCommand.CommandType.MAKE_MOVE) {
+            if (gameID == null) {
+                throw new JsonParseException("MAKE_MOVE needs a gameID");
+            }
+            return new MakeMoveCommand(token, gameID, m);
+        }
+        return new UserGameCommand(type, token, gameID);
+    }
+
+    private static UserGameCommand.CommandType readType(JsonReader in) throws IOException {
+        if (nullOr(in)) {
+            return null;
+        }
+        try {
+            return UserGameCommand.CommandType.valueOf(in.nextString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // consumes a JSON null and returns true, otherwise leaves the value for the caller
+    private static boolean nullOr(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+}
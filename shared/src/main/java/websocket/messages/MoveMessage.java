@@ -0,0 +1,56 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+
+import java.util.HexFormat;
+
+/**
+ * Sent instead of LOAD_GAME to sessions that connected with {@code ?features=delta}.
+ * Carries only the move plus the ply and position hash the game should have after it,
+ * so the client can apply it to its own copy and check it didn't drift. The hash goes out as
+ * 16 hex digits, since a 64-bit JSON number loses its low bits in JavaScript or any double.
+ */
+public class MoveMessage extends ServerMessage {
+
+    private final ChessMove move;
+    private final int ply;
+    private final String positionHash;
+
+    public MoveMessage(ChessMove move, int ply, long positionHash) {
+        super(ServerMessageType.MOVE);
+        this.move = move;
+        this.ply = ply;
+        this.positionHash = HexFormat.of().toHexDigits(positionHash);
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    public long getPositionHash() {
+        return HexFormat.fromHexDigitsToLong(positionHash);
+    }
+
+    /**
+     * Plays the move on the client's copy of the game.
+     *
+     * @return false if the local game is out of step with the server; the client should send SYNC
+     */
+    public boolean applyTo(ChessGame local) {
+        if (local == null || local.getPly() + 1 != ply) {
+            return false;
+        }
+        try {
+            local.makeMove(move);
+        } catch (InvalidMoveException e) {
+            return false;
+        }
+        return local.positionHash() == getPositionHash();
+    }
+}
@@ -0,0 +1,84 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.*;
+import websocket.WireFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveMessageTest {
+
+    // both sides castle, white takes en passant, and both sides promote by capturing a rook
+    private static final String[] GAME = {
+            "e2e4", "a7a6",
+            "e4e5", "d7d5",
+            "e5d6", "c7d6",
+            "g1f3", "b8c6",
+            "f1e2", "c8g4",
+            "e1g1", "d8d7",
+            "d2d3", "e8c8",
+            "h2h4", "a6a5",
+            "h4h5", "a5a4",
+            "h5h6", "a4a3",
+            "h6g7", "a3b2",
+            "g7h8q", "b2a1q",
+    };
+
+    private static ChessMove move(String m) {
+        var promotion = m.length() > 4 ? ChessPiece.PieceType.QUEEN : null;
+        return new ChessMove(new ChessPosition(m.charAt(1) - '0', m.charAt(0) - 'a' + 1),
+                new ChessPosition(m.charAt(3) - '0', m.charAt(2) - 'a' + 1), promotion);
+    }
+
+    private static ChessPiece at(ChessGame game, String square) {
+        return game.getBoard().getPiece(new ChessPosition(square.charAt(1) - '0', square.charAt(0) - 'a' + 1));
+    }
+
+    @Test
+    void replayPositiveWholeGameStaysInStep() throws Exception {
+        for (var format : WireFormat.values()) {
+            var gson = format.gson();
+            var server = new ChessGame();
+            // the client starts from the board it got on connect
+            var load = gson.fromJson(gson.toJson(new LoadGameMessage(server)), ServerMessage.class);
+            var local = assertInstanceOf(LoadGameMessage.class, load).getGame();
+
+            for (String m : GAME) {
+                server.makeMove(move(m));
+                String json = gson.toJson(new MoveMessage(move(m), server.getPly(), server.positionHash()));
+                var msg = assertInstanceOf(MoveMessage.class, gson.fromJson(json, ServerMessage.class));
+                assertTrue(msg.applyTo(local), format + " " + m);
+                assertEquals(server.getPly(), local.getPly(), format + " " + m);
+                assertEquals(server.positionHash(), local.positionHash(), format + " " + m);
+            }
+
+            // the special moves really happened on the client's copy
+            assertEquals(ChessPiece.PieceType.ROOK, at(local, "f1").getPieceType());
+            assertEquals(ChessPiece.PieceType.ROOK, at(local, "d8").getPieceType());
+            assertNull(at(local, "d5"), "en passant left the pawn behind");
+            assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN), at(local, "h8"));
+            assertEquals(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN), at(local, "a1"));
+            assertEquals(server, local);
+        }
+    }
+
+    @Test
+    void replayNegativeMissedOrWrongMoveIsCaught() throws Exception {
+        var server = new ChessGame();
+        var local = new ChessGame();
+        server.makeMove(move(GAME[0]));
+        var first = new MoveMessage(move(GAME[0]), server.getPly(), server.positionHash());
+        server.makeMove(move(GAME[1]));
+        var second = new MoveMessage(move(GAME[1]), server.getPly(), server.positionHash());
+
+        // skipped the first: out of step, so the client asks for the board
+        assertFalse(second.applyTo(local));
+        assertEquals(0, local.getPly());
+        assertTrue(first.applyTo(local));
+        // a position that doesn't match the hash means the copies drifted
+        assertFalse(new MoveMessage(move(GAME[1]), 2, server.positionHash() + 1).applyTo(local));
+    }
+}
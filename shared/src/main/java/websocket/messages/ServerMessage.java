@@ -38,6 +38,8 @@ public class ServerMessage {
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        // just the move, for clients that asked for delta updates
+        MOVE
     }
 }
@@ -0,0 +1,131 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessJson;
+import chess.ChessMove;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.HexFormat;
+
+/**
+ * Streams every {@link ServerMessage} subclass by hand. Keys are the field names reflection used,
+ * in the same order (subclass fields first, then serverMessageType); the compact form only changes
+ * how the game and move inside are written, see {@link ChessJson}.
+ * Reading returns the subclass named by serverMessageType.
+ */
+public class ServerMessageAdapter extends TypeAdapter<ServerMessage> {
+
+    private final TypeAdapter<ChessGame> game;
+    private final TypeAdapter<ChessMove> move;
+
+    public ServerMessageAdapter(boolean compact) {
+        this.game = ChessJson.gameAdapter(compact);
+        this.move = ChessJson.moveAdapter(compact);
+    }
+
+    @Override
+    public void write(JsonWriter out, ServerMessage msg) throws IOException {
+        if (msg == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (msg instanceof LoadGameMessage m) {
+            out.name("game");
+            game.write(out, m.getGame());
+        } else if (msg instanceof MoveMessage m) {
+            out.name("move");
+            move.write(out, m.getMove());
+            out.name("ply").value(m.getPly());
+            out.name("positionHash").value(HexFormat.of().toHexDigits(m.getPositionHash()));
+        } else if (msg instanceof NotificationMessage m) {
+            out.name("message").value(m.getMessage());
+        } else if (msg instanceof ErrorMessage m) {
+            out.name("errorMessage").value(m.getErrorMessage());
+        }
+        out.name("serverMessageType");
+        if (msg.getServerMessageType() == null) {
+            out.nullValue();
+        } else {
+            out.value(msg.getServerMessageType().name());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ServerMessage read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ServerMessage.ServerMessageType type = null;
+        ChessGame g = null;
+        ChessMove m = null;
+        int ply = 0;
+        long positionHash = 0;
+        String text = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "serverMessageType" -> type = readType(in);
+                case "game" -> g = game.read(in);
+                case "move" -> m = move.read(in);
+                case "ply" -> ply = in.nextInt();
+                case "positionHash" -> positionHash = readHash(in);
+                case "message", "errorMessage" -> text = readString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (type == null) {
+            return new ServerMessage(null);
+        }
+        return switch (type) {
+            case LOAD_GAME -> new LoadGameMessage(g);
+            case MOVE -> new MoveMessage(m, ply, positionHash);
+            case NOTIFICATION -> new NotificationMessage(text);
+            case ERROR -> new ErrorMessage(text);
+        };
+    }
+
+    // 16 hex digits; a bare number is what servers sent before, fine as long as it was small
+    private static long readHash(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NUMBER) {
+            return in.nextLong();
+        }
+        String s = in.nextString();
+        if (s.length() != 16) {
+            throw new JsonParseException("bad position hash: " + s);
+        }
+        try {
+            return HexFormat.fromHexDigitsToLong(s);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("bad position hash: " + s);
+        }
+    }
+
+    private static ServerMessage.ServerMessageType readType(JsonReader in) throws IOException {
+        String name = readString(in);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return ServerMessage.ServerMessageType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}